@@ -1,3 +1,10 @@
+-- Schema di base per una installazione nuova: include già quanto introdotto da V1 (search_vector, indice sui tag).
+-- Il resto dello schema NON è in questo file: V2 (indici delle query), V3 (una sola publish request PENDING
+-- per documento), V4 (content_hash), V5 (score_metadata), V6 (melody_ngram) e V7 (indice a trigrammi sul
+-- compositore) sono in JDBC/migrations e vengono applicati all'avvio da MigrationRunner, anche sui database
+-- creati con versioni precedenti di questo script.
+-- L'applicazione va avviata dalla radice del progetto: senza JDBC/migrations l'avvio fallisce.
+
 CREATE TABLE "user"
 (
     id             SERIAL PRIMARY KEY,
@@ -36,12 +43,23 @@ CREATE TABLE document
     creation_date DATE         NOT NULL,
     period        VARCHAR(10)  NOT NULL,
 
+    -- indice full-text su titolo (peso A) e descrizione (peso B), stemming italiano e inglese;
+    -- essendo una colonna generata viene aggiornata automaticamente a ogni INSERT/UPDATE
+    search_vector tsvector GENERATED ALWAYS AS (
+        setweight(to_tsvector('italian', coalesce(title, '')), 'A') ||
+        setweight(to_tsvector('english', coalesce(title, '')), 'A') ||
+        setweight(to_tsvector('italian', coalesce(description, '')), 'B') ||
+        setweight(to_tsvector('english', coalesce(description, '')), 'B')
+    ) STORED,
+
     CONSTRAINT fk_document_author
         FOREIGN KEY (author_id)
             REFERENCES "user" (id)
             ON DELETE CASCADE
 );
 
+CREATE INDEX idx_document_search_vector ON document USING GIN (search_vector);
+
 CREATE TABLE favourite_collection
 (
     user_id       INTEGER NOT NULL,
@@ -103,6 +121,9 @@ CREATE TABLE tag
 );
 
 
+-- usato da TagDAO.findByLabelNormalized (LOWER(TRIM(tag_label)) = LOWER(TRIM(?)))
+CREATE INDEX idx_tag_label_normalized ON tag (LOWER(TRIM(tag_label)));
+
 CREATE TABLE document_tags
 (
     document_id INTEGER     NOT NULL,
@@ -227,4 +248,4 @@ CREATE TABLE tag_change_request
 
     CONSTRAINT chk_tcr_status
         CHECK (status IN ('PENDING','APPROVED','REJECTED'))
-);
\ No newline at end of file
+);
@@ -0,0 +1,14 @@
+-- Porta i database creati con le versioni precedenti di SqlScript.sql allo schema attuale:
+-- colonna full-text su document e indice per TagDAO.findByLabelNormalized.
+
+ALTER TABLE document
+    ADD COLUMN IF NOT EXISTS search_vector tsvector GENERATED ALWAYS AS (
+        setweight(to_tsvector('italian', coalesce(title, '')), 'A') ||
+        setweight(to_tsvector('english', coalesce(title, '')), 'A') ||
+        setweight(to_tsvector('italian', coalesce(description, '')), 'B') ||
+        setweight(to_tsvector('english', coalesce(description, '')), 'B')
+    ) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_document_search_vector ON document USING GIN (search_vector);
+
+CREATE INDEX IF NOT EXISTS idx_tag_label_normalized ON tag (LOWER(TRIM(tag_label)));
@@ -0,0 +1,33 @@
+-- Indici per i filtri e gli ordinamenti usati dai DAO (oltre alle chiavi primarie).
+-- Le colonne (creation_date DESC, id DESC) seguono l'ordinamento e la paginazione keyset di DocumentDAO.
+
+-- DocumentDAO: documenti per autore, per stato, elenco completo
+CREATE INDEX IF NOT EXISTS idx_document_author_created ON document (author_id, creation_date DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_document_status_created ON document (status, creation_date DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_document_created ON document (creation_date DESC, id DESC);
+
+-- CollectionDAO.getCollectionsByUser
+CREATE INDEX IF NOT EXISTS idx_collection_user ON collection (user_id, id DESC);
+
+-- CommentDAO: commenti per documento e per utente
+CREATE INDEX IF NOT EXISTS idx_comment_document ON comment (document_id);
+CREATE INDEX IF NOT EXISTS idx_comment_user ON comment (user_id);
+
+-- PublishRequestDAO: richieste per stato, per moderatore, per documento
+CREATE INDEX IF NOT EXISTS idx_publish_request_status ON publish_request (request_status);
+CREATE INDEX IF NOT EXISTS idx_publish_request_moderator ON publish_request (moderator_id);
+CREATE INDEX IF NOT EXISTS idx_publish_request_document ON publish_request (document_id, request_status);
+
+-- TagChangeRequestDAO: coda delle richieste, storico del moderatore, controllo duplicati
+CREATE INDEX IF NOT EXISTS idx_tcr_status_date ON tag_change_request (status, date_request);
+CREATE INDEX IF NOT EXISTS idx_tcr_moderator ON tag_change_request (moderator_id, date_result DESC);
+CREATE INDEX IF NOT EXISTS idx_tcr_document ON tag_change_request (document_id, operation, status);
+
+-- DocumentRelationDAO: relazioni entranti (le uscenti usano la PK source_id, destination_id)
+CREATE INDEX IF NOT EXISTS idx_docrel_destination ON document_relation (destination_id);
+
+-- filtri per tag e cancellazioni a cascata sul lato "document" delle tabelle ponte
+CREATE INDEX IF NOT EXISTS idx_document_tags_label ON document_tags (tag_label, document_id);
+CREATE INDEX IF NOT EXISTS idx_document_collection_document ON document_collection (document_id);
+CREATE INDEX IF NOT EXISTS idx_favourite_document_document ON favourite_document (document_id);
+CREATE INDEX IF NOT EXISTS idx_favourite_collection_collection ON favourite_collection (collection_id);
@@ -0,0 +1,13 @@
+-- Al più una richiesta di pubblicazione PENDING per documento: PublishRequestDAO.addRequest
+-- inserisce con ON CONFLICT DO NOTHING su questo indice, quindi il controllo è atomico.
+
+-- eventuali duplicati già presenti: resta solo la richiesta PENDING più vecchia
+DELETE FROM publish_request p
+    USING publish_request q
+WHERE p.request_status = 'PENDING'
+  AND q.request_status = 'PENDING'
+  AND p.document_id = q.document_id
+  AND p.id > q.id;
+
+CREATE UNIQUE INDEX IF NOT EXISTS uq_publish_request_pending
+    ON publish_request (document_id) WHERE request_status = 'PENDING';
@@ -0,0 +1,6 @@
+-- Contenuto del documento nell'archivio dei file (Storage.BlobStore): SHA-256 in esadecimale.
+-- NULL finché non viene caricato un file. Più documenti possono condividere lo stesso contenuto.
+ALTER TABLE document ADD COLUMN IF NOT EXISTS content_hash CHAR(64);
+
+CREATE INDEX IF NOT EXISTS idx_document_content_hash
+    ON document (content_hash) WHERE content_hash IS NOT NULL;
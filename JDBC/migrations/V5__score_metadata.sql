@@ -0,0 +1,17 @@
+-- Metadati estratti dai documenti MUSICXML (Ingestion.MusicXmlMetadataExtractor),
+-- filtrabili da DocumentSearchCriteria. Una riga per documento, rimossa insieme al documento.
+CREATE TABLE IF NOT EXISTS score_metadata (
+    document_id   INTEGER PRIMARY KEY REFERENCES document (id) ON DELETE CASCADE,
+    composer      VARCHAR(255),
+    key_signature VARCHAR(16),   -- es. 'D major', 'B minor'
+    time_signature VARCHAR(16),  -- es. '3/4'
+    tempo         INTEGER,       -- battiti al minuto
+    instruments   TEXT[] NOT NULL DEFAULT '{}', -- nomi delle parti in minuscolo
+    measure_count INTEGER NOT NULL DEFAULT 0
+);
+
+CREATE INDEX IF NOT EXISTS idx_score_metadata_key ON score_metadata (key_signature);
+CREATE INDEX IF NOT EXISTS idx_score_metadata_time ON score_metadata (time_signature);
+CREATE INDEX IF NOT EXISTS idx_score_metadata_tempo ON score_metadata (tempo);
+CREATE INDEX IF NOT EXISTS idx_score_metadata_measures ON score_metadata (measure_count);
+CREATE INDEX IF NOT EXISTS idx_score_metadata_instruments ON score_metadata USING GIN (instruments);
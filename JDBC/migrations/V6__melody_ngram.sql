@@ -0,0 +1,12 @@
+-- Indice invertito delle melodie dei documenti MIDI (Ingestion.MidiMelodyExtractor):
+-- per ogni n-gramma di intervalli (codificato da Ingestion.MelodyNgrams) i documenti che lo contengono.
+-- La chiave primaria inizia da ngram, così la ricerca legge solo le liste dei gram della melodia cercata.
+CREATE TABLE IF NOT EXISTS melody_ngram (
+    ngram       INTEGER NOT NULL,
+    document_id INTEGER NOT NULL REFERENCES document (id) ON DELETE CASCADE,
+    occurrences INTEGER NOT NULL,
+    PRIMARY KEY (ngram, document_id)
+);
+
+-- per sostituire o cancellare l'indice di un documento
+CREATE INDEX IF NOT EXISTS idx_melody_ngram_document ON melody_ngram (document_id);
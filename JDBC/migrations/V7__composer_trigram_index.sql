@@ -0,0 +1,7 @@
+-- Filtro per compositore di DocumentDAO: LOWER(composer) LIKE '%...%' ha il jolly iniziale e non può usare
+-- un indice B-tree. L'indice GIN a trigrammi (pg_trgm) serve anche questi LIKE, per testi di almeno 3 caratteri.
+-- pg_trgm è un'estensione "trusted": la può creare il proprietario del database.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX IF NOT EXISTS idx_score_metadata_composer_trgm
+    ON score_metadata USING GIN (LOWER(composer) gin_trgm_ops);
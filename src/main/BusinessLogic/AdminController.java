@@ -1,12 +1,18 @@
 package BusinessLogic;
 import ORM.*;
 import DomainModel.*;
+import Storage.BlobStore;
+
+import java.time.Duration;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 
 public class AdminController {
+    // un file più recente potrebbe appartenere a un upload non ancora confermato
+    private static final Duration ORPHAN_FILE_MIN_AGE = Duration.ofHours(1);
     private final User currentUser;
     public AdminController(User currentUser) {
         Objects.requireNonNull(currentUser);
@@ -86,6 +92,50 @@ public class AdminController {
         }
     }
 
+    public Page<User> usersPage(Integer afterId, int pageSize){
+        ensureAdmin();
+        try{
+            UserDAO userDAO = new UserDAO();
+            return userDAO.getUsersPage(afterId, pageSize);
+        }catch(Exception e){
+            System.err.println("usersPage failed: " + e);
+            return new Page<>(new ArrayList<>(), false);
+        }
+    }
+
+    public Page<Document> documentsPage(Document after, int pageSize){
+        ensureAdmin();
+        try{
+            DocumentDAO documentDAO = new DocumentDAO();
+            return documentDAO.getAllDocumentsPage(after, pageSize);
+        }catch(Exception e){
+            System.err.println("documentsPage failed: " + e);
+            return new Page<>(new ArrayList<>(), false);
+        }
+    }
+
+    public Page<Document> documentsByStatusPage(DocumentStatus status, Document after, int pageSize){
+        ensureAdmin();
+        try{
+            DocumentDAO documentDAO = new DocumentDAO();
+            return documentDAO.getDocumentsByStatusPage(status, after, pageSize);
+        }catch(Exception e){
+            System.err.println("documentsByStatusPage failed: " + e);
+            return new Page<>(new ArrayList<>(), false);
+        }
+    }
+
+    public Page<Collection> collectionsPage(Integer afterId, int pageSize){
+        ensureAdmin();
+        try{
+            CollectionDAO collectionDAO = new CollectionDAO();
+            return collectionDAO.getCollectionsPage(afterId, pageSize);
+        }catch(Exception e){
+            System.err.println("collectionsPage failed: " + e);
+            return new Page<>(new ArrayList<>(), false);
+        }
+    }
+
     public List<Document> documentsByAuthor(int userId){
         ensureAdmin();
         try{
@@ -98,6 +148,42 @@ public class AdminController {
         }
     }
 
+    public int deleteDocuments(List<Integer> documentIds){
+        ensureAdmin();
+        try{
+            DocumentDAO documentDAO = new DocumentDAO();
+            return documentDAO.deleteDocuments(documentIds);
+        }catch(Exception e){
+            System.err.println("deleteDocuments failed: " + e);
+            return 0;
+        }
+    }
+
+    public int purgeDocumentsOfAuthor(int userId){
+        ensureAdmin();
+        try{
+            DocumentDAO documentDAO = new DocumentDAO();
+            return documentDAO.deleteDocumentsByAuthor(userId);
+        }catch(Exception e){
+            System.err.println("purgeDocumentsOfAuthor failed: " + e);
+            return 0;
+        }
+    }
+
+    // rimuove dall'archivio i file non più usati da alcun documento (es. dopo cancellazioni o sostituzioni)
+    public int collectOrphanFiles(){
+        ensureAdmin();
+        try{
+            Set<String> referenced = new DocumentDAO().getReferencedContentHashes();
+            if (referenced == null)
+                throw new IllegalStateException("Referenced contents not available");
+            return BlobStore.getInstance().collectGarbage(referenced, ORPHAN_FILE_MIN_AGE);
+        }catch(Exception e){
+            System.err.println("collectOrphanFiles failed: " + e);
+            return 0;
+        }
+    }
+
     public void setModerator(int userId, boolean isModerator){
         ensureAdmin();
         try {
@@ -0,0 +1,36 @@
+package BusinessLogic;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Facciata asincrona di un controller (UserController, ModeratorController, AdminController, RelationController):
+ * ogni chiamata viene eseguita dal ControllerExecutor e restituisce subito un CompletableFuture.
+ * Esempio: new AsyncController<>(userController).call(UserController::viewOwnDocuments)
+ */
+public class AsyncController<C> {
+
+    private final C controller;
+    private final ControllerExecutor executor;
+
+    public AsyncController(C controller) {
+        this(controller, ControllerExecutor.getInstance());
+    }
+
+    public AsyncController(C controller, ControllerExecutor executor) {
+        this.controller = Objects.requireNonNull(controller, "controller cannot be null");
+        this.executor = Objects.requireNonNull(executor, "executor cannot be null");
+    }
+
+    public C getController() { return controller; }
+
+    public <T> CompletableFuture<T> call(Function<C, T> operation) {
+        return executor.submit(() -> operation.apply(controller));
+    }
+
+    public CompletableFuture<Void> run(Consumer<C> operation) {
+        return executor.run(() -> operation.accept(controller));
+    }
+}
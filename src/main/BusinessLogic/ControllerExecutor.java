@@ -0,0 +1,121 @@
+package BusinessLogic;
+
+import ORM.DBConnection;
+
+import java.lang.reflect.Method;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Esegue le operazioni dei controller in modo asincrono, una per thread, restituendo CompletableFuture.
+ * Su JVM con i virtual thread (Java 21+) ogni operazione ha il suo virtual thread; altrimenti si usa
+ * un pool fisso di thread di piattaforma. Un semaforo limita le operazioni contemporanee alla dimensione
+ * del pool di connessioni, così le richieste in eccesso aspettano qui invece di andare in timeout sul pool.
+ * Alla fine di ogni operazione la connessione del thread viene restituita al pool.
+ */
+public class ControllerExecutor {
+    private static ControllerExecutor instance;
+
+    private final ExecutorService executor;
+    private final Semaphore dbPermits;
+    private final boolean virtualThreads;
+    private final ThreadLocal<Boolean> insideOperation = ThreadLocal.withInitial(() -> false);
+
+    ControllerExecutor(int maxConcurrentOperations) {
+        this.dbPermits = new Semaphore(maxConcurrentOperations, true);
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null ? virtual : newPlatformExecutor(maxConcurrentOperations);
+    }
+
+    public static synchronized ControllerExecutor getInstance() {
+        if (instance == null)
+            instance = new ControllerExecutor(DBConnection.getMaxPoolSize());
+        return instance;
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> operation) {
+        return CompletableFuture.supplyAsync(() -> runBounded(operation), executor);
+    }
+
+    public CompletableFuture<Void> run(Runnable operation) {
+        return submit(() -> {
+            operation.run();
+            return null;
+        });
+    }
+
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * True se il thread corrente sta già eseguendo un'operazione di questo executor:
+     * chi la esegue non deve aspettare altre operazioni, perché occupa già un permesso.
+     */
+    public boolean isInsideOperation() {
+        return insideOperation.get();
+    }
+
+    public int getAvailablePermits() {
+        return dbPermits.availablePermits();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    //------ private methods
+
+    private <T> T runBounded(Supplier<T> operation) {
+        try {
+            dbPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+        insideOperation.set(true);
+        try {
+            return operation.get();
+        } finally {
+            insideOperation.remove();
+            dbPermits.release();
+            releaseConnection();
+        }
+    }
+
+    // di norma la connessione è già tornata al pool: qui si recupera quella lasciata da statement non chiusi
+    // o da una transazione rimasta aperta, prima che il thread passi al task successivo
+    private static void releaseConnection() {
+        try {
+            DBConnection.getInstance().releaseConnection();
+        } catch (SQLException e) {
+            System.err.println("releaseConnection failed: " + e.getMessage());
+        }
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() esiste solo da Java 21: lo si cerca via reflection
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newPlatformExecutor(int size) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(size, r -> {
+            Thread t = new Thread(r, "controller-worker-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+}
@@ -0,0 +1,89 @@
+package BusinessLogic;
+
+import DomainModel.*;
+import ORM.*;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Carica la pagina di dettaglio di un documento eseguendo in parallelo le query indipendenti
+ * (documento, commenti, relazioni in uscita e in entrata, richieste sui tag), ognuna su un task
+ * del ControllerExecutor e quindi con una propria connessione del pool: il tempo di risposta
+ * diventa quello della query più lenta invece della somma di tutte.
+ * I task sono trattati come un'unica operazione: al primo errore gli altri vengono annullati
+ * e il caricamento fallisce con l'errore del primo task.
+ * Se il thread ha già una transazione aperta (o è a sua volta un task dell'executor) le query
+ * vengono eseguite in sequenza sulla sua connessione: altre connessioni non vedrebbero i dati
+ * non ancora confermati, e un task che aspetta altri task potrebbe esaurire i permessi.
+ */
+public class DocumentDetailLoader {
+    private final ControllerExecutor executor;
+
+    public DocumentDetailLoader() {
+        this(ControllerExecutor.getInstance());
+    }
+
+    DocumentDetailLoader(ControllerExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Restituisce il dettaglio del documento, oppure null se il documento non esiste.
+     */
+    public DocumentDetails load(int documentId) throws SQLException {
+        // ogni DAO restituisce oggetti già completi (autori, tag, documenti delle relazioni): il risultato
+        // di un task non esegue altre query dopo che il task ha rilasciato la sua connessione
+        Supplier<Document> document = () -> new DocumentDAO().getDocumentById(documentId);
+        Supplier<List<Comment>> comments = () -> new CommentDAO().getCommentsByDocument(documentId);
+        Supplier<List<DocumentRelation>> sources = () -> new DocumentRelationDAO().getSourceRelationDocument(documentId, null);
+        Supplier<List<DocumentRelation>> destinations = () -> new DocumentRelationDAO().getDestinationRelationDocument(documentId, null);
+        Supplier<List<TagChangeRequest>> tagRequests = () -> new TagChangeRequestDAO().getRequestsByDocument(documentId);
+
+        if (DBConnection.getInstance().isInTransaction() || executor.isInsideOperation())
+            return assemble(document.get(), comments.get(), sources.get(), destinations.get(), tagRequests.get());
+
+        CompletableFuture<Document> documentTask = executor.submit(document);
+        CompletableFuture<List<Comment>> commentsTask = executor.submit(comments);
+        CompletableFuture<List<DocumentRelation>> sourcesTask = executor.submit(sources);
+        CompletableFuture<List<DocumentRelation>> destinationsTask = executor.submit(destinations);
+        CompletableFuture<List<TagChangeRequest>> tagRequestsTask = executor.submit(tagRequests);
+        CompletableFuture<?>[] tasks = {documentTask, commentsTask, sourcesTask, destinationsTask, tagRequestsTask};
+
+        joinAll(tasks);
+        return assemble(documentTask.join(), commentsTask.join(), sourcesTask.join(), destinationsTask.join(), tagRequestsTask.join());
+    }
+
+    //------ private methods
+
+    // attende tutti i task; al primo che fallisce annulla gli altri e rilancia l'errore
+    private static void joinAll(CompletableFuture<?>[] tasks) {
+        CompletableFuture<Object> firstFailure = new CompletableFuture<>();
+        for (CompletableFuture<?> task : tasks) {
+            task.whenComplete((value, error) -> {
+                if (error != null)
+                    firstFailure.completeExceptionally(error);
+            });
+        }
+        CompletableFuture<Void> all = CompletableFuture.allOf(tasks);
+        try {
+            CompletableFuture.anyOf(all, firstFailure).join();
+        } catch (CompletionException e) {
+            // i task non ancora partiti non vengono eseguiti; quelli già avviati finiscono e rilasciano la connessione
+            for (CompletableFuture<?> task : tasks) {
+                task.cancel(false);
+            }
+            throw e;
+        }
+    }
+
+    private static DocumentDetails assemble(Document document, List<Comment> comments, List<DocumentRelation> sources,
+                                            List<DocumentRelation> destinations, List<TagChangeRequest> tagRequests) {
+        if (document == null)
+            return null;
+        return new DocumentDetails(document, comments, sources, destinations, tagRequests);
+    }
+}
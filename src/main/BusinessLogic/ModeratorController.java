@@ -30,11 +30,13 @@ public class ModeratorController {
             PublishRequest req = publishRequestDAO.getPendingRequestByDocument(docId);
             if(req == null)
                 throw new IllegalArgumentException("No PENDING request found for document id " + docId);
-            publishRequestDAO.updateRequestStatus(docId, currentUser.getId(), decision);
-            if(decision == RequestStatus.APPROVED)
-                documentDAO.updateDocumentStatus( docId, DocumentStatus.PUBLISHED);
-            if(decision == RequestStatus.REJECTED)
-                documentDAO.updateDocumentStatus(docId, DocumentStatus.DRAFT);
+            UnitOfWork.run(() -> {
+                publishRequestDAO.updateRequestStatus(docId, currentUser.getId(), decision);
+                if(decision == RequestStatus.APPROVED)
+                    documentDAO.updateDocumentStatus( docId, DocumentStatus.PUBLISHED);
+                if(decision == RequestStatus.REJECTED)
+                    documentDAO.updateDocumentStatus(docId, DocumentStatus.DRAFT);
+            });
         } catch (Exception e){
             System.err.println("updateStatus failed: docId=" + docId + ", decision=" + decision + ", moderator=" + currentUser.getId());
         }
@@ -82,54 +84,61 @@ public class ModeratorController {
 
             //  moderatore approva
             if (decision == RequestStatus.APPROVED) {
-                TagChangeOperation op = req.getOperation();
-
-                if (op == TagChangeOperation.ADD) {
-
-                    if (req.isForExistingTag()) {
-                        // Aggiunta di un tag già esistente
-                        String label = req.getExistingTagLabel();
-
-                        Tag tag = tagDAO.findByLabelNormalized(label);
-                        if (tag == null) {
-                            throw new IllegalStateException("Existing tag not found in DB: " + label);
+                // gli effetti sul documento e la chiusura della richiesta vanno confermati insieme
+                UnitOfWork.run(() -> {
+                    TagChangeOperation op = req.getOperation();
+
+                    if (op == TagChangeOperation.ADD) {
+
+                        if (req.isForExistingTag()) {
+                            // Aggiunta di un tag già esistente
+                            String label = req.getExistingTagLabel();
+
+                            Tag tag = tagDAO.findByLabelNormalized(label);
+                            if (tag == null) {
+                                throw new IllegalStateException("Existing tag not found in DB: " + label);
+                            }
+
+                            documentDAO.addTagToDocument(doc.getId(), tag.getLabel());
+
+                        } else if (req.isForNewLabel()) {
+                            // Creazione di un NUOVO tag + collegamento al documento
+                            String rawLabel = req.getProposedLabel();
+                            if (rawLabel == null || rawLabel.isBlank())
+                                throw new IllegalStateException("Proposed label is empty");
+
+                            // un'altra richiesta approvata può aver già creato la stessa etichetta: la si riusa
+                            String label = rawLabel.trim();
+                            Tag tag = tagDAO.findByLabelNormalized(label);
+                            if (tag == null) {
+                                tag = new Tag(label, null);
+                                tagDAO.addTag(tag);
+                            }
+                            documentDAO.addTagToDocument(doc.getId(), tag.getLabel());
+
+                        } else {
+                            throw new IllegalStateException(
+                                    "ADD operation requires either existingTagLabel or proposedLabel");
                         }
 
-                        documentDAO.addTagToDocument(doc.getId(), tag.getLabel());
+                    } else if (op == TagChangeOperation.REMOVE) {
+
+                        if (!req.isForExistingTag())
+                            throw new IllegalStateException("REMOVE operation requires existingTagLabel");
 
-                    } else if (req.isForNewLabel()) {
-                        // Creazione di un NUOVO tag + collegamento al documento
-                        String rawLabel = req.getProposedLabel();
-                        if (rawLabel == null || rawLabel.isBlank())
-                            throw new IllegalStateException("Proposed label is empty");
+                        String label = req.getExistingTagLabel();
 
-                        String label = rawLabel.trim();
-                        Tag newTag = new Tag(label, null);
-                        tagDAO.addTag(newTag);
-                        documentDAO.addTagToDocument(doc.getId(), label);
+                        // Rimuovo SOLO il link documento-tag, NON cancello il tag dalla tabella Tag
+                        documentDAO.removeTagFromDocument(doc.getId(), label);
 
                     } else {
-                        throw new IllegalStateException(
-                                "ADD operation requires either existingTagLabel or proposedLabel");
+                        throw new IllegalStateException("Unsupported TagChangeOperation: " + op);
                     }
 
-                } else if (op == TagChangeOperation.REMOVE) {
-
-                    if (!req.isForExistingTag())
-                        throw new IllegalStateException("REMOVE operation requires existingTagLabel");
-
-                    String label = req.getExistingTagLabel();
-
-                    // Rimuovo SOLO il link documento-tag, NON cancello il tag dalla tabella Tag
-                    documentDAO.removeTagFromDocument(doc.getId(), label);
-
-                } else {
-                    throw new IllegalStateException("Unsupported TagChangeOperation: " + op);
-                }
-
-                // Dopo aver applicato gli effetti sul dominio/DB,
-                // aggiorno lo stato della richiesta e registro il moderatore
-                reqDAO.updateStatus(requestId, currentUser.getId(), RequestStatus.APPROVED);
+                    // Dopo aver applicato gli effetti sul dominio/DB,
+                    // aggiorno lo stato della richiesta e registro il moderatore
+                    reqDAO.updateStatus(requestId, currentUser.getId(), RequestStatus.APPROVED);
+                });
             }
 
         } catch (Exception e) {
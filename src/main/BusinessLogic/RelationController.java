@@ -1,6 +1,8 @@
 package BusinessLogic;
 
+import ORM.DocumentDAO;
 import ORM.DocumentRelationDAO;
+import ORM.RelationGraph;
 import DomainModel.Document;
 import DomainModel.DocumentRelation;
 import DomainModel.DocumentRelationType;
@@ -115,4 +117,60 @@ public class RelationController {
             e.printStackTrace();
         }
     }
+
+    public List<DocumentRelation> searchNeighbourhood(int maxDepth, DocumentRelationType type) {
+        DocumentRelationDAO relDAO = new DocumentRelationDAO();
+        try {
+            if (maxDepth <= 0)
+                throw new IllegalArgumentException("maxDepth must be positive");
+            return relDAO.getNeighbourhood(selected.getId(), maxDepth, type);
+        } catch (Exception e) {
+            System.err.println("searchNeighbourhood failed: selected=" + selected.getId() + ", maxDepth=" + maxDepth + ", type=" + type);
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    public List<Document> viewVersionChain() {
+        DocumentRelationDAO relDAO = new DocumentRelationDAO();
+        try {
+            return relDAO.getVersionChain(selected.getId());
+        } catch (Exception e) {
+            System.err.println("viewVersionChain failed: selected=" + selected.getId());
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    public Document viewLatestVersion() {
+        DocumentRelationDAO relDAO = new DocumentRelationDAO();
+        try {
+            Document latest = relDAO.getLatestVersion(selected.getId());
+            return latest != null ? latest : selected;
+        } catch (Exception e) {
+            System.err.println("viewLatestVersion failed: selected=" + selected.getId());
+            e.printStackTrace();
+            return selected;
+        }
+    }
+
+    // documenti che collegano il selezionato a other (estremi inclusi), seguendo le relazioni in entrambe le direzioni;
+    // lista vuota se non sono collegati
+    public List<Document> findConnection(Document other) {
+        DocumentRelationDAO relDAO = new DocumentRelationDAO();
+        try {
+            if (other == null)
+                throw new IllegalArgumentException("Document is null");
+            int[] path = relDAO.getShortestPath(selected.getId(), other.getId(), null, RelationGraph.Direction.BOTH);
+            List<Integer> ids = new ArrayList<>(path.length);
+            for (int id : path) {
+                ids.add(id);
+            }
+            return new DocumentDAO().getDocumentsByIds(ids);
+        } catch (Exception e) {
+            System.err.println("findConnection failed: selected=" + selected.getId() + ", other=" + (other != null ? other.getId() : "null"));
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
 }
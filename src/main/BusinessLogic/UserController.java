@@ -2,11 +2,21 @@ package BusinessLogic;
 
 import ORM.*;
 import DomainModel.*;
+import Ingestion.DocumentIngestion;
+import Ingestion.MelodyNgrams;
+import Ingestion.WaveformPeaksExtractor;
+import Storage.BlobStore;
+import Storage.ByteRange;
+
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 
 public class UserController {
+    private static final int MELODY_SEARCH_LIMIT = 50;
 
     private final User currentUser;
 
@@ -25,6 +35,20 @@ public class UserController {
         }
     }
 
+    // ricerca per melodia: pitches sono le altezze MIDI delle note (es. 60 = do centrale), in qualsiasi tonalità
+    public ArrayList<Document> searchByMelody(int[] pitches) {
+        try {
+            if (pitches == null || pitches.length <= MelodyNgrams.SIZE)
+                throw new IllegalArgumentException("La melodia deve avere almeno " + (MelodyNgrams.SIZE + 1) + " note");
+            Set<Integer> ngrams = MelodyNgrams.count(pitches).keySet();
+            // basta metà dei gram: una nota sbagliata nella melodia cercata ne altera fino a SIZE
+            List<Integer> ids = new MelodyIndexDAO().searchByNgrams(ngrams, Math.max(1, ngrams.size() / 2), MELODY_SEARCH_LIMIT);
+            return new ArrayList<>(new DocumentDAO().getDocumentsByIds(ids));
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+            return new ArrayList<>();
+        }
+    }
 
     public void writeComment(int documentId, String text) {
         CommentDAO commentDAO = new CommentDAO();
@@ -43,22 +67,170 @@ public class UserController {
 
     public void createDocument(String documentTitle,String description, String documentPeriod,
                                DocumentFormat format,List<String> tags){
+        createDocument(documentTitle, description, documentPeriod, format, tags, null);
+    }
+
+    /**
+     * Crea il documento con il file caricato a blocchi (startUpload/uploadChunk): il file viene
+     * verificato e spostato nell'archivio prima di inserire il documento, così un documento
+     * non punta mai a un contenuto incompleto. expectedHash (SHA-256) è facoltativo.
+     */
+    public boolean createDocumentFromUpload(String documentTitle,String description, String documentPeriod,
+                                            DocumentFormat format,List<String> tags, String uploadId, String expectedHash){
+        try{
+            String contentHash = BlobStore.getInstance().completeUpload(uploadId, expectedHash, format);
+            int documentId = createDocument(documentTitle, description, documentPeriod, format, tags, contentHash);
+            if (documentId == -1)
+                return false;
+            new DocumentIngestion().ingest(documentId, format, contentHash);
+            return true;
+        }catch (Exception e){
+            System.err.println(e.getMessage());
+            return false;
+        }
+    }
+
+    public String startUpload(){
+        try{
+            return BlobStore.getInstance().beginUpload();
+        }catch (Exception e){
+            System.err.println(e.getMessage());
+            return null;
+        }
+    }
+
+    // restituisce i byte ricevuti finora (da cui riprendere), -1 in caso di errore
+    public long uploadChunk(String uploadId, long offset, InputStream chunk){
+        try{
+            return BlobStore.getInstance().appendChunk(uploadId, offset, chunk);
+        }catch (Exception e){
+            System.err.println(e.getMessage());
+            return -1;
+        }
+    }
+
+    public long uploadedSize(String uploadId){
+        try{
+            return BlobStore.getInstance().getUploadedSize(uploadId);
+        }catch (Exception e){
+            System.err.println(e.getMessage());
+            return -1;
+        }
+    }
+
+    public void cancelUpload(String uploadId){
+        try{
+            BlobStore.getInstance().abortUpload(uploadId);
+        }catch (Exception e){
+            System.err.println(e.getMessage());
+        }
+    }
+
+    // restituisce l'id del nuovo documento, -1 se la creazione non è riuscita
+    private int createDocument(String documentTitle,String description, String documentPeriod,
+                               DocumentFormat format,List<String> tags, String contentHash){
         DocumentDAO documentDAO = new DocumentDAO();
         try{
             String filePath="document/"+currentUser.getId()+"/";
             String fileName="doc_"+currentUser.getNextFileName();
-            boolean created=documentDAO.addDocument(currentUser, documentTitle, description, documentPeriod, format, filePath, fileName,tags);
-
             UserDAO userDAO = new UserDAO();
 
-            boolean updated = userDAO.updateNextFileName(currentUser.getId(), currentUser.getNextFileName() + 1);
-            if (updated && created) {
-                currentUser.incrementNextFileName();
-            }
+            int[] documentId = {-1};
+            // documento e contatore dei file vanno confermati insieme, altrimenti il nome verrebbe riusato
+            UnitOfWork.run(() -> {
+                documentId[0]=documentDAO.addDocumentWithContent(currentUser, documentTitle, description, documentPeriod, format, filePath, fileName,tags,contentHash);
+                if (documentId[0] == -1)
+                    throw new IllegalStateException("Document creation failed");
+                boolean updated = userDAO.updateNextFileName(currentUser.getId(), currentUser.getNextFileName() + 1);
+                if (!updated)
+                    throw new IllegalStateException("Next file name update failed");
+            });
+            currentUser.incrementNextFileName();
+            return documentId[0];
         }catch (Exception e){
             System.err.println(e.getMessage());
+            return -1;
+        }
+    }
+
+    // salva il file del documento; un contenuto identico già presente nell'archivio non viene riscritto
+    public boolean uploadDocumentContent(int documentId, InputStream content){
+        DocumentDAO documentDAO = new DocumentDAO();
+        try{
+            Document doc = documentDAO.getDocumentById(documentId);
+            if (doc == null)
+                throw new IllegalArgumentException("Document not found");
+            if (doc.getAuthor() == null || doc.getAuthor().getId() != currentUser.getId())
+                throw new IllegalArgumentException("You are not the author of the document");
+            String hash = BlobStore.getInstance().put(content, doc.getFormat());
+            if (!documentDAO.setContentHash(documentId, hash))
+                throw new IllegalStateException("Document content update failed");
+            new DocumentIngestion().ingest(documentId, doc.getFormat(), hash);
+            return true;
+        } catch (Exception e){
+            System.err.println(e.getMessage());
+            return false;
+        }
+    }
+
+    // scrive il file del documento sul canale indicato; restituisce i byte scritti, -1 se non disponibile
+    public long downloadDocumentContent(int documentId, WritableByteChannel target){
+        DocumentDAO documentDAO = new DocumentDAO();
+        try{
+            Document doc = documentDAO.getDocumentById(documentId);
+            if (doc == null)
+                throw new IllegalArgumentException("Document not found");
+            if (doc.getContentHash() == null)
+                throw new IllegalArgumentException("Document has no content");
+            return BlobStore.getInstance().transferTo(doc.getContentHash(), target);
+        } catch (Exception e){
+            System.err.println(e.getMessage());
+            return -1;
+        }
+    }
+
+    // scrive sul canale la parte del file richiesta con un header HTTP Range (null = tutto il file), così un
+    // lettore può spostarsi in un punto qualsiasi senza scaricare il resto; null se l'intervallo non è valido
+    public ByteRange downloadDocumentRange(int documentId, String rangeHeader, WritableByteChannel target){
+        DocumentDAO documentDAO = new DocumentDAO();
+        try{
+            Document doc = documentDAO.getDocumentById(documentId);
+            if (doc == null)
+                throw new IllegalArgumentException("Document not found");
+            if (doc.getContentHash() == null)
+                throw new IllegalArgumentException("Document has no content");
+            BlobStore store = BlobStore.getInstance();
+            ByteRange range = ByteRange.parse(rangeHeader, store.size(doc.getContentHash()));
+            if (range == null)
+                throw new IllegalArgumentException("Range not satisfiable: " + rangeHeader);
+            store.transferTo(doc.getContentHash(), range.getStart(), range.getLength(), target);
+            return range;
+        } catch (Exception e){
+            System.err.println(e.getMessage());
+            return null;
         }
     }
+
+    // picchi precalcolati della forma d'onda di un documento AUDIO, al più maxPeaks;
+    // null se non ancora disponibili (la decodifica avviene in background dopo l'upload)
+    public WaveformPeaks viewWaveform(int documentId, int maxPeaks){
+        DocumentDAO documentDAO = new DocumentDAO();
+        try{
+            Document doc = documentDAO.getDocumentById(documentId);
+            if (doc == null)
+                throw new IllegalArgumentException("Document not found");
+            if (doc.getFormat() != DocumentFormat.AUDIO || doc.getContentHash() == null)
+                throw new IllegalArgumentException("Document has no audio content");
+            BlobStore store = BlobStore.getInstance();
+            if (!store.hasSidecar(doc.getContentHash(), WaveformPeaksExtractor.SIDECAR_KIND))
+                return null;
+            return WaveformPeaksExtractor.read(store.mapSidecar(doc.getContentHash(), WaveformPeaksExtractor.SIDECAR_KIND), maxPeaks);
+        } catch (Exception e){
+            System.err.println(e.getMessage());
+            return null;
+        }
+    }
+
     public void deleteDocument(int documentId){
         DocumentDAO documentDAO = new DocumentDAO();
         try{
@@ -82,6 +254,28 @@ public class UserController {
         }
     }
 
+    public DocumentDetails viewDocumentDetails(int documentId) {
+        try{
+            DocumentDetails details = new DocumentDetailLoader().load(documentId);
+            if (details == null)
+                throw new IllegalArgumentException("Document not found");
+            return details;
+        } catch (Exception e){
+            System.err.println(e.getMessage());
+            return null;
+        }
+    }
+
+    // metadati musicali estratti dal file MUSICXML del documento, null se non disponibili
+    public ScoreMetadata viewScoreMetadata(int documentId) {
+        try{
+            return new ScoreMetadataDAO().getMetadata(documentId);
+        } catch (Exception e){
+            System.err.println(e.getMessage());
+            return null;
+        }
+    }
+
     public void addDocumentToCollection(int docId, int collectionId) {
         CollectionDAO collectionDAO = new CollectionDAO();
         try{
@@ -124,15 +318,14 @@ public class UserController {
             if ( doc.getAuthor() == null || doc.getAuthor().getId() != currentUser.getId())
                 throw new IllegalArgumentException("You are not the author of the document");
 
-            //blocca se c'è una richiesta pending sullo stesso documento
-            List<PublishRequest> pendings = publishRequestDAO.getRequestsByStatus(RequestStatus.PENDING);
-            boolean alreadyPending = pendings.stream().anyMatch(r ->r.getDocument() != null && r.getDocument().getId() == docId);
-            if (alreadyPending){
-                throw new IllegalArgumentException("Document is already pending");
+            // inserimento e cambio di stato in un solo statement: se c'è già una richiesta pending
+            // sullo stesso documento l'indice univoco parziale fa ignorare l'inserimento
+            if (!publishRequestDAO.addRequest(doc)) {
+                // false vale sia per il conflitto sia per un errore del DB: li distingue la richiesta pending
+                if (publishRequestDAO.hasPendingRequest(docId))
+                    throw new IllegalArgumentException("Document is already pending");
+                throw new IllegalStateException("Publication request failed");
             }
-            publishRequestDAO.addRequest(doc);
-            //aggiorna stato
-            documentDAO.updateDocumentStatus(docId, DocumentStatus.PENDING);
         } catch (Exception e){
             System.err.println("askForPublication failed: docId=" + docId + ", user=" + currentUser.getId());
             e.printStackTrace();
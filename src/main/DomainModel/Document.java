@@ -3,6 +3,7 @@ package DomainModel;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.function.Supplier;
 
 public class Document {
     private final int id;
@@ -10,12 +11,16 @@ public class Document {
     private String description;
     private DocumentStatus status;
     private DocumentFormat format;
-    private User author;
+    private volatile User author;
     private String fileName;
     private String filePath;
+    private String contentHash; // contenuto nell'archivio dei file, null se non ancora caricato
     private Date creationDate;
-    private List<Tag> tags;
+    private volatile List<Tag> tags;
     private String period;
+    // caricamento differito di autore e tag: se impostati vengono risolti al primo accesso
+    private volatile Supplier<User> authorLoader;
+    private volatile Supplier<List<Tag>> tagsLoader;
 
     public Document(int id, String title,String description,DocumentFormat format,User author,String filePath, String fileName,Date creationDate,String period){
         this.id=id;
@@ -58,11 +63,27 @@ public class Document {
     }
 
     public User getAuthor() {
+        Supplier<User> loader = authorLoader;
+        if (loader != null) {
+            User loaded = loader.get();
+            synchronized (this) {
+                // un setAuthor arrivato nel frattempo vince sul valore caricato
+                if (authorLoader == loader) {
+                    author = loaded;
+                    authorLoader = null;
+                }
+            }
+        }
         return author;
     }
 
-    public void setAuthor(User author) {
+    public synchronized void setAuthor(User author) {
         this.author = author;
+        this.authorLoader = null;
+    }
+
+    public synchronized void setAuthorLoader(Supplier<User> authorLoader) {
+        this.authorLoader = authorLoader;
     }
 
     public String getFileName() {
@@ -80,6 +101,14 @@ public class Document {
     public void setFilePath(String filePath) {
         this.filePath = filePath;
     }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
     public Date getCreationDate() {
         return creationDate;
     }
@@ -89,6 +118,16 @@ public class Document {
     }
 
     public List<Tag> getTags() {
+        Supplier<List<Tag>> loader = tagsLoader;
+        if (loader != null) {
+            List<Tag> loaded = loader.get();
+            synchronized (this) {
+                if (tagsLoader == loader) {
+                    tags = loaded;
+                    tagsLoader = null;
+                }
+            }
+        }
         return tags;
     }
 
@@ -100,8 +139,13 @@ public class Document {
         this.title = title;
     }
 
-    public void setTags(List<Tag> tags) {
+    public synchronized void setTags(List<Tag> tags) {
         this.tags = tags;
+        this.tagsLoader = null;
+    }
+
+    public synchronized void setTagsLoader(Supplier<List<Tag>> tagsLoader) {
+        this.tagsLoader = tagsLoader;
     }
 
     public void setPeriod(String period) {
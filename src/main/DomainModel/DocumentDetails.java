@@ -0,0 +1,44 @@
+package DomainModel;
+
+import java.util.List;
+
+/**
+ * Tutto ciò che serve alla pagina di dettaglio di un documento, caricato in una volta sola:
+ * il documento (con autore e tag), i commenti, le relazioni in uscita e in entrata e le richieste di modifica dei tag.
+ */
+public class DocumentDetails {
+    private final Document document;
+    private final List<Comment> comments;
+    private final List<DocumentRelation> sourceRelations;
+    private final List<DocumentRelation> destinationRelations;
+    private final List<TagChangeRequest> tagRequests;
+
+    public DocumentDetails(Document document, List<Comment> comments, List<DocumentRelation> sourceRelations,
+                           List<DocumentRelation> destinationRelations, List<TagChangeRequest> tagRequests) {
+        this.document = document;
+        this.comments = comments;
+        this.sourceRelations = sourceRelations;
+        this.destinationRelations = destinationRelations;
+        this.tagRequests = tagRequests;
+    }
+
+    public Document getDocument() {
+        return document;
+    }
+
+    public List<Comment> getComments() {
+        return comments;
+    }
+
+    public List<DocumentRelation> getSourceRelations() {
+        return sourceRelations;
+    }
+
+    public List<DocumentRelation> getDestinationRelations() {
+        return destinationRelations;
+    }
+
+    public List<TagChangeRequest> getTagRequests() {
+        return tagRequests;
+    }
+}
@@ -15,7 +15,19 @@ public class DocumentSearchCriteria {
     private DocumentFormat format;
     private Date createdAfter;
     private Date createdBefore;
-    private List<String> tags;
+    private List<String> tags; //il documento deve averli tutti (AND)
+    private List<String> anyTags; //il documento deve averne almeno uno (OR)
+    private List<String> excludedTags; //il documento non deve averne nessuno (NOT)
+    private String fullTextQuery; //parole cercate in titolo e descrizione (full-text, con prefissi)
+    // metadati delle partiture MUSICXML (vedi ScoreMetadata): limitano la ricerca ai documenti che li hanno
+    private String composer; //compositore (contiene, senza distinzione di maiuscole)
+    private String keySignature; //tonalità, es. "D major"
+    private String timeSignature; //metro, es. "3/4"
+    private Integer minTempo;
+    private Integer maxTempo;
+    private String instrument; //nome di una parte della partitura
+    private Integer minMeasures;
+    private Integer maxMeasures;
 
     public Optional<String> getDocumentTitle() {
         return Optional.ofNullable(documentTitle);
@@ -68,4 +80,97 @@ public class DocumentSearchCriteria {
             this.tags = new ArrayList<>(tags);
         }
     }
-}
\ No newline at end of file
+
+    public Optional<List<String>> getAnyTags() {
+        return Optional.ofNullable(anyTags);
+    }
+
+    public void setAnyTags(List<String> anyTags) {
+        this.anyTags = anyTags == null ? null : new ArrayList<>(anyTags);
+    }
+
+    public Optional<List<String>> getExcludedTags() {
+        return Optional.ofNullable(excludedTags);
+    }
+
+    public void setExcludedTags(List<String> excludedTags) {
+        this.excludedTags = excludedTags == null ? null : new ArrayList<>(excludedTags);
+    }
+
+    public Optional<String> getFullTextQuery() {
+        return Optional.ofNullable(fullTextQuery);
+    }
+
+    public void setFullTextQuery(String fullTextQuery) {
+        this.fullTextQuery = fullTextQuery;
+    }
+
+    public Optional<String> getComposer() {
+        return Optional.ofNullable(composer);
+    }
+
+    public void setComposer(String composer) {
+        this.composer = composer;
+    }
+
+    public Optional<String> getKeySignature() {
+        return Optional.ofNullable(keySignature);
+    }
+
+    public void setKeySignature(String keySignature) {
+        this.keySignature = keySignature;
+    }
+
+    public Optional<String> getTimeSignature() {
+        return Optional.ofNullable(timeSignature);
+    }
+
+    public void setTimeSignature(String timeSignature) {
+        this.timeSignature = timeSignature;
+    }
+
+    public Optional<Integer> getMinTempo() {
+        return Optional.ofNullable(minTempo);
+    }
+
+    public void setMinTempo(Integer minTempo) {
+        this.minTempo = minTempo;
+    }
+
+    public Optional<Integer> getMaxTempo() {
+        return Optional.ofNullable(maxTempo);
+    }
+
+    public void setMaxTempo(Integer maxTempo) {
+        this.maxTempo = maxTempo;
+    }
+
+    public Optional<String> getInstrument() {
+        return Optional.ofNullable(instrument);
+    }
+
+    public void setInstrument(String instrument) {
+        this.instrument = instrument;
+    }
+
+    public Optional<Integer> getMinMeasures() {
+        return Optional.ofNullable(minMeasures);
+    }
+
+    public void setMinMeasures(Integer minMeasures) {
+        this.minMeasures = minMeasures;
+    }
+
+    public Optional<Integer> getMaxMeasures() {
+        return Optional.ofNullable(maxMeasures);
+    }
+
+    public void setMaxMeasures(Integer maxMeasures) {
+        this.maxMeasures = maxMeasures;
+    }
+
+    public boolean hasScoreFilters() {
+        return composer != null || keySignature != null || timeSignature != null || minTempo != null
+                || maxTempo != null || instrument != null || minMeasures != null || maxMeasures != null;
+    }
+}
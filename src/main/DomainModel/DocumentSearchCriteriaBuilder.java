@@ -10,6 +10,17 @@ public class DocumentSearchCriteriaBuilder {
     private Date createdAfter;
     private Date createdBefore;
     private List<String> tags;
+    private List<String> anyTags;
+    private List<String> excludedTags;
+    private String fullTextQuery;
+    private String composer;
+    private String keySignature;
+    private String timeSignature;
+    private Integer minTempo;
+    private Integer maxTempo;
+    private String instrument;
+    private Integer minMeasures;
+    private Integer maxMeasures;
 
     public DocumentSearchCriteriaBuilder setDocumentTitle(String documentTitle) {
         this.documentTitle = documentTitle;
@@ -37,6 +48,62 @@ public class DocumentSearchCriteriaBuilder {
         return this;
     }
 
+    public DocumentSearchCriteriaBuilder setAnyTags(List<String> anyTags) {
+        this.anyTags = anyTags;
+        return this;
+    }
+    public DocumentSearchCriteriaBuilder setExcludedTags(List<String> excludedTags) {
+        this.excludedTags = excludedTags;
+        return this;
+    }
+    public DocumentSearchCriteriaBuilder setFullTextQuery(String fullTextQuery) {
+        this.fullTextQuery = fullTextQuery;
+        return this;
+    }
+
+    public DocumentSearchCriteriaBuilder setComposer(String composer) {
+        this.composer = composer;
+        return this;
+    }
+    public DocumentSearchCriteriaBuilder setKeySignature(String keySignature) {
+        this.keySignature = keySignature;
+        return this;
+    }
+    public DocumentSearchCriteriaBuilder setTimeSignature(String timeSignature) {
+        this.timeSignature = timeSignature;
+        return this;
+    }
+    public DocumentSearchCriteriaBuilder setMinTempo(Integer minTempo) {
+        this.minTempo = minTempo;
+        return this;
+    }
+    public DocumentSearchCriteriaBuilder setMaxTempo(Integer maxTempo) {
+        this.maxTempo = maxTempo;
+        return this;
+    }
+    public DocumentSearchCriteriaBuilder setInstrument(String instrument) {
+        this.instrument = instrument;
+        return this;
+    }
+    public DocumentSearchCriteriaBuilder setMinMeasures(Integer minMeasures) {
+        this.minMeasures = minMeasures;
+        return this;
+    }
+    public DocumentSearchCriteriaBuilder setMaxMeasures(Integer maxMeasures) {
+        this.maxMeasures = maxMeasures;
+        return this;
+    }
+    public DocumentSearchCriteriaBuilder setTempoRange(Integer minTempo, Integer maxTempo) {
+        this.minTempo = minTempo;
+        this.maxTempo = maxTempo;
+        return this;
+    }
+    public DocumentSearchCriteriaBuilder setMeasureRange(Integer minMeasures, Integer maxMeasures) {
+        this.minMeasures = minMeasures;
+        this.maxMeasures = maxMeasures;
+        return this;
+    }
+
     private DocumentSearchCriteriaBuilder(){}
 
     public static DocumentSearchCriteriaBuilder getInstance(){
@@ -51,6 +118,17 @@ public class DocumentSearchCriteriaBuilder {
         criteria.setCreatedAfter(this.createdAfter);
         criteria.setCreatedBefore(this.createdBefore);
         criteria.setTags(this.tags);
+        criteria.setAnyTags(this.anyTags);
+        criteria.setExcludedTags(this.excludedTags);
+        criteria.setFullTextQuery(this.fullTextQuery);
+        criteria.setComposer(this.composer);
+        criteria.setKeySignature(this.keySignature);
+        criteria.setTimeSignature(this.timeSignature);
+        criteria.setMinTempo(this.minTempo);
+        criteria.setMaxTempo(this.maxTempo);
+        criteria.setInstrument(this.instrument);
+        criteria.setMinMeasures(this.minMeasures);
+        criteria.setMaxMeasures(this.maxMeasures);
         return criteria;
     }
 }
@@ -0,0 +1,29 @@
+package DomainModel;
+
+import java.util.List;
+
+/**
+ * Una pagina di risultati ottenuta con paginazione keyset.
+ * Per chiedere la pagina successiva si passa al DAO l'ultimo elemento di questa pagina.
+ */
+public class Page<T> {
+    private final List<T> items;
+    private final boolean hasNext;
+
+    public Page(List<T> items, boolean hasNext) {
+        this.items = items;
+        this.hasNext = hasNext;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public boolean hasNext() {
+        return hasNext;
+    }
+
+    public T getLast() {
+        return items.isEmpty() ? null : items.get(items.size() - 1);
+    }
+}
@@ -0,0 +1,69 @@
+package DomainModel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Metadati musicali estratti da un documento MUSICXML: compositore, tonalità, metro,
+ * tempo, organico (nomi delle parti) e numero di battute. I campi non presenti nella partitura restano null.
+ */
+public class ScoreMetadata {
+    private String composer;
+    private String keySignature;  // es. "D major", "B minor"
+    private String timeSignature; // es. "3/4"
+    private Integer tempo;        // battiti al minuto
+    private List<String> instruments;
+    private int measureCount;
+
+    public ScoreMetadata() {
+        this.instruments = new ArrayList<>();
+    }
+
+    public String getComposer() {
+        return composer;
+    }
+
+    public void setComposer(String composer) {
+        this.composer = composer;
+    }
+
+    public String getKeySignature() {
+        return keySignature;
+    }
+
+    public void setKeySignature(String keySignature) {
+        this.keySignature = keySignature;
+    }
+
+    public String getTimeSignature() {
+        return timeSignature;
+    }
+
+    public void setTimeSignature(String timeSignature) {
+        this.timeSignature = timeSignature;
+    }
+
+    public Integer getTempo() {
+        return tempo;
+    }
+
+    public void setTempo(Integer tempo) {
+        this.tempo = tempo;
+    }
+
+    public List<String> getInstruments() {
+        return instruments;
+    }
+
+    public void setInstruments(List<String> instruments) {
+        this.instruments = instruments == null ? new ArrayList<>() : new ArrayList<>(instruments);
+    }
+
+    public int getMeasureCount() {
+        return measureCount;
+    }
+
+    public void setMeasureCount(int measureCount) {
+        this.measureCount = measureCount;
+    }
+}
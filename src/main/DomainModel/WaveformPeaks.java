@@ -0,0 +1,48 @@
+package DomainModel;
+
+/**
+ * Picchi della forma d'onda di un documento AUDIO a una data risoluzione: per ogni gruppo di
+ * framesPerPeak campioni il minimo e il massimo (su tutti i canali), scalati a 8 bit con segno.
+ * Bastano pochi KB per disegnare la forma d'onda senza scaricare e decodificare il file.
+ */
+public class WaveformPeaks {
+    private final int sampleRate;
+    private final long totalFrames;
+    private final int framesPerPeak;
+    private final byte[] minMax; // min e max alternati, un paio per picco
+
+    public WaveformPeaks(int sampleRate, long totalFrames, int framesPerPeak, byte[] minMax) {
+        this.sampleRate = sampleRate;
+        this.totalFrames = totalFrames;
+        this.framesPerPeak = framesPerPeak;
+        this.minMax = minMax;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public long getTotalFrames() {
+        return totalFrames;
+    }
+
+    public int getFramesPerPeak() {
+        return framesPerPeak;
+    }
+
+    public int getPeakCount() {
+        return minMax.length / 2;
+    }
+
+    public byte getMin(int peak) {
+        return minMax[2 * peak];
+    }
+
+    public byte getMax(int peak) {
+        return minMax[2 * peak + 1];
+    }
+
+    public long getDurationMillis() {
+        return sampleRate > 0 ? totalFrames * 1000 / sampleRate : 0;
+    }
+}
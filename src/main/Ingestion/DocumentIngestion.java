@@ -0,0 +1,109 @@
+package Ingestion;
+
+import DomainModel.DocumentFormat;
+import DomainModel.ScoreMetadata;
+import ORM.MelodyIndexDAO;
+import ORM.ScoreMetadataDAO;
+import Storage.BlobStore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Fase di acquisizione eseguita dopo il salvataggio del file di un documento: legge il contenuto
+ * in streaming dall'archivio e ne estrae i dati indicizzati previsti per il suo formato.
+ * I formati senza estrazione vengono ignorati. Un errore di estrazione non annulla l'upload:
+ * il documento resta valido, solo senza i dati indicizzati.
+ * La decodifica degli audio è lenta e non tocca il database: avviene su un thread in background,
+ * una volta sola per contenuto (i picchi restano accanto al file nell'archivio).
+ */
+public class DocumentIngestion {
+    private static final Logger LOGGER = Logger.getLogger(DocumentIngestion.class.getName());
+    private static ExecutorService background; // thread della decodifica audio, creato al primo uso
+
+    private final BlobStore store;
+
+    public DocumentIngestion() {
+        this(BlobStore.getInstance());
+    }
+
+    DocumentIngestion(BlobStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Restituisce false se l'estrazione prevista per il formato non è riuscita.
+     */
+    public boolean ingest(int documentId, DocumentFormat format, String contentHash) {
+        if (format == null || contentHash == null)
+            return true;
+        try {
+            switch (format) {
+                case MUSICXML:
+                    return ingestMusicXml(documentId, contentHash);
+                case MIDI:
+                    return ingestMidi(documentId, contentHash);
+                case AUDIO:
+                    if (!store.hasSidecar(contentHash, WaveformPeaksExtractor.SIDECAR_KIND))
+                        backgroundExecutor().execute(() -> computeWaveform(documentId, contentHash));
+                    return true;
+                default:
+                    return true;
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Errore durante ingest(docId=" + documentId + ", format=" + format + ")", e);
+            return false;
+        }
+    }
+
+    /**
+     * Calcola e salva i picchi della forma d'onda di un contenuto audio; restituisce false in caso di errore.
+     */
+    boolean computeWaveform(int documentId, String contentHash) {
+        try {
+            byte[] peaks;
+            try (InputStream in = store.open(contentHash)) {
+                peaks = new WaveformPeaksExtractor().extract(in);
+            }
+            store.putSidecar(contentHash, WaveformPeaksExtractor.SIDECAR_KIND, peaks);
+            return true;
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Errore durante computeWaveform(docId=" + documentId + ")", e);
+            return false;
+        }
+    }
+
+    //------ private methods
+
+    private static synchronized ExecutorService backgroundExecutor() {
+        if (background == null) {
+            background = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "audio-ingestion");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return background;
+    }
+
+    private boolean ingestMusicXml(int documentId, String contentHash) throws IOException {
+        ScoreMetadata metadata;
+        try (InputStream in = store.open(contentHash)) {
+            metadata = new MusicXmlMetadataExtractor().extract(in);
+        }
+        return new ScoreMetadataDAO().saveMetadata(documentId, metadata);
+    }
+
+    private boolean ingestMidi(int documentId, String contentHash) throws IOException {
+        List<int[]> melodies;
+        try (InputStream in = store.open(contentHash)) {
+            melodies = new MidiMelodyExtractor().extract(in);
+        }
+        return new MelodyIndexDAO().replaceNgrams(documentId, MelodyNgrams.count(melodies));
+    }
+}
@@ -0,0 +1,48 @@
+package Ingestion;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * N-grammi di intervalli usati per la ricerca per melodia. Una melodia è la sequenza delle altezze
+ * MIDI delle sue note: si tiene solo la differenza tra note consecutive, così la stessa melodia
+ * trasposta in un'altra tonalità produce gli stessi gram.
+ * Ogni gram è formato da SIZE intervalli consecutivi (SIZE + 1 note), limitati a ±63 semitoni e
+ * codificati 7 bit ciascuno in un intero non negativo.
+ */
+public final class MelodyNgrams {
+    public static final int SIZE = 4;
+    private static final int MAX_INTERVAL = 63;
+
+    private MelodyNgrams() {
+    }
+
+    /**
+     * Gram distinti delle melodie con il numero di occorrenze; le melodie con meno di SIZE + 1 note non ne producono.
+     */
+    public static Map<Integer, Integer> count(List<int[]> melodies) {
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (int[] pitches : melodies) {
+            for (int start = 0; start + SIZE < pitches.length; start++) {
+                counts.merge(encode(pitches, start), 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    public static Map<Integer, Integer> count(int[] pitches) {
+        return count(List.of(pitches));
+    }
+
+    //------ private methods
+
+    private static int encode(int[] pitches, int start) {
+        int gram = 0;
+        for (int i = start; i < start + SIZE; i++) {
+            int interval = Math.max(-MAX_INTERVAL, Math.min(MAX_INTERVAL, pitches[i + 1] - pitches[i]));
+            gram = (gram << 7) | (interval + MAX_INTERVAL);
+        }
+        return gram;
+    }
+}
@@ -0,0 +1,58 @@
+package Ingestion;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Estrae le linee melodiche di un file MIDI con javax.sound.midi: una per ogni coppia traccia/canale
+ * (i file di tipo 0 hanno tutti i canali in una sola traccia). Quando più note iniziano nello stesso
+ * istante si tiene la più acuta, che negli accordi porta di solito la melodia.
+ * Il canale delle percussioni (10) viene ignorato perché le sue note non hanno altezza.
+ */
+public class MidiMelodyExtractor {
+    private static final int DRUM_CHANNEL = 9;
+
+    /**
+     * Legge il file dallo stream (che non viene chiuso) e restituisce le altezze di ogni linea, in ordine di tempo.
+     */
+    public List<int[]> extract(InputStream content) throws IOException {
+        Sequence sequence;
+        try {
+            // getSequence ha bisogno di mark/reset per riconoscere il tipo di file
+            sequence = MidiSystem.getSequence(new BufferedInputStream(content));
+        } catch (InvalidMidiDataException e) {
+            throw new IOException("MIDI non valido: " + e.getMessage(), e);
+        }
+        List<int[]> melodies = new ArrayList<>();
+        for (Track track : sequence.getTracks()) {
+            // per canale: istante di inizio -> nota più acuta
+            Map<Integer, TreeMap<Long, Integer>> channels = new TreeMap<>();
+            for (int i = 0; i < track.size(); i++) {
+                MidiEvent event = track.get(i);
+                if (!(event.getMessage() instanceof ShortMessage))
+                    continue;
+                ShortMessage message = (ShortMessage) event.getMessage();
+                // un NOTE_ON con velocità 0 equivale a un NOTE_OFF
+                if (message.getCommand() != ShortMessage.NOTE_ON || message.getData2() == 0 || message.getChannel() == DRUM_CHANNEL)
+                    continue;
+                channels.computeIfAbsent(message.getChannel(), c -> new TreeMap<>())
+                        .merge(event.getTick(), message.getData1(), Math::max);
+            }
+            for (TreeMap<Long, Integer> notes : channels.values()) {
+                melodies.add(notes.values().stream().mapToInt(Integer::intValue).toArray());
+            }
+        }
+        return melodies;
+    }
+}
@@ -0,0 +1,203 @@
+package Ingestion;
+
+import DomainModel.ScoreMetadata;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Estrae i metadati di una partitura MusicXML leggendola in streaming con StAX: la memoria usata
+ * non dipende dalla lunghezza della partitura (si tiene solo la pila degli elementi aperti).
+ * Sono supportati sia il formato partwise sia il timewise, e anche il MusicXML compresso (.mxl),
+ * di cui si legge il primo file .xml fuori da META-INF.
+ * Di tonalità, metro e tempo si tiene la prima indicazione della partitura.
+ */
+public class MusicXmlMetadataExtractor {
+    private static final String[] MAJOR_KEYS = {"Cb", "Gb", "Db", "Ab", "Eb", "Bb", "F", "C", "G", "D", "A", "E", "B", "F#", "C#"};
+    private static final String[] MINOR_KEYS = {"Ab", "Eb", "Bb", "F", "C", "G", "D", "A", "E", "B", "F#", "C#", "G#", "D#", "A#"};
+    private static final Pattern TEMPO = Pattern.compile("\\d+(\\.\\d+)?");
+
+    private final XMLInputFactory factory;
+
+    public MusicXmlMetadataExtractor() {
+        factory = XMLInputFactory.newInstance();
+        // i file MusicXML dichiarano un DTD remoto: non va scaricato né interpretato
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    }
+
+    /**
+     * Legge la partitura dallo stream (che non viene chiuso) e ne restituisce i metadati.
+     */
+    public ScoreMetadata extract(InputStream content) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(content);
+        in.mark(4);
+        byte[] magic = in.readNBytes(4);
+        in.reset();
+        if (magic.length == 4 && magic[0] == 'P' && magic[1] == 'K' && magic[2] == 3 && magic[3] == 4)
+            return extractCompressed(in);
+        return parse(in);
+    }
+
+    //------ private methods
+
+    private ScoreMetadata extractCompressed(InputStream in) throws IOException {
+        ZipInputStream zip = new ZipInputStream(in);
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            String name = entry.getName();
+            if (!entry.isDirectory() && name.toLowerCase(Locale.ROOT).endsWith(".xml") && !name.startsWith("META-INF/"))
+                return parse(zip);
+        }
+        throw new IOException("Archivio MusicXML senza partitura");
+    }
+
+    private ScoreMetadata parse(InputStream in) throws IOException {
+        ScoreMetadata metadata = new ScoreMetadata();
+        Set<String> instruments = new LinkedHashSet<>();
+        Deque<String> open = new ArrayDeque<>();
+        boolean timewise = false;
+        int partIndex = 0;
+        int measures = 0;
+        Integer fifths = null;
+        String mode = null;
+        String beats = null;
+        String beatType = null;
+
+        XMLStreamReader reader = null;
+        try {
+            reader = factory.createXMLStreamReader(in);
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.END_ELEMENT) {
+                    String name = open.pop();
+                    if (name.equals("key") && metadata.getKeySignature() == null && fifths != null)
+                        metadata.setKeySignature(keyName(fifths, mode));
+                    else if (name.equals("time") && metadata.getTimeSignature() == null && beats != null && beatType != null)
+                        metadata.setTimeSignature(beats + "/" + beatType);
+                    continue;
+                }
+                if (event != XMLStreamConstants.START_ELEMENT)
+                    continue;
+
+                String name = reader.getLocalName();
+                String parent = open.peek();
+                switch (name) {
+                    case "score-timewise":
+                        timewise = true;
+                        break;
+                    case "part":
+                        if ("score-partwise".equals(parent))
+                            partIndex++;
+                        break;
+                    case "measure":
+                        // si contano le battute una volta sola: nella prima parte (partwise) o al primo livello (timewise)
+                        if (timewise ? "score-timewise".equals(parent) : partIndex == 1)
+                            measures++;
+                        break;
+                    case "creator":
+                        if (metadata.getComposer() == null && "composer".equals(reader.getAttributeValue(null, "type"))) {
+                            metadata.setComposer(blankToNull(reader.getElementText()));
+                            continue; // getElementText ha già consumato la chiusura dell'elemento
+                        }
+                        break;
+                    case "part-name":
+                        if ("score-part".equals(parent)) {
+                            String part = blankToNull(reader.getElementText());
+                            if (part != null)
+                                instruments.add(part.toLowerCase(Locale.ROOT));
+                            continue;
+                        }
+                        break;
+                    case "fifths":
+                    case "mode":
+                    case "beats":
+                    case "beat-type":
+                    case "per-minute": {
+                        String text = reader.getElementText().trim();
+                        if ("key".equals(parent) && metadata.getKeySignature() == null) {
+                            if (name.equals("fifths"))
+                                fifths = parseInt(text);
+                            else if (name.equals("mode"))
+                                mode = text;
+                        } else if ("time".equals(parent) && metadata.getTimeSignature() == null) {
+                            if (name.equals("beats"))
+                                beats = text;
+                            else if (name.equals("beat-type"))
+                                beatType = text;
+                        } else if (name.equals("per-minute") && metadata.getTempo() == null) {
+                            metadata.setTempo(parseTempo(text));
+                        }
+                        continue;
+                    }
+                    case "sound":
+                        if (metadata.getTempo() == null)
+                            metadata.setTempo(parseTempo(reader.getAttributeValue(null, "tempo")));
+                        break;
+                    default:
+                        break;
+                }
+                open.push(name);
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("MusicXML non valido: " + e.getMessage(), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ignored) {
+                    // lo stream sottostante è del chiamante
+                }
+            }
+        }
+        metadata.setInstruments(new ArrayList<>(instruments));
+        metadata.setMeasureCount(measures);
+        return metadata;
+    }
+
+    private static String keyName(int fifths, String mode) {
+        if (fifths < -7 || fifths > 7)
+            return null;
+        boolean minor = "minor".equalsIgnoreCase(mode);
+        return (minor ? MINOR_KEYS : MAJOR_KEYS)[fifths + 7] + (minor ? " minor" : " major");
+    }
+
+    private static Integer parseInt(String text) {
+        try {
+            return Integer.parseInt(text.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // accetta "120", "96.5" o indicazioni come "c. 120"
+    private static Integer parseTempo(String text) {
+        if (text == null)
+            return null;
+        Matcher number = TEMPO.matcher(text);
+        if (!number.find())
+            return null;
+        long bpm = Math.round(Double.parseDouble(number.group()));
+        return bpm > 0 ? (int) bpm : null;
+    }
+
+    private static String blankToNull(String text) {
+        return text == null || text.isBlank() ? null : text.trim();
+    }
+}
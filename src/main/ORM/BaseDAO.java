@@ -4,21 +4,68 @@ import java.sql.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+// la connessione dei DAO arriva dal pool con una cache di PreparedStatement (vedi StatementCache):
+// prepareStatement(sql) + close() riusano lo statement già preparato per lo stesso SQL.
+// È la connessione del thread (DBConnection.getThreadConnection): viene presa dal pool alla prima query e
+// restituita appena il DAO chiude i suoi statement, a meno che non ci sia una transazione aperta
 public class BaseDAO {
+    // righe per ogni executeBatch negli inserimenti massivi
+    protected static final int BATCH_SIZE = 1000;
     protected Connection connection;
     private static final Logger LOGGER = Logger.getLogger(BaseDAO.class.getName());
 
     protected BaseDAO() {
         try{
-            connection = DBConnection.getInstance().getConnection();
+            connection = DBConnection.getInstance().getThreadConnection();
         }catch (SQLException e){
             LOGGER.log(Level.SEVERE, "Errore durante l'ottenimento della connessione al database", e);
             throw new IllegalStateException("Impossibile stabilire la connessione al database", e);
         }
     }
 
+    // DAO su una connessione presa dal chiamante (es. DocumentBatchLoader), che la chiude quando ha finito
+    protected BaseDAO(Connection connection) {
+        this.connection = connection;
+    }
+
     protected Connection getConnection() throws SQLException{
-        return connection = DBConnection.getInstance().getConnection();
+        return connection = DBConnection.getInstance().getThreadConnection();
+    }
+    // true se la connessione è dentro una transazione aperta: le cache in memoria non devono
+    // registrare dati che un rollback potrebbe annullare
+    protected boolean inTransaction() {
+        try {
+            return !connection.getAutoCommit();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+    // da chiamare nei catch delle scritture: se è attiva una UnitOfWork verrà annullata
+    protected void markRollbackOnly(Exception e) {
+        UnitOfWork.markRollbackOnly(e);
+    }
+    // aggiorna una struttura in memoria (indici, cache) solo quando la modifica è confermata: subito in
+    // autocommit, dopo il commit dentro una UnitOfWork; in una transazione di cui non si conosce l'esito la invalida
+    // subito e di nuovo a fine transazione, così non resta in cache lo stato ricaricato da un altro thread prima del commit
+    protected void afterCommit(Runnable update, Runnable invalidate) {
+        if (!inTransaction()) {
+            update.run();
+        } else if (!UnitOfWork.runAfterCommit(update)) {
+            invalidate.run();
+            ConnectionPool.runAtTransactionEnd(connection, invalidate);
+        }
+    }
+    @FunctionalInterface
+    protected interface KeyReader {
+        void read(ResultSet keys) throws SQLException;
+    }
+    // esegue il batch e passa a reader le chiavi delle righe inserite (statement preparato con i nomi delle colonne)
+    protected static void executeBatch(PreparedStatement ps, KeyReader reader) throws SQLException {
+        ps.executeBatch();
+        try (ResultSet keys = ps.getGeneratedKeys()) {
+            while (keys.next())
+                reader.read(keys);
+        }
     }
     protected Connection closeConnection() throws SQLException{
         connection.close();
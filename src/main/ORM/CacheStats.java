@@ -0,0 +1,37 @@
+package ORM;
+
+/**
+ * Fotografia delle statistiche di una cache (hit, miss, evizioni, dimensione corrente).
+ */
+public class CacheStats {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final int size;
+
+    public CacheStats(long hits, long misses, long evictions, int size) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.size = size;
+    }
+
+    public long getHits() { return hits; }
+
+    public long getMisses() { return misses; }
+
+    public long getEvictions() { return evictions; }
+
+    public int getSize() { return size; }
+
+    public double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return "[hits=" + hits + ", misses=" + misses + ", evictions=" + evictions
+                + ", size=" + size + ", hitRate=" + String.format("%.2f", getHitRate()) + "]";
+    }
+}
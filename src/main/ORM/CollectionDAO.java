@@ -4,6 +4,7 @@ import DomainModel.Document;
 import DomainModel.DocumentRelationType;
 import DomainModel.User;
 import DomainModel.Collection;
+import DomainModel.Page;
 
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -29,6 +30,7 @@ public class CollectionDAO extends BaseDAO {
             ps.close();
         }catch (SQLException e){
             LOGGER.log(Level.SEVERE, "Errore durante addCollection(userId=" + (user!=null?user.getId():null) + ")", e);
+            markRollbackOnly(e);
         }
     }
     public void deleteCollection(int collectionId){
@@ -52,6 +54,7 @@ public class CollectionDAO extends BaseDAO {
             ps3.close();
         }catch (SQLException e){
             LOGGER.log(Level.SEVERE, "Errore durante deleteCollection(id=" + collectionId + ")", e);
+            markRollbackOnly(e);
         }
     }
     public void addDocumentToCollection(int documentId, int collectionId){
@@ -64,6 +67,34 @@ public class CollectionDAO extends BaseDAO {
             ps.close();
         }catch (SQLException e){
             LOGGER.log(Level.SEVERE, "Errore durante addDocumentToCollection(docId=" + documentId + ", collectionId=" + collectionId + ")", e);
+            markRollbackOnly(e);
+        }
+    }
+    // inserimento massivo con batch JDBC; i documenti già presenti nella collezione vengono ignorati.
+    // Restituisce gli id dei documenti effettivamente aggiunti, oppure null in caso di errore
+    public List<Integer> addDocumentsToCollection(java.util.Collection<Integer> documentIds, int collectionId){
+        List<Integer> added = new ArrayList<>();
+        if(documentIds==null || documentIds.isEmpty())
+            return added;
+        try{
+            String query="INSERT INTO document_collection (collection_id,document_id) VALUES(?,?) ON CONFLICT DO NOTHING";
+            PreparedStatement ps=connection.prepareStatement(query, new String[]{"document_id"});
+            int pending=0;
+            for(int documentId : documentIds){
+                ps.setInt(1,collectionId);
+                ps.setInt(2,documentId);
+                ps.addBatch();
+                if(++pending % BATCH_SIZE == 0)
+                    executeBatch(ps, keys -> added.add(keys.getInt("document_id")));
+            }
+            if(pending % BATCH_SIZE != 0)
+                executeBatch(ps, keys -> added.add(keys.getInt("document_id")));
+            ps.close();
+            return added;
+        }catch (SQLException e){
+            LOGGER.log(Level.SEVERE, "Errore durante addDocumentsToCollection(size=" + documentIds.size() + ", collectionId=" + collectionId + ")", e);
+            markRollbackOnly(e);
+            return null;
         }
     }
     public void removeDocumentFromCollection(int documentId, int collectionId){
@@ -76,6 +107,7 @@ public class CollectionDAO extends BaseDAO {
             ps.close();
         }catch (SQLException e){
             LOGGER.log(Level.SEVERE, "Errore durante removeDocumentFromCollection(docId=" + documentId + ", collectionId=" + collectionId + ")", e);
+            markRollbackOnly(e);
 
         }
     }
@@ -103,13 +135,13 @@ public class CollectionDAO extends BaseDAO {
             PreparedStatement ps=connection.prepareStatement(query);
             ps.setInt(1,collectionId);
             ResultSet rs=ps.executeQuery();
+            List<Integer> documentIds=new ArrayList<>();
             while(rs.next()){
-                DocumentDAO docDao=new DocumentDAO();
-                Document doc=docDao.getDocumentById(rs.getInt("document_id"));
-                documents.add(doc);
+                documentIds.add(rs.getInt("document_id"));
             }
             rs.close();
             ps.close();
+            documents.addAll(new DocumentDAO().getDocumentsByIds(documentIds));
         }catch (SQLException e){
             LOGGER.log(Level.SEVERE, "Errore durante getDocumentsByCollection(collectionId=" + collectionId + ")", e);
         }
@@ -131,6 +163,32 @@ public class CollectionDAO extends BaseDAO {
         }
         return collections;
     }
+    //paginazione keyset per id: afterId è l'id dell'ultima collezione della pagina precedente (null per la prima)
+    public Page<Collection> getCollectionsPage(Integer afterId, int pageSize){
+        if (pageSize <= 0)
+            throw new IllegalArgumentException("pageSize must be positive");
+        List<Collection> collections=new ArrayList<>();
+        boolean hasNext=false;
+        try{
+            String query="SELECT * FROM collection WHERE id > ? ORDER BY id LIMIT ?";
+            PreparedStatement ps=connection.prepareStatement(query);
+            ps.setInt(1,afterId!=null?afterId:0);
+            ps.setInt(2,pageSize+1);
+            ResultSet rs=ps.executeQuery();
+            while(rs.next()){
+                collections.add(createCollectionFromResultSet(rs));
+            }
+            rs.close();
+            ps.close();
+            if(collections.size()>pageSize){
+                hasNext=true;
+                collections.remove(collections.size()-1);
+            }
+        }catch (SQLException e){
+            LOGGER.log(Level.SEVERE, "Errore durante getCollectionsPage(afterId=" + afterId + ")", e);
+        }
+        return new Page<>(collections,hasNext);
+    }
     public Collection getCollectionById(int collectionId){
         Collection c=null;
         try{
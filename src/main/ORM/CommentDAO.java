@@ -26,6 +26,7 @@ public class CommentDAO extends BaseDAO {
             statement.close();
         }catch(Exception e){
             LOGGER.log(Level.SEVERE, "Errore durante addComment(userId=" + commentAuthorId + ", docId=" + documentId + ")", e);
+            markRollbackOnly(e);
         }
     }
     public void removeComment(int commentId){
@@ -37,6 +38,7 @@ public class CommentDAO extends BaseDAO {
             statement.close();
         }catch(Exception e){
             LOGGER.log(Level.SEVERE, "Errore durante removeComment(id=" + commentId + ")", e);
+            markRollbackOnly(e);
         }
     }
     public List<Comment> getCommentsByAuthor(int userId){
@@ -0,0 +1,369 @@
+package ORM;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Insieme di interi non negativi compresso "alla Roaring": gli id sono divisi in blocchi da 65536 valori
+ * (16 bit alti) e ogni blocco è salvato come array ordinato se contiene pochi valori o come bitmap
+ * da 8KB se è denso. Usato dal TagIndex per le posting list tag -> documenti.
+ * Non è thread-safe: la sincronizzazione è a carico del chiamante.
+ */
+public class CompressedBitmap {
+    // oltre questa soglia un blocco occupa meno spazio come bitmap che come array di char
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1024; // 65536 bit
+
+    private final TreeMap<Integer, Container> containers = new TreeMap<>();
+
+    public static CompressedBitmap of(int... values) {
+        CompressedBitmap b = new CompressedBitmap();
+        for (int v : values) {
+            b.add(v);
+        }
+        return b;
+    }
+
+    public void add(int value) {
+        checkValue(value);
+        int key = value >>> 16;
+        Container c = containers.get(key);
+        if (c == null) {
+            c = new ArrayContainer();
+            containers.put(key, c);
+        }
+        Container updated = c.add((char) value);
+        if (updated != c)
+            containers.put(key, updated);
+    }
+
+    public void remove(int value) {
+        if (value < 0)
+            return;
+        int key = value >>> 16;
+        Container c = containers.get(key);
+        if (c == null)
+            return;
+        Container updated = c.remove((char) value);
+        if (updated.cardinality() == 0)
+            containers.remove(key);
+        else if (updated != c)
+            containers.put(key, updated);
+    }
+
+    public boolean contains(int value) {
+        if (value < 0)
+            return false;
+        Container c = containers.get(value >>> 16);
+        return c != null && c.contains((char) value);
+    }
+
+    public int cardinality() {
+        int total = 0;
+        for (Container c : containers.values()) {
+            total += c.cardinality();
+        }
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return containers.isEmpty();
+    }
+
+    public CompressedBitmap and(CompressedBitmap other) {
+        CompressedBitmap out = new CompressedBitmap();
+        for (Map.Entry<Integer, Container> e : containers.entrySet()) {
+            Container o = other.containers.get(e.getKey());
+            if (o == null)
+                continue;
+            Container r = e.getValue().and(o);
+            if (r.cardinality() > 0)
+                out.containers.put(e.getKey(), r);
+        }
+        return out;
+    }
+
+    public CompressedBitmap or(CompressedBitmap other) {
+        CompressedBitmap out = new CompressedBitmap();
+        for (Map.Entry<Integer, Container> e : containers.entrySet()) {
+            Container o = other.containers.get(e.getKey());
+            out.containers.put(e.getKey(), o == null ? e.getValue().copy() : e.getValue().or(o));
+        }
+        for (Map.Entry<Integer, Container> e : other.containers.entrySet()) {
+            if (!containers.containsKey(e.getKey()))
+                out.containers.put(e.getKey(), e.getValue().copy());
+        }
+        return out;
+    }
+
+    public CompressedBitmap andNot(CompressedBitmap other) {
+        CompressedBitmap out = new CompressedBitmap();
+        for (Map.Entry<Integer, Container> e : containers.entrySet()) {
+            Container o = other.containers.get(e.getKey());
+            Container r = o == null ? e.getValue().copy() : e.getValue().andNot(o);
+            if (r.cardinality() > 0)
+                out.containers.put(e.getKey(), r);
+        }
+        return out;
+    }
+
+    public CompressedBitmap copy() {
+        CompressedBitmap out = new CompressedBitmap();
+        for (Map.Entry<Integer, Container> e : containers.entrySet()) {
+            out.containers.put(e.getKey(), e.getValue().copy());
+        }
+        return out;
+    }
+
+    /**
+     * Restituisce i valori in ordine crescente.
+     */
+    public int[] toArray() {
+        int[] out = new int[cardinality()];
+        int pos = 0;
+        for (Map.Entry<Integer, Container> e : containers.entrySet()) {
+            pos = e.getValue().fill(out, pos, e.getKey() << 16);
+        }
+        return out;
+    }
+
+    //------ private methods
+
+    private static void checkValue(int value) {
+        if (value < 0)
+            throw new IllegalArgumentException("CompressedBitmap supporta solo valori non negativi: " + value);
+    }
+
+    private interface Container {
+        Container add(char low);
+        Container remove(char low);
+        boolean contains(char low);
+        int cardinality();
+        Container copy();
+        int fill(int[] out, int pos, int high);
+        long[] toWords();
+
+        default Container and(Container other) {
+            return fromWords(CompressedBitmap.and(toWords(), other.toWords()));
+        }
+
+        default Container or(Container other) {
+            return fromWords(CompressedBitmap.or(toWords(), other.toWords()));
+        }
+
+        default Container andNot(Container other) {
+            return fromWords(CompressedBitmap.andNot(toWords(), other.toWords()));
+        }
+    }
+
+    private static long[] and(long[] a, long[] b) {
+        long[] r = new long[BITMAP_WORDS];
+        for (int i = 0; i < BITMAP_WORDS; i++) r[i] = a[i] & b[i];
+        return r;
+    }
+
+    private static long[] or(long[] a, long[] b) {
+        long[] r = new long[BITMAP_WORDS];
+        for (int i = 0; i < BITMAP_WORDS; i++) r[i] = a[i] | b[i];
+        return r;
+    }
+
+    private static long[] andNot(long[] a, long[] b) {
+        long[] r = new long[BITMAP_WORDS];
+        for (int i = 0; i < BITMAP_WORDS; i++) r[i] = a[i] & ~b[i];
+        return r;
+    }
+
+    // sceglie la rappresentazione più compatta per il risultato di un'operazione
+    private static Container fromWords(long[] words) {
+        int card = 0;
+        for (long w : words) card += Long.bitCount(w);
+        if (card > ARRAY_MAX)
+            return new BitmapContainer(words, card);
+        char[] values = new char[card];
+        int pos = 0;
+        for (int i = 0; i < BITMAP_WORDS; i++) {
+            long w = words[i];
+            while (w != 0) {
+                values[pos++] = (char) (i * 64 + Long.numberOfTrailingZeros(w));
+                w &= w - 1;
+            }
+        }
+        return new ArrayContainer(values, card);
+    }
+
+    private static final class ArrayContainer implements Container {
+        private char[] values;
+        private int size;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int size) {
+            this.values = values;
+            this.size = size;
+        }
+
+        @Override
+        public Container add(char low) {
+            int idx = Arrays.binarySearch(values, 0, size, low);
+            if (idx >= 0)
+                return this;
+            if (size >= ARRAY_MAX) {
+                BitmapContainer b = new BitmapContainer(toWords(), size);
+                return b.add(low);
+            }
+            int ins = -idx - 1;
+            if (size == values.length)
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, Math.max(4, values.length * 2)));
+            System.arraycopy(values, ins, values, ins + 1, size - ins);
+            values[ins] = low;
+            size++;
+            return this;
+        }
+
+        @Override
+        public Container remove(char low) {
+            int idx = Arrays.binarySearch(values, 0, size, low);
+            if (idx >= 0) {
+                System.arraycopy(values, idx + 1, values, idx, size - idx - 1);
+                size--;
+            }
+            return this;
+        }
+
+        @Override
+        public boolean contains(char low) {
+            return Arrays.binarySearch(values, 0, size, low) >= 0;
+        }
+
+        @Override
+        public int cardinality() {
+            return size;
+        }
+
+        @Override
+        public Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(size, 1)), size);
+        }
+
+        @Override
+        public int fill(int[] out, int pos, int high) {
+            for (int i = 0; i < size; i++) {
+                out[pos++] = high | values[i];
+            }
+            return pos;
+        }
+
+        @Override
+        public long[] toWords() {
+            long[] words = new long[BITMAP_WORDS];
+            for (int i = 0; i < size; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+            return words;
+        }
+
+        // intersezione tra array ordinati senza passare dalla bitmap
+        @Override
+        public Container and(Container other) {
+            if (!(other instanceof ArrayContainer))
+                return other.and(this);
+            ArrayContainer o = (ArrayContainer) other;
+            char[] r = new char[Math.min(size, o.size)];
+            int i = 0, j = 0, k = 0;
+            while (i < size && j < o.size) {
+                if (values[i] < o.values[j]) i++;
+                else if (values[i] > o.values[j]) j++;
+                else {
+                    r[k++] = values[i];
+                    i++;
+                    j++;
+                }
+            }
+            return new ArrayContainer(r, k);
+        }
+    }
+
+    private static final class BitmapContainer implements Container {
+        private final long[] words;
+        private int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        public Container add(char low) {
+            long mask = 1L << low;
+            if ((words[low >>> 6] & mask) == 0) {
+                words[low >>> 6] |= mask;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        public Container remove(char low) {
+            long mask = 1L << low;
+            if ((words[low >>> 6] & mask) != 0) {
+                words[low >>> 6] &= ~mask;
+                cardinality--;
+                if (cardinality <= ARRAY_MAX / 2)
+                    return fromWords(words);
+            }
+            return this;
+        }
+
+        @Override
+        public boolean contains(char low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        public int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        public Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        public int fill(int[] out, int pos, int high) {
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long w = words[i];
+                while (w != 0) {
+                    out[pos++] = high | (i * 64 + Long.numberOfTrailingZeros(w));
+                    w &= w - 1;
+                }
+            }
+            return pos;
+        }
+
+        @Override
+        public long[] toWords() {
+            return words;
+        }
+
+        // l'intersezione con un array piccolo si fa controllando i singoli valori
+        @Override
+        public Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                ArrayContainer o = (ArrayContainer) other;
+                char[] r = new char[o.size];
+                int k = 0;
+                for (int i = 0; i < o.size; i++) {
+                    if (contains(o.values[i]))
+                        r[k++] = o.values[i];
+                }
+                return new ArrayContainer(r, k);
+            }
+            return fromWords(CompressedBitmap.and(words, other.toWords()));
+        }
+    }
+}
@@ -0,0 +1,698 @@
+package ORM;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.lang.ref.WeakReference;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pool limitato di connessioni JDBC usato da DBConnection.
+ * Le connessioni restituite sono proxy: close() le riconsegna al pool invece di chiudere il socket.
+ * Un thread di manutenzione rimuove le connessioni inattive oltre il minimo, segnala i possibili leak
+ * e si riprende le connessioni abbandonate (thread terminato, oppure nessun uso per abandonTimeoutMillis).
+ * Ogni connessione fisica ha la sua StatementCache: prepareStatement(sql) riusa gli statement già preparati.
+ * threadConnection() lega una connessione al thread solo per il tempo in cui la usa (vedi ThreadBinding).
+ */
+public class ConnectionPool {
+    private static final Logger LOGGER = Logger.getLogger(ConnectionPool.class.getName());
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long acquireTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long leakDetectionThresholdMillis;
+    private final long abandonTimeoutMillis;
+    private final int validationTimeoutSeconds;
+    private final int statementCacheSize;
+
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> leased = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService housekeeper;
+    private final ThreadLocal<ThreadBinding> bindings = new ThreadLocal<>();
+    private volatile boolean closed = false;
+    // una connessione usata da poco non viene rivalidata con un round trip verso il DB
+    private static final long VALIDATION_BYPASS_MS = 500;
+
+    // metriche
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+    private final AtomicLong reclaimedCount = new AtomicLong();
+    private final AtomicLong statementHits = new AtomicLong();
+    private final AtomicLong statementMisses = new AtomicLong();
+    private final AtomicLong statementEvictions = new AtomicLong();
+
+    public ConnectionPool(String url, String user, String password,
+                          int minSize, int maxSize,
+                          long acquireTimeoutMillis, long idleTimeoutMillis,
+                          long leakDetectionThresholdMillis, long abandonTimeoutMillis, int validationTimeoutSeconds,
+                          int statementCacheSize) throws SQLException {
+        if (minSize < 0 || maxSize <= 0 || minSize > maxSize)
+            throw new IllegalArgumentException("Dimensioni del pool non valide (min=" + minSize + ", max=" + maxSize + ")");
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.leakDetectionThresholdMillis = leakDetectionThresholdMillis;
+        this.abandonTimeoutMillis = abandonTimeoutMillis;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        // riempie subito il pool fino al minimo: se il DB non è raggiungibile fallisce qui, come prima
+        for (int i = 0; i < minSize; i++) {
+            idle.offerLast(createPhysical());
+        }
+
+        long period = Math.max(1000L, Math.min(idleTimeoutMillis, 30_000L) / 2);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        this.housekeeper.scheduleWithFixedDelay(this::housekeep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Prende in prestito una connessione, attendendo al massimo acquireTimeoutMillis.
+     * Le connessioni inattive da più di VALIDATION_BYPASS_MS vengono validate prima di essere consegnate.
+     */
+    public Connection borrow() throws SQLException {
+        if (closed)
+            throw new SQLException("Il pool di connessioni è stato chiuso");
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeoutCount.incrementAndGet();
+                throw new SQLException("Timeout di " + acquireTimeoutMillis + "ms nell'ottenere una connessione dal pool " + getStats());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrotto in attesa di una connessione dal pool", e);
+        }
+        try {
+            PooledConnection pc;
+            long now = System.currentTimeMillis();
+            while ((pc = idle.pollFirst()) != null) {
+                if (isUsable(pc, now))
+                    break;
+                discard(pc);
+            }
+            if (pc == null)
+                pc = createPhysical();
+            pc.lease();
+            leased.add(pc);
+            borrowCount.incrementAndGet();
+            return pc.proxy;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Esegue l'azione alla fine della transazione aperta sulla connessione (commit, rollback o ritorno al pool),
+     * qualunque sia l'esito. Restituisce false se la connessione non viene da un pool.
+     */
+    static boolean runAtTransactionEnd(Connection connection, Runnable action) {
+        if (connection == null || !Proxy.isProxyClass(connection.getClass()))
+            return false;
+        InvocationHandler handler = Proxy.getInvocationHandler(connection);
+        PooledConnection pc = null;
+        if (handler instanceof PooledConnection)
+            pc = (PooledConnection) handler;
+        else if (handler instanceof ThreadBinding)
+            pc = ((ThreadBinding) handler).current();
+        if (pc == null)
+            return false;
+        pc.transactionEndActions.add(action);
+        return true;
+    }
+
+    /**
+     * Connessione del thread corrente, senza prenderla subito dal pool. Ogni chiamata usa la connessione che il
+     * thread ha in prestito, prendendone una se non ne ha; la connessione torna al pool da sola appena è libera,
+     * cioè in autocommit e senza statement aperti. Una transazione aperta la tiene legata al thread fino alla fine.
+     */
+    public Connection threadConnection() {
+        return binding().handle;
+    }
+
+    /**
+     * Come threadConnection(), ma prende subito una connessione dal pool se il thread non ne ha.
+     */
+    public Connection bindThreadConnection() throws SQLException {
+        ThreadBinding b = binding();
+        b.bind();
+        return b.handle;
+    }
+
+    /**
+     * Riconsegna subito la connessione del thread corrente, annullando un'eventuale transazione aperta.
+     */
+    public void releaseThreadConnection() {
+        ThreadBinding b = bindings.get();
+        if (b != null)
+            b.unbind();
+    }
+
+    /**
+     * True se il thread corrente ha una connessione con una transazione aperta. Non prende connessioni dal pool.
+     */
+    public boolean threadInTransaction() {
+        ThreadBinding b = bindings.get();
+        if (b == null || b.pc == null || b.pc.returned)
+            return false;
+        try {
+            return !b.pc.physical.getAutoCommit();
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    void release(PooledConnection pc) {
+        if (!leased.remove(pc))
+            return; // già restituita
+        try {
+            if (closed || pc.physical.isClosed()) {
+                discard(pc);
+            } else {
+                // riporta la connessione allo stato di default per il prossimo utilizzatore
+                if (pc.statements != null)
+                    pc.statements.releaseAll();
+                pc.closeUncachedStatements();
+                if (!pc.physical.getAutoCommit()) {
+                    pc.physical.rollback();
+                    pc.physical.setAutoCommit(true);
+                }
+                pc.endTransaction();
+                pc.lastUsed = System.currentTimeMillis();
+                idle.offerFirst(pc);
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Connessione non riutilizzabile, viene scartata", e);
+            discard(pc);
+        } finally {
+            pc.endTransaction(); // anche una connessione scartata chiude la sua transazione
+            permits.release();
+        }
+    }
+
+    public ConnectionPoolStats getStats() {
+        int idleNow = idle.size();
+        int activeNow = leased.size();
+        return new ConnectionPoolStats(idleNow + activeNow, idleNow, activeNow, permits.getQueueLength(), maxSize,
+                borrowCount.get(), timeoutCount.get(), createdCount.get(), evictedCount.get(), leakCount.get(),
+                reclaimedCount.get());
+    }
+
+    /**
+     * Statistiche aggregate delle cache di statement di tutte le connessioni del pool.
+     */
+    public CacheStats getStatementCacheStats() {
+        int size = 0;
+        for (PooledConnection pc : idle) {
+            size += pc.cachedStatements();
+        }
+        for (PooledConnection pc : leased) {
+            size += pc.cachedStatements();
+        }
+        return new CacheStats(statementHits.get(), statementMisses.get(), statementEvictions.get(), size);
+    }
+
+    /**
+     * Chiude tutte le connessioni fisiche, comprese quelle ancora in prestito.
+     */
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pc;
+        while ((pc = idle.pollFirst()) != null) {
+            closePhysical(pc);
+        }
+        for (PooledConnection l : leased) {
+            closePhysical(l);
+        }
+        leased.clear();
+    }
+
+    //------ private methods
+
+    private PooledConnection createPhysical() throws SQLException {
+        Connection physical = DriverManager.getConnection(url, user, password);
+        createdCount.incrementAndGet();
+        return new PooledConnection(physical);
+    }
+
+    private boolean isUsable(PooledConnection pc, long now) {
+        try {
+            if (pc.physical.isClosed())
+                return false;
+            return now - pc.lastUsed < VALIDATION_BYPASS_MS || pc.physical.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void discard(PooledConnection pc) {
+        evictedCount.incrementAndGet();
+        closePhysical(pc);
+    }
+
+    private void closePhysical(PooledConnection pc) {
+        if (pc.statements != null)
+            pc.statements.closeAll();
+        try {
+            pc.physical.close();
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Errore durante la chiusura di una connessione fisica", e);
+        }
+    }
+
+    // riprende le connessioni che nessuno userà più: il thread che le ha prese è terminato, oppure non vengono
+    // usate (né loro né i loro statement e ResultSet) da abandonTimeoutMillis; mai durante una chiamata in corso
+    void reclaimAbandoned(long now) {
+        for (PooledConnection pc : leased) {
+            Thread owner = pc.owner.get();
+            boolean ownerGone = owner == null || !owner.isAlive();
+            boolean unused = abandonTimeoutMillis > 0 && now - pc.lastActivity > abandonTimeoutMillis;
+            if ((ownerGone || unused) && pc.markReclaimed()) {
+                reclaimedCount.incrementAndGet();
+                LOGGER.log(Level.WARNING, "Connessione abbandonata dal thread " + pc.leasedBy + " ("
+                        + (ownerGone ? "thread terminato" : "inutilizzata da " + (now - pc.lastActivity) + "ms")
+                        + "): viene riportata nel pool", pc.leaseSite);
+                release(pc);
+            }
+        }
+    }
+
+    private ThreadBinding binding() {
+        ThreadBinding b = bindings.get();
+        if (b == null) {
+            b = new ThreadBinding();
+            bindings.set(b);
+        }
+        return b;
+    }
+
+    private void housekeep() {
+        try {
+            long now = System.currentTimeMillis();
+            // rimozione delle connessioni inattive oltre il minimo
+            for (PooledConnection pc : idle) {
+                if (idle.size() + leased.size() <= minSize)
+                    break;
+                if (now - pc.lastUsed > idleTimeoutMillis && idle.remove(pc))
+                    discard(pc);
+            }
+            // ripristino del minimo (es. dopo un riavvio del DB)
+            while (!closed && idle.size() + leased.size() < minSize) {
+                idle.offerLast(createPhysical());
+            }
+            reclaimAbandoned(now);
+            // leak detection: connessioni in prestito da troppo tempo
+            if (leakDetectionThresholdMillis > 0) {
+                for (PooledConnection pc : leased) {
+                    if (!pc.leakReported && now - pc.leasedAt > leakDetectionThresholdMillis) {
+                        pc.leakReported = true;
+                        leakCount.incrementAndGet();
+                        LOGGER.log(Level.WARNING, "Possibile leak: connessione in prestito da " + (now - pc.leasedAt)
+                                + "ms al thread " + pc.leasedBy, pc.leaseSite);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Errore durante la manutenzione del pool di connessioni", e);
+        }
+    }
+
+    /**
+     * Legame tra un thread e la connessione che sta usando. Il proxy handle è quello restituito da
+     * threadConnection(): ogni chiamata viene eseguita sulla connessione del thread che la fa, presa dal pool
+     * se serve, e dopo la chiamata (o alla chiusura dell'ultimo statement aperto) la connessione torna al pool
+     * se è libera. Così un thread che ha finito di usare il DB non tiene occupata una connessione.
+     */
+    private final class ThreadBinding implements InvocationHandler {
+        private final Connection handle;
+        private PooledConnection pc; // null se il thread non ha una connessione
+
+        private ThreadBinding() {
+            this.handle = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, this);
+        }
+
+        // connessione del thread chiamante (non necessariamente quello che ha creato il proxy)
+        private PooledConnection current() {
+            ThreadBinding b = bindings.get();
+            return b == null || b.pc == null || b.pc.returned ? null : b.pc;
+        }
+
+        private PooledConnection bind() throws SQLException {
+            if (pc == null || pc.returned) {
+                pc = null;
+                Connection c = borrow();
+                pc = (PooledConnection) Proxy.getInvocationHandler(c);
+            }
+            return pc;
+        }
+
+        private void unbind() {
+            PooledConnection bound = pc;
+            pc = null;
+            if (bound != null) {
+                try {
+                    bound.proxy.close();
+                } catch (SQLException e) {
+                    LOGGER.log(Level.WARNING, "Errore durante il rilascio della connessione al pool", e);
+                }
+            }
+        }
+
+        // riconsegna la connessione se nessuno la sta usando: autocommit attivo e nessuno statement aperto
+        private void releaseIfIdle() {
+            PooledConnection bound = pc;
+            if (bound == null || bound.openStatements.get() > 0)
+                return;
+            try {
+                if (bound.returned || bound.physical.getAutoCommit())
+                    unbind();
+            } catch (SQLException e) {
+                unbind();
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            ThreadBinding b = binding();
+            switch (method.getName()) {
+                case "close":
+                    b.unbind();
+                    return null;
+                case "isClosed":
+                    return b.current() == null;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "ThreadConnection[" + Thread.currentThread().getName() + "]";
+                default:
+                    PooledConnection bound = b.bind();
+                    try {
+                        return method.invoke(bound.proxy, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    } finally {
+                        b.releaseIfIdle();
+                    }
+            }
+        }
+    }
+
+    /**
+     * Connessione fisica gestita dal pool, con il proxy consegnato ai DAO.
+     * Statement e ResultSet vengono consegnati avvolti in un Tracked, che ne conta gli statement aperti
+     * e registra l'ultimo utilizzo (vedi reclaimAbandoned).
+     */
+    final class PooledConnection implements InvocationHandler {
+        private final Connection physical;
+        private final Connection proxy;
+        private final StatementCache statements; // null se la cache è disabilitata
+        private volatile boolean returned = true;
+        private volatile long lastUsed = System.currentTimeMillis();
+        private volatile long leasedAt;
+        private volatile String leasedBy;
+        private volatile WeakReference<Thread> owner = new WeakReference<>(null);
+        private volatile Throwable leaseSite;
+        private volatile boolean leakReported;
+        // prestito corrente: gli statement di un prestito precedente non sono più utilizzabili
+        private volatile int generation;
+        private final AtomicInteger openStatements = new AtomicInteger();
+        private final Set<Statement> uncached = ConcurrentHashMap.newKeySet(); // statement fuori dalla StatementCache
+        private int activeCalls; // protetto da this
+        private volatile long lastActivity;
+        // azioni da eseguire alla fine della transazione corrente (vedi runAtTransactionEnd)
+        private final List<Runnable> transactionEndActions = java.util.Collections.synchronizedList(new ArrayList<>());
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, this);
+            this.statements = statementCacheSize > 0
+                    ? new StatementCache(physical, proxy, statementCacheSize, statementHits, statementMisses, statementEvictions)
+                    : null;
+        }
+
+        private int cachedStatements() {
+            return statements == null ? 0 : statements.size();
+        }
+
+        private synchronized void lease() {
+            generation++;
+            returned = false;
+            openStatements.set(0);
+            leasedAt = System.currentTimeMillis();
+            lastActivity = leasedAt;
+            leasedBy = Thread.currentThread().getName();
+            owner = new WeakReference<>(Thread.currentThread());
+            leaseSite = leakDetectionThresholdMillis > 0 ? new Throwable("Connessione ottenuta qui") : null;
+            leakReported = false;
+        }
+
+        // true se la connessione va riconsegnata da chi la restituisce (close() o reclaimAbandoned)
+        private synchronized boolean markReturned() {
+            if (returned)
+                return false;
+            returned = true;
+            return true;
+        }
+
+        private synchronized boolean markReclaimed() {
+            return activeCalls == 0 && markReturned();
+        }
+
+        private synchronized void beginUse(int leaseGeneration) throws SQLException {
+            if (returned || leaseGeneration != generation)
+                throw new SQLException("Connessione già restituita al pool");
+            activeCalls++;
+            lastActivity = System.currentTimeMillis();
+        }
+
+        private synchronized void endUse() {
+            activeCalls--;
+            lastActivity = System.currentTimeMillis();
+        }
+
+        private void closeUncachedStatements() {
+            if (uncached.isEmpty())
+                return;
+            for (Statement st : uncached) {
+                try {
+                    st.close();
+                } catch (SQLException e) {
+                    LOGGER.log(Level.FINE, "Errore durante la chiusura di uno statement non in cache", e);
+                }
+            }
+            uncached.clear();
+        }
+
+        private Statement track(Statement statement, boolean cached) {
+            if (!cached)
+                uncached.add(statement);
+            openStatements.incrementAndGet();
+            Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+                    : statement instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+            return (Statement) new Tracked(statement, proxy, generation, cached).proxy(type);
+        }
+
+        private void statementClosed(Tracked t) {
+            if (t.generation != generation)
+                return;
+            if (!t.cached)
+                uncached.remove((Statement) t.target);
+            // chiuso l'ultimo statement, la connessione legata al thread può tornare al pool
+            if (openStatements.decrementAndGet() == 0) {
+                ThreadBinding b = bindings.get();
+                if (b != null && b.pc == this)
+                    b.releaseIfIdle();
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (markReturned())
+                        release(this);
+                    return null;
+                case "isClosed":
+                    return returned || physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + physical + "]";
+                default:
+                    beginUse(generation);
+                    try {
+                        // solo la forma prepareStatement(String): le altre hanno opzioni che cambiano lo statement
+                        if (statements != null && "prepareStatement".equals(method.getName()) && args.length == 1)
+                            return track(statements.prepare((String) args[0]), true);
+                        boolean endsTransaction = endsTransaction(method, args);
+                        Object result;
+                        try {
+                            result = method.invoke(physical, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                        if (endsTransaction)
+                            endTransaction();
+                        if (result instanceof Statement)
+                            return track((Statement) result, false);
+                        return result;
+                    } finally {
+                        endUse();
+                    }
+            }
+        }
+
+        // commit(), rollback() senza savepoint e setAutoCommit(true) con una transazione aperta (che la conferma)
+        private boolean endsTransaction(Method method, Object[] args) throws SQLException {
+            switch (method.getName()) {
+                case "commit":
+                case "rollback":
+                    return args == null || args.length == 0;
+                case "setAutoCommit":
+                    return Boolean.TRUE.equals(args[0]) && !physical.getAutoCommit();
+                default:
+                    return false;
+            }
+        }
+
+        private void endTransaction() {
+            List<Runnable> actions;
+            synchronized (transactionEndActions) {
+                if (transactionEndActions.isEmpty())
+                    return;
+                actions = new ArrayList<>(transactionEndActions);
+                transactionEndActions.clear();
+            }
+            for (Runnable action : actions) {
+                try {
+                    action.run();
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Errore in un'azione eseguita a fine transazione", e);
+                }
+            }
+        }
+
+        /**
+         * Statement o ResultSet consegnato dalla connessione: ogni uso aggiorna l'ultima attività della connessione,
+         * e dopo la riconsegna al pool (o un nuovo prestito) l'oggetto non è più utilizzabile.
+         */
+        private final class Tracked implements InvocationHandler {
+            private final Object target;
+            private final Object parent; // restituito da getConnection() (statement) o getStatement() (ResultSet)
+            private final int generation;
+            private final boolean cached;
+            private Object proxy;
+            private volatile boolean closed;
+
+            private Tracked(Object target, Object parent, int generation, boolean cached) {
+                this.target = target;
+                this.parent = parent;
+                this.generation = generation;
+                this.cached = cached;
+            }
+
+            private Object proxy(Class<?> type) {
+                proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, this);
+                return proxy;
+            }
+
+            private boolean isStatement() {
+                return target instanceof Statement;
+            }
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "close":
+                        if (closed)
+                            return null;
+                        closed = true;
+                        try {
+                            if (generation == PooledConnection.this.generation && !returned)
+                                invokeTarget(method, args);
+                        } finally {
+                            if (isStatement())
+                                statementClosed(this);
+                        }
+                        return null;
+                    case "isClosed":
+                        return closed || returned || generation != PooledConnection.this.generation
+                                || (Boolean) invokeTarget(method, args);
+                    case "getConnection":
+                    case "getStatement":
+                        return parent;
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return "Tracked[" + target + "]";
+                    default:
+                        if (closed)
+                            throw new SQLException(isStatement() ? "Statement già chiuso" : "ResultSet già chiuso");
+                        beginUse(generation);
+                        try {
+                            Object result = invokeTarget(method, args);
+                            if (result instanceof ResultSet)
+                                return new Tracked(result, this.proxy, generation, true).proxy(ResultSet.class);
+                            return result;
+                        } finally {
+                            endUse();
+                        }
+                }
+            }
+
+            private Object invokeTarget(Method method, Object[] args) throws Throwable {
+                try {
+                    return method.invoke(target, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package ORM;
+
+/**
+ * Fotografia delle metriche del pool di connessioni in un dato istante.
+ */
+public class ConnectionPoolStats {
+    private final int total;
+    private final int idle;
+    private final int active;
+    private final int waiting;
+    private final int maxSize;
+    private final long borrowCount;
+    private final long timeoutCount;
+    private final long createdCount;
+    private final long evictedCount;
+    private final long leakCount;
+    private final long reclaimedCount;
+
+    public ConnectionPoolStats(int total, int idle, int active, int waiting, int maxSize,
+                               long borrowCount, long timeoutCount, long createdCount,
+                               long evictedCount, long leakCount, long reclaimedCount) {
+        this.total = total;
+        this.idle = idle;
+        this.active = active;
+        this.waiting = waiting;
+        this.maxSize = maxSize;
+        this.borrowCount = borrowCount;
+        this.timeoutCount = timeoutCount;
+        this.createdCount = createdCount;
+        this.evictedCount = evictedCount;
+        this.leakCount = leakCount;
+        this.reclaimedCount = reclaimedCount;
+    }
+
+    public int getTotal() { return total; }
+
+    public int getIdle() { return idle; }
+
+    public int getActive() { return active; }
+
+    public int getWaiting() { return waiting; }
+
+    public int getMaxSize() { return maxSize; }
+
+    public long getBorrowCount() { return borrowCount; }
+
+    public long getTimeoutCount() { return timeoutCount; }
+
+    public long getCreatedCount() { return createdCount; }
+
+    public long getEvictedCount() { return evictedCount; }
+
+    public long getLeakCount() { return leakCount; }
+
+    public long getReclaimedCount() { return reclaimedCount; }
+
+    @Override
+    public String toString() {
+        return "[total=" + total + ", idle=" + idle + ", active=" + active + ", waiting=" + waiting
+                + ", max=" + maxSize + ", borrows=" + borrowCount + ", timeouts=" + timeoutCount
+                + ", created=" + createdCount + ", evicted=" + evictedCount + ", leaks=" + leakCount + ", reclaimed=" + reclaimedCount + "]";
+    }
+}
@@ -1,7 +1,6 @@
 package ORM;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -11,20 +10,36 @@ public class DBConnection {
     private static final Logger LOGGER = Logger.getLogger(DBConnection.class.getName());
     private static DBConnection instance;
     private static boolean enableTesting = false; // flag per scegliere il DB
-    private Connection connection;
+    // ogni thread lavora sulla propria connessione presa dal pool, così le chiamate concorrenti non si serializzano;
+    // il thread la tiene solo finché la usa (vedi ConnectionPool.threadConnection)
+    private final ConnectionPool pool;
 
+    // NOTE: reWriteBatchedInserts fa riscrivere al driver i batch di INSERT in INSERT multi-riga
     // NOTE: Valori per il DB di produzione (lasciati come prima)
-    private static final String PROD_DB_URL = "jdbc:postgresql://localhost:5432/scriptoria_db";
+    private static final String PROD_DB_URL = "jdbc:postgresql://localhost:5432/scriptoria_db?reWriteBatchedInserts=true";
     private static final String PROD_DB_USER = "postgres";
     private static final String PROD_DB_PASSWORD = "Anotherunifithing";
 
     // NOTE: Valori per il DB di test: lasciali vuoti come richiesto e compilali tu
-    private static final String TEST_DB_URL = "jdbc:postgresql://localhost:5432/scriptoria_db_testing";       // es. jdbc:postgresql://localhost:5432/scriptoria_test
+    private static final String TEST_DB_URL = "jdbc:postgresql://localhost:5432/scriptoria_db_testing?reWriteBatchedInserts=true";       // es. jdbc:postgresql://localhost:5432/scriptoria_test
     private static final String TEST_DB_USER = "postgres";      // es. postgres
     private static final String TEST_DB_PASSWORD = "Anotherunifithing";  // es. password
 
+    // NOTE: Parametri del pool di connessioni
+    private static final int POOL_MIN_SIZE = 2;
+    private static final int POOL_MAX_SIZE = 20;
+    private static final long POOL_ACQUIRE_TIMEOUT_MS = 10_000;
+    private static final long POOL_IDLE_TIMEOUT_MS = 5 * 60_000;
+    private static final long POOL_LEAK_DETECTION_MS = 60_000;
+    private static final long POOL_ABANDON_TIMEOUT_MS = 5 * 60_000; // inutilizzata da tanto: il pool se la riprende
+    private static final int POOL_VALIDATION_TIMEOUT_S = 2;
+    private static final int STATEMENT_CACHE_SIZE = 100; // statement in cache per connessione (0 = disabilitata)
+
+    // NOTE: Script di migrazione applicati all'avvio (vedi MigrationRunner)
+    private static final java.nio.file.Path MIGRATIONS_DIR = java.nio.file.Path.of("JDBC", "migrations");
+
     /**
-     * Costruttore privato: crea la connessione usando la modalità (testing/prod) indicata.
+     * Costruttore privato: crea il pool di connessioni usando la modalità (testing/prod) indicata.
      */
     private DBConnection(boolean testing) throws SQLException {
         try{
@@ -49,14 +64,27 @@ public class DBConnection {
                 LOGGER.warning("DB testing configurato ma TEST_DB_URL è vuoto. Compila i parametri di test in DBConnection.");
             }
 
-            this.connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-            LOGGER.info("Connessione al database stabilita");
+            this.pool = new ConnectionPool(DB_URL, DB_USER, DB_PASSWORD,
+                    POOL_MIN_SIZE, POOL_MAX_SIZE, POOL_ACQUIRE_TIMEOUT_MS, POOL_IDLE_TIMEOUT_MS,
+                    POOL_LEAK_DETECTION_MS, POOL_ABANDON_TIMEOUT_MS, POOL_VALIDATION_TIMEOUT_S, STATEMENT_CACHE_SIZE);
+            LOGGER.info("Connessione al database stabilita " + pool.getStats());
+            migrateSchema();
         }catch(SQLException e){
             LOGGER.log(Level.SEVERE, "Errore durante la connessione al database", e);
             throw e;
         }
     }
 
+    // porta lo schema all'ultima versione prima che i DAO lo usino; se fallisce il pool viene chiuso
+    private void migrateSchema() throws SQLException {
+        try (Connection c = pool.borrow()) {
+            new MigrationRunner(MIGRATIONS_DIR).migrate(c);
+        } catch (SQLException e) {
+            pool.close();
+            throw e;
+        }
+    }
+
     /**
      * Restituisce l'istanza singleton usando il flag statico enableTesting.
      */
@@ -77,7 +105,8 @@ public class DBConnection {
             enableTesting = enable_testing;
             if (instance != null) {
                 try {
-                    instance.connection.close();
+                    instance.pool.close();
+                    invalidateCaches();
                 } catch (Exception e) {
                     LOGGER.log(Level.WARNING, "Errore durante la chiusura della vecchia connessione singleton", e);
                 }
@@ -96,7 +125,8 @@ public class DBConnection {
             enableTesting = enable_testing;
             if (instance != null) {
                 try {
-                    instance.connection.close();
+                    instance.pool.close();
+                    invalidateCaches();
                 } catch (Exception e) {
                     LOGGER.log(Level.WARNING, "Errore durante la chiusura della connessione in setEnableTesting", e);
                 }
@@ -111,7 +141,8 @@ public class DBConnection {
     public static synchronized void resetInstance() {
         if (instance != null) {
             try {
-                instance.connection.close();
+                instance.pool.close();
+                invalidateCaches();
             } catch (Exception e) {
                 LOGGER.log(Level.WARNING, "Errore durante la chiusura della connessione in resetInstance", e);
             }
@@ -119,8 +150,68 @@ public class DBConnection {
         }
     }
 
-    public Connection getConnection(){
-        return connection;
+    // le cache in memoria derivano dal DB: quando il DB cambia vanno ricostruite
+    private static void invalidateCaches() {
+        TagIndex.getInstance().invalidate();
+        UserCache.getInstance().invalidateAll();
+        TagDictionary.getInstance().invalidate();
+        RelationGraph.getInstance().invalidate();
+    }
+
+    /**
+     * Restituisce la connessione associata al thread corrente, prendendone subito una dal pool se il thread non ne ha.
+     * Chiamate successive dallo stesso thread ottengono la stessa connessione. Il thread la tiene finché la usa:
+     * in autocommit e senza statement aperti torna al pool, una transazione aperta la tiene legata fino alla fine.
+     */
+    public Connection getConnection() throws SQLException {
+        return pool.bindThreadConnection();
+    }
+
+    /**
+     * Come getConnection(), ma la connessione viene presa dal pool solo al primo utilizzo (usata dai DAO).
+     */
+    public Connection getThreadConnection() {
+        return pool.threadConnection();
+    }
+
+    /**
+     * Prende dal pool una connessione non legata al thread corrente: va chiusa dal chiamante.
+     */
+    public Connection borrowConnection() throws SQLException {
+        return pool.borrow();
+    }
+
+    /**
+     * Riconsegna al pool la connessione del thread corrente (da chiamare a fine richiesta).
+     */
+    public void releaseConnection() {
+        pool.releaseThreadConnection();
+    }
+
+    /**
+     * True se il thread corrente ha già una connessione con una transazione aperta.
+     * Non prende connessioni dal pool.
+     */
+    public boolean isInTransaction() {
+        return pool.threadInTransaction();
+    }
+
+    // limite usato da chi esegue operazioni in parallelo (es. ControllerExecutor)
+    public static int getMaxPoolSize() {
+        return POOL_MAX_SIZE;
+    }
+
+    public ConnectionPoolStats getPoolStats() {
+        return pool.getStats();
+    }
+
+    public CacheStats getStatementCacheStats() {
+        return pool.getStatementCacheStats();
+    }
+
+    // per i test: accesso diretto al pool (es. reclaimAbandoned)
+    ConnectionPool getPool() {
+        return pool;
     }
 
 
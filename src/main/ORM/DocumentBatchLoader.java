@@ -0,0 +1,82 @@
+package ORM;
+
+import DomainModel.Document;
+import DomainModel.Tag;
+import DomainModel.User;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Caricamento differito di autori e tag per i documenti letti da uno stesso ResultSet.
+ * Il primo getAuthor() (o getTags()) su uno qualsiasi dei documenti carica con una sola query
+ * gli autori (o i tag) di tutto il gruppo; chi non li legge non paga nessuna query.
+ * Le query girano su una connessione presa dal pool e subito riconsegnata, non su quella del thread che accede:
+ * il documento può essere letto da un thread diverso e dopo che la richiesta che l'ha caricato è terminata.
+ */
+final class DocumentBatchLoader {
+    private static final Logger LOGGER = Logger.getLogger(DocumentBatchLoader.class.getName());
+    private final Map<Integer, Integer> authorIds; // documentId -> authorId
+    private volatile Map<Integer, User> authors;
+    private volatile Map<Integer, List<Tag>> tags;
+
+    private interface Load<T> {
+        T from(Connection connection) throws SQLException;
+    }
+
+    private DocumentBatchLoader(Map<Integer, Integer> authorIds) {
+        this.authorIds = authorIds;
+    }
+
+    static void attach(List<Document> documents, Map<Integer, Integer> authorIds) {
+        if (documents.isEmpty())
+            return;
+        DocumentBatchLoader loader = new DocumentBatchLoader(authorIds);
+        for (Document d : documents) {
+            int documentId = d.getId();
+            d.setAuthorLoader(() -> loader.authorOf(documentId));
+            d.setTagsLoader(() -> loader.tagsOf(documentId));
+        }
+    }
+
+    private User authorOf(int documentId) {
+        Map<Integer, User> loaded = authors;
+        if (loaded == null) {
+            synchronized (this) {
+                if (authors == null)
+                    authors = load(c -> new UserDAO(c).loadUsersByIds(new HashSet<>(authorIds.values())));
+                loaded = authors;
+            }
+        }
+        return loaded.get(authorIds.get(documentId));
+    }
+
+    private List<Tag> tagsOf(int documentId) {
+        Map<Integer, List<Tag>> loaded = tags;
+        if (loaded == null) {
+            synchronized (this) {
+                if (tags == null)
+                    tags = load(c -> new DocumentDAO(c).getTagsForDocuments(authorIds.keySet()));
+                loaded = tags;
+            }
+        }
+        List<Tag> documentTags = loaded.get(documentId);
+        return documentTags != null ? documentTags : new ArrayList<>();
+    }
+
+    // un errore non viene memorizzato: il documento resta da caricare e il prossimo accesso riprova
+    private static <T> T load(Load<T> load) {
+        try (Connection c = DBConnection.getInstance().borrowConnection()) {
+            return load.from(c);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Errore durante il caricamento differito di autori o tag", e);
+            throw new IllegalStateException("Impossibile caricare autori o tag dei documenti", e);
+        }
+    }
+}
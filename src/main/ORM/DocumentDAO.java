@@ -6,17 +6,33 @@ import DomainModel.*;
 import java.sql.PreparedStatement;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 
 public class DocumentDAO extends BaseDAO {
     private static final Logger LOGGER = Logger.getLogger(DocumentDAO.class.getName());
+    private static final int STREAM_FETCH_SIZE = 500;
+    // la stessa tsquery viene stemmata sia in italiano sia in inglese, come search_vector
+    private static final String TS_QUERY = "(to_tsquery('italian', ?) || to_tsquery('english', ?))";
+    // colonne lette da createDocumentFromResultSet: search_vector resta fuori, serve solo ai filtri e all'ordinamento
+    private static final String SELECT_DOCUMENT = "SELECT id, title, description, status, file_format, file_path, file_name, " +
+            "author_id, creation_date, period, content_hash FROM document";
     public DocumentDAO(){
         super();
     }
 
+    DocumentDAO(Connection connection) {
+        super(connection);
+    }
+
     public boolean addDocument(User author,
                             String title,
                             String description,
@@ -25,9 +41,39 @@ public class DocumentDAO extends BaseDAO {
                             String filePath,
                             String fileName,
                             List<String> tags){
+        return addDocumentWithContent(author, title, description, documentPeriod, documentFormat, filePath, fileName, tags, null) != -1;
+    }
+
+    /**
+     * Inserisce il documento e lo collega ai tag indicati con un unico statement (CTE), quindi in modo atomico
+     * e in un solo round trip. Vengono collegati solo i tag già presenti nel vocabolario (confronto come
+     * findByLabelNormalized); le etichette sconosciute sono ignorate, i nuovi tag passano dalla moderazione.
+     * contentHash: file già salvato nell'archivio (Storage.BlobStore), null se il documento non ha ancora contenuto.
+     * Restituisce l'id generato, oppure -1 in caso di errore.
+     */
+    public int addDocumentWithContent(User author,
+                            String title,
+                            String description,
+                            String documentPeriod,
+                            DocumentFormat documentFormat,
+                            String filePath,
+                            String fileName,
+                            List<String> tags,
+                            String contentHash){
 
         try{
-            String query = "INSERT INTO document (file_name,description,status,period,file_format,file_path,author_id,creation_date,title) VALUES(?,?,?,?,?,?,?,?,?)";
+            String query = "WITH d AS (INSERT INTO document (file_name,description,status,period,file_format,file_path,author_id,creation_date,title,content_hash) " +
+                    "VALUES(?,?,?,?,?,?,?,?,?,?) RETURNING id), " +
+                    "t AS (INSERT INTO document_tags (document_id, tag_label) SELECT d.id, tag.tag_label FROM d, tag " +
+                    "WHERE LOWER(TRIM(tag.tag_label)) = ANY(?::varchar[]) RETURNING tag_label) " +
+                    "SELECT d.id, ARRAY(SELECT tag_label FROM t) AS tag_labels FROM d";
+            java.util.Set<String> normalized = new java.util.LinkedHashSet<>();
+            if (tags != null) {
+                for (String label : tags) {
+                    if (label != null && !label.isBlank())
+                        normalized.add(TagDictionary.normalize(label));
+                }
+            }
             PreparedStatement statement = connection.prepareStatement(query);
             statement.setString(1, fileName);
             statement.setString(2, description);
@@ -38,68 +84,76 @@ public class DocumentDAO extends BaseDAO {
             statement.setInt(7,author.getId());
             statement.setDate(8, java.sql.Date.valueOf(java.time.LocalDate.now()));
             statement.setString(9, title);
-            statement.executeUpdate();
+            statement.setString(10, contentHash);
+            statement.setArray(11, connection.createArrayOf("varchar", normalized.toArray()));
+            ResultSet rs = statement.executeQuery();
+            int id = -1;
+            List<String> linked = new ArrayList<>();
+            if (rs.next()) {
+                id = rs.getInt("id");
+                for (Object label : (Object[]) rs.getArray("tag_labels").getArray())
+                    linked.add((String) label);
+            }
+            rs.close();
             statement.close();
-            return true;
+            int documentId = id;
+            if (!linked.isEmpty())
+                updateTagIndex(() -> linked.forEach(label -> TagIndex.getInstance().onTagAdded(documentId, label)));
+            return id;
         }catch(SQLException e){
             LOGGER.log(Level.SEVERE, "Errore durante addDocument(authorId=" + (author!=null?author.getId():null) + ")", e);
-            return false;
+            markRollbackOnly(e);
+            return -1;
         }
     }
 
     public void deleteDocument(int documentId){
         try{
-            // rimuovi riferimenti dipendenti per evitare vincoli FK
-            String q1 = "DELETE FROM favourite_document WHERE document_id = ?";
-            PreparedStatement st1 = connection.prepareStatement(q1);
-            st1.setInt(1, documentId);
-            st1.executeUpdate();
-            st1.close();
-
-            String q2 = "DELETE FROM document_relation WHERE source_id = ? OR destination_id = ?";
-            PreparedStatement st2 = connection.prepareStatement(q2);
-            st2.setInt(1, documentId);
-            st2.setInt(2, documentId);
-            st2.executeUpdate();
-            st2.close();
-
-            String q3 = "DELETE FROM document_tags WHERE document_id = ?";
-            PreparedStatement st3 = connection.prepareStatement(q3);
-            st3.setInt(1, documentId);
-            st3.executeUpdate();
-            st3.close();
-
-            String q4 = "DELETE FROM comment WHERE document_id = ?";
-            PreparedStatement st4 = connection.prepareStatement(q4);
-            st4.setInt(1, documentId);
-            st4.executeUpdate();
-            st4.close();
-
-            String q5 = "DELETE FROM publish_request WHERE document_id = ?";
-            PreparedStatement st5 = connection.prepareStatement(q5);
-            st5.setInt(1, documentId);
-            st5.executeUpdate();
-            st5.close();
-
-            String q6= "DELETE FROM document_collection WHERE document_id = ?";
-            PreparedStatement st6 = connection.prepareStatement(q6);
-            st6.setInt(1, documentId);
-            st6.executeUpdate();
-            st6.close();
-
-            // infine rimuovi il documento
+            // le tabelle dipendenti (tag, commenti, relazioni, richieste, preferiti, collezioni)
+            // hanno ON DELETE CASCADE: basta un solo statement, atomico, per rimuovere tutto
             String qDel = "DELETE FROM document WHERE id=?";
             PreparedStatement statement = connection.prepareStatement(qDel);
             statement.setInt(1, documentId);
             int rowsAffected = statement.executeUpdate();
+            statement.close();
+            onDocumentsDeleted(CompressedBitmap.of(documentId));
             if (rowsAffected > 0) {
                 System.out.println("Document deleted successfully");
             } else {
                 System.out.println("Document not found");
             }
-            statement.close();
         }catch(SQLException e){
             LOGGER.log(Level.SEVERE, "Errore durante deleteDocument(id=" + documentId + ")", e);
+            markRollbackOnly(e);
+        }
+    }
+
+    //cancella in un solo statement tutti i documenti indicati; restituisce quanti ne sono stati rimossi
+    public int deleteDocuments(java.util.Collection<Integer> documentIds){
+        if (documentIds == null || documentIds.isEmpty())
+            return 0;
+        try{
+            String query = "DELETE FROM document WHERE id = ANY(?) RETURNING id";
+            PreparedStatement ps = connection.prepareStatement(query);
+            ps.setArray(1, connection.createArrayOf("integer", documentIds.toArray()));
+            return deleteReturningIds(ps);
+        }catch(SQLException e){
+            LOGGER.log(Level.SEVERE, "Errore durante deleteDocuments(ids=" + documentIds + ")", e);
+            markRollbackOnly(e);
+            return 0;
+        }
+    }
+
+    public int deleteDocumentsByAuthor(int authorId){
+        try{
+            String query = "DELETE FROM document WHERE author_id = ? RETURNING id";
+            PreparedStatement ps = connection.prepareStatement(query);
+            ps.setInt(1, authorId);
+            return deleteReturningIds(ps);
+        }catch(SQLException e){
+            LOGGER.log(Level.SEVERE, "Errore durante deleteDocumentsByAuthor(authorId=" + authorId + ")", e);
+            markRollbackOnly(e);
+            return 0;
         }
     }
 
@@ -111,10 +165,46 @@ public class DocumentDAO extends BaseDAO {
             ps.setString(2, tagLabel);
             ps.executeUpdate();
             ps.close();
+            updateTagIndex(() -> TagIndex.getInstance().onTagAdded(documentId, tagLabel));
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE,
                     "Error during addExistingTagToDocument(docId=" + documentId +
                             ", tagLabel=" + tagLabel + ")", e);
+            markRollbackOnly(e);
+        }
+    }
+
+    /**
+     * Collega più tag al documento con un batch JDBC; i tag già presenti vengono ignorati.
+     * Restituisce le chiavi inserite (le etichette effettivamente collegate), oppure null in caso di errore.
+     */
+    public List<String> addTagsToDocument(int documentId, java.util.Collection<String> tagLabels) {
+        List<String> linked = new ArrayList<>();
+        if (tagLabels == null || tagLabels.isEmpty())
+            return linked;
+        try {
+            String query = "INSERT INTO document_tags (document_id, tag_label) VALUES (?, ?) ON CONFLICT DO NOTHING";
+            // con ON CONFLICT DO NOTHING le chiavi generate sono solo quelle delle righe davvero inserite
+            PreparedStatement ps = connection.prepareStatement(query, new String[]{"tag_label"});
+            int pending = 0;
+            for (String tagLabel : tagLabels) {
+                ps.setInt(1, documentId);
+                ps.setString(2, tagLabel);
+                ps.addBatch();
+                if (++pending % BATCH_SIZE == 0)
+                    executeBatch(ps, rs -> linked.add(rs.getString("tag_label")));
+            }
+            if (pending % BATCH_SIZE != 0)
+                executeBatch(ps, rs -> linked.add(rs.getString("tag_label")));
+            ps.close();
+            updateTagIndex(() -> linked.forEach(label -> TagIndex.getInstance().onTagAdded(documentId, label)));
+            return linked;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE,
+                    "Error during addTagsToDocument(docId=" + documentId +
+                            ", tags=" + tagLabels.size() + ")", e);
+            markRollbackOnly(e);
+            return null;
         }
     }
 
@@ -126,10 +216,12 @@ public class DocumentDAO extends BaseDAO {
             ps.setString(2, tagLabel);
             ps.executeUpdate();
             ps.close();
+            updateTagIndex(() -> TagIndex.getInstance().onTagRemoved(documentId, tagLabel));
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE,
                     "Error during removeTagFromDocument(docId=" + documentId +
                             ", tagLabel=" + tagLabel + ")", e);
+            markRollbackOnly(e);
         }
     }
 
@@ -148,24 +240,62 @@ public class DocumentDAO extends BaseDAO {
             ps.close();
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Errore durante updateDocumentStatus(id=" + docId + ")", e);
+            markRollbackOnly(e);
+        }
+    }
+
+    public boolean setContentHash(int docId, String contentHash){
+        try {
+            String query = "UPDATE document SET content_hash = ? WHERE id = ?";
+            PreparedStatement ps = connection.prepareStatement(query);
+            ps.setString(1, contentHash);
+            ps.setInt(2, docId);
+            int affected = ps.executeUpdate();
+            ps.close();
+            return affected > 0;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Errore durante setContentHash(id=" + docId + ")", e);
+            markRollbackOnly(e);
+            return false;
+        }
+    }
+
+    // tutti i contenuti ancora referenziati da almeno un documento (per la pulizia dell'archivio dei file);
+    // in caso di errore restituisce null e non un insieme vuoto, che farebbe rimuovere tutti i file
+    public Set<String> getReferencedContentHashes(){
+        Set<String> hashes = new HashSet<>();
+        try {
+            String query = "SELECT DISTINCT content_hash FROM document WHERE content_hash IS NOT NULL";
+            PreparedStatement ps = connection.prepareStatement(query);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                hashes.add(rs.getString("content_hash").trim());
+            }
+            rs.close();
+            ps.close();
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Errore durante getReferencedContentHashes", e);
+            return null;
         }
+        return hashes;
     }
 
-    private List<Tag> getTagsForDocument(int documentId) {
-        List<Tag> tags = new ArrayList<>();
-        String query = "SELECT t.tag_label, t.description FROM tag t " +
-                "JOIN document_tags dt ON dt.tag_label = t.tag_label WHERE dt.document_id = ?";
+    // carica in un'unica query i tag di tutti i documenti richiesti
+    Map<Integer, List<Tag>> getTagsForDocuments(java.util.Collection<Integer> documentIds) throws SQLException {
+        Map<Integer, List<Tag>> tags = new HashMap<>();
+        if (documentIds.isEmpty())
+            return tags;
+        String query = "SELECT dt.document_id, t.tag_label, t.description FROM tag t " +
+                "JOIN document_tags dt ON dt.tag_label = t.tag_label WHERE dt.document_id = ANY(?)";
         try (PreparedStatement stmt = connection.prepareStatement(query)) {
-            stmt.setInt(1, documentId);
+            stmt.setArray(1, connection.createArrayOf("integer", documentIds.toArray()));
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
                     String label = rs.getString("tag_label");
                     String description = rs.getString("description");
-                    tags.add(new Tag(label, description));
+                    tags.computeIfAbsent(rs.getInt("document_id"), k -> new ArrayList<>()).add(new Tag(label, description));
                 }
             }
-        } catch (SQLException e) {
-            LOGGER.log(Level.WARNING, "Impossibile recuperare i tag per il documento " + documentId, e);
         }
         return tags;
     }
@@ -173,12 +303,13 @@ public class DocumentDAO extends BaseDAO {
     public Document getDocumentById(int documentId){
         Document document = null;
         try {
-            String query = "SELECT * FROM document WHERE id = ?";
+            String query = SELECT_DOCUMENT + " WHERE id = ?";
             PreparedStatement ps = connection.prepareStatement(query);
             ps.setInt(1, documentId);
             ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                document=createDocumentFromResultSet(rs);
+            List<Document> loaded = createDocumentsFromResultSet(rs);
+            if (!loaded.isEmpty()) {
+                document = loaded.get(0);
             }
             rs.close();
             ps.close();
@@ -188,16 +319,41 @@ public class DocumentDAO extends BaseDAO {
         return document;
     }
 
+    //restituisce i documenti nell'ordine degli id passati, ignorando quelli inesistenti
+    public List<Document> getDocumentsByIds(List<Integer> documentIds){
+        List<Document> documents = new ArrayList<>();
+        if (documentIds == null || documentIds.isEmpty())
+            return documents;
+        try {
+            String query = SELECT_DOCUMENT + " WHERE id = ANY(?)";
+            PreparedStatement ps = connection.prepareStatement(query);
+            ps.setArray(1, connection.createArrayOf("integer", documentIds.toArray()));
+            ResultSet rs = ps.executeQuery();
+            Map<Integer, Document> byId = new HashMap<>();
+            for (Document d : createDocumentsFromResultSet(rs)) {
+                byId.put(d.getId(), d);
+            }
+            rs.close();
+            ps.close();
+            for (Integer id : documentIds) {
+                Document d = byId.get(id);
+                if (d != null)
+                    documents.add(d);
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Errore durante getDocumentsByIds(ids=" + documentIds + ")", e);
+        }
+        return documents;
+    }
+
     public List<Document> getDocumentsByAuthor(int userId){
         List<Document> documents = new ArrayList<>();
         try {
-            String query = "SELECT * FROM document WHERE author_id = ? ORDER BY creation_date DESC, id DESC";
+            String query = SELECT_DOCUMENT + " WHERE author_id = ? ORDER BY creation_date DESC, id DESC";
             PreparedStatement ps = connection.prepareStatement(query);
             ps.setInt(1, userId);
             ResultSet rs = ps.executeQuery();
-            while(rs.next()){
-                documents.add(createDocumentFromResultSet(rs));
-            }
+            documents.addAll(createDocumentsFromResultSet(rs));
             rs.close();
             ps.close();
         } catch (SQLException e) {
@@ -209,12 +365,10 @@ public class DocumentDAO extends BaseDAO {
     public List<Document> getAllDocuments(){
         List<Document> documents = new ArrayList<>();
         try {
-            String query = "SELECT * FROM document ORDER BY creation_date DESC, id DESC";
+            String query = SELECT_DOCUMENT + " ORDER BY creation_date DESC, id DESC";
             PreparedStatement stmt = connection.prepareStatement(query);
             ResultSet rs = stmt.executeQuery();
-            while(rs.next()){
-                documents.add(createDocumentFromResultSet(rs));
-            }
+            documents.addAll(createDocumentsFromResultSet(rs));
             rs.close();
             stmt.close();
         } catch (SQLException e) {
@@ -226,13 +380,11 @@ public class DocumentDAO extends BaseDAO {
     public List<Document> getDocumentsByStatus(DocumentStatus status){
         List<Document> documents = new ArrayList<>();
         try {
-            String query = "SELECT * FROM document WHERE status = ? ORDER BY creation_date DESC, id DESC";
+            String query = SELECT_DOCUMENT + " WHERE status = ? ORDER BY creation_date DESC, id DESC";
             PreparedStatement ps = connection.prepareStatement(query);
             ps.setString(1, status.toString());
             ResultSet rs = ps.executeQuery();
-            while(rs.next()){
-                documents.add(createDocumentFromResultSet(rs));
-            }
+            documents.addAll(createDocumentsFromResultSet(rs));
             rs.close();
             ps.close();
         } catch (SQLException e) {
@@ -244,71 +396,405 @@ public class DocumentDAO extends BaseDAO {
     public List<Document> searchDocuments(DocumentSearchCriteria criteria){
         List<Document> documents = new ArrayList<>();
         try {
-            StringBuilder queryBuilder = new StringBuilder("SELECT * FROM document WHERE 1=1");
+            StringBuilder queryBuilder = new StringBuilder(SELECT_DOCUMENT + " WHERE 1=1");
             List<Object> parameters = new ArrayList<>();
-
-            if (criteria.getDocumentTitle().isPresent()) {
-                queryBuilder.append(" AND title LIKE ?");
-                parameters.add("%" + criteria.getDocumentTitle().get() + "%");
+            appendSearchFilters(criteria, queryBuilder, parameters);
+            String tsQuery = criteria.getFullTextQuery().map(DocumentDAO::toPrefixTsQuery).orElse(null);
+            if (tsQuery != null) {
+                // con la ricerca full-text i risultati più rilevanti vengono prima
+                queryBuilder.append(" ORDER BY ts_rank(search_vector, " + TS_QUERY + ") DESC, creation_date DESC, id DESC");
+                parameters.add(tsQuery);
+                parameters.add(tsQuery);
+            } else {
+                // deterministic ordering: newest first, tie-breaker by id
+                queryBuilder.append(" ORDER BY creation_date DESC, id DESC");
             }
-            if (criteria.getAuthorId().isPresent()) {
-                queryBuilder.append(" AND author_id = ?");
-                parameters.add(criteria.getAuthorId().get());
+            PreparedStatement ps = connection.prepareStatement(queryBuilder.toString());
+            for (int i = 0; i < parameters.size(); i++) {
+                ps.setObject(i + 1, parameters.get(i));
             }
-            if (criteria.getFormat().isPresent()) {
-                queryBuilder.append(" AND file_format = ?");
-                parameters.add(criteria.getFormat().get().toString());
+
+            ResultSet rs = ps.executeQuery();
+            documents.addAll(createDocumentsFromResultSet(rs));
+            rs.close();
+            ps.close();
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Errore durante searchDocuments()", e);
+        }
+        return documents;
+    }
+
+    //------ paginazione keyset: after è l'ultimo documento della pagina precedente (null per la prima pagina)
+
+    public Page<Document> getAllDocumentsPage(Document after, int pageSize){
+        return getDocumentsPage(new StringBuilder(SELECT_DOCUMENT + " WHERE 1=1"), new ArrayList<>(), after, pageSize);
+    }
+
+    public Page<Document> getDocumentsByStatusPage(DocumentStatus status, Document after, int pageSize){
+        List<Object> parameters = new ArrayList<>();
+        parameters.add(status.toString());
+        return getDocumentsPage(new StringBuilder(SELECT_DOCUMENT + " WHERE status = ?"), parameters, after, pageSize);
+    }
+
+    public Page<Document> searchDocumentsPage(DocumentSearchCriteria criteria, Document after, int pageSize){
+        StringBuilder queryBuilder = new StringBuilder(SELECT_DOCUMENT + " WHERE 1=1");
+        List<Object> parameters = new ArrayList<>();
+        appendSearchFilters(criteria, queryBuilder, parameters);
+        return getDocumentsPage(queryBuilder, parameters, after, pageSize);
+    }
+
+    //------ streaming: i documenti vengono passati all'action a blocchi, senza tenere in memoria l'intero risultato
+
+    public void forEachDocument(DocumentSearchCriteria criteria, Consumer<Document> action){
+        StringBuilder queryBuilder = new StringBuilder(SELECT_DOCUMENT + " WHERE 1=1");
+        List<Object> parameters = new ArrayList<>();
+        if (criteria != null)
+            appendSearchFilters(criteria, queryBuilder, parameters);
+        streamDocuments(queryBuilder, parameters, action);
+    }
+
+    public void forEachDocumentByStatus(DocumentStatus status, Consumer<Document> action){
+        List<Object> parameters = new ArrayList<>();
+        parameters.add(status.toString());
+        streamDocuments(new StringBuilder(SELECT_DOCUMENT + " WHERE status = ?"), parameters, action);
+    }
+
+    private void appendSearchFilters(DocumentSearchCriteria criteria, StringBuilder queryBuilder, List<Object> parameters) {
+        if (criteria.getDocumentTitle().isPresent()) {
+            queryBuilder.append(" AND title LIKE ?");
+            parameters.add("%" + criteria.getDocumentTitle().get() + "%");
+        }
+        if (criteria.getAuthorId().isPresent()) {
+            queryBuilder.append(" AND author_id = ?");
+            parameters.add(criteria.getAuthorId().get());
+        }
+        if (criteria.getFormat().isPresent()) {
+            queryBuilder.append(" AND file_format = ?");
+            parameters.add(criteria.getFormat().get().toString());
+        }
+        if (criteria.getCreatedAfter().isPresent()) {
+            queryBuilder.append(" AND creation_date >= ?");
+            parameters.add(new java.sql.Date(criteria.getCreatedAfter().get().getTime()));
+        }
+        if (criteria.getCreatedBefore().isPresent()) {
+            queryBuilder.append(" AND creation_date <= ?");
+            parameters.add(new java.sql.Date(criteria.getCreatedBefore().get().getTime()));
+        }
+        if (criteria.getTags().isPresent() || criteria.getAnyTags().isPresent() || criteria.getExcludedTags().isPresent()) {
+            appendTagFilters(criteria, queryBuilder, parameters);
+        }
+        if (criteria.hasScoreFilters()) {
+            appendScoreFilters(criteria, queryBuilder, parameters);
+        }
+        if (criteria.getFullTextQuery().isPresent()) {
+            String tsQuery = toPrefixTsQuery(criteria.getFullTextQuery().get());
+            if (tsQuery != null) {
+                // usa l'indice GIN su search_vector (titolo + descrizione, italiano e inglese)
+                queryBuilder.append(" AND search_vector @@ ").append(TS_QUERY);
+                parameters.add(tsQuery);
+                parameters.add(tsQuery);
             }
-            if (criteria.getCreatedAfter().isPresent()) {
-                queryBuilder.append(" AND creation_date >= ?");
-                parameters.add(new java.sql.Date(criteria.getCreatedAfter().get().getTime()));
+        }
+    }
+
+    // filtri sui metadati delle partiture: un'unica subquery su score_metadata, che ha un indice per ogni colonna filtrata
+    private void appendScoreFilters(DocumentSearchCriteria criteria, StringBuilder queryBuilder, List<Object> parameters) {
+        StringBuilder sub = new StringBuilder(" AND id IN (SELECT sm.document_id FROM score_metadata sm WHERE TRUE");
+        if (criteria.getComposer().isPresent()) {
+            // contenimento senza distinzione di maiuscole, servito dall'indice a trigrammi su LOWER(composer) (V7)
+            sub.append(" AND LOWER(sm.composer) LIKE ?");
+            parameters.add("%" + escapeLike(criteria.getComposer().get().toLowerCase(Locale.ROOT)) + "%");
+        }
+        if (criteria.getKeySignature().isPresent()) {
+            sub.append(" AND sm.key_signature = ?");
+            parameters.add(criteria.getKeySignature().get());
+        }
+        if (criteria.getTimeSignature().isPresent()) {
+            sub.append(" AND sm.time_signature = ?");
+            parameters.add(criteria.getTimeSignature().get());
+        }
+        if (criteria.getMinTempo().isPresent()) {
+            sub.append(" AND sm.tempo >= ?");
+            parameters.add(criteria.getMinTempo().get());
+        }
+        if (criteria.getMaxTempo().isPresent()) {
+            sub.append(" AND sm.tempo <= ?");
+            parameters.add(criteria.getMaxTempo().get());
+        }
+        if (criteria.getInstrument().isPresent()) {
+            // i nomi sono salvati in minuscolo: il contenimento di array usa l'indice GIN
+            sub.append(" AND sm.instruments @> ARRAY[?::text]");
+            parameters.add(criteria.getInstrument().get().trim().toLowerCase(Locale.ROOT));
+        }
+        if (criteria.getMinMeasures().isPresent()) {
+            sub.append(" AND sm.measure_count >= ?");
+            parameters.add(criteria.getMinMeasures().get());
+        }
+        if (criteria.getMaxMeasures().isPresent()) {
+            sub.append(" AND sm.measure_count <= ?");
+            parameters.add(criteria.getMaxMeasures().get());
+        }
+        queryBuilder.append(sub).append(")");
+    }
+
+    // i caratteri jolly del LIKE (e il carattere di escape, '\\' di default in PostgreSQL) vanno cercati letteralmente
+    static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * Risolve i filtri sui tag con il TagIndex in memoria e passa al DB solo l'elenco degli id candidati.
+     * Se l'indice non è disponibile ricade sulle subquery EXISTS su document_tags.
+     */
+    private void appendTagFilters(DocumentSearchCriteria criteria, StringBuilder queryBuilder, List<Object> parameters) {
+        List<String> allOf = criteria.getTags().orElse(null);
+        List<String> anyOf = criteria.getAnyTags().orElse(null);
+        List<String> noneOf = criteria.getExcludedTags().orElse(null);
+        // l'indice in memoria non vede le modifiche della transazione aperta: in quel caso filtra il DB
+        if (!inTransaction()) {
+            try {
+                TagIndex index = TagIndex.getInstance();
+                CompressedBitmap candidates = index.query(connection, allOf, anyOf, noneOf);
+                if (candidates != null) {
+                    if (candidates.isEmpty()) {
+                        queryBuilder.append(" AND FALSE");
+                    } else {
+                        queryBuilder.append(" AND id = ANY(?)");
+                        parameters.add(toIntegerArray(candidates.toArray()));
+                    }
+                } else {
+                    CompressedBitmap excluded = index.documentsWithAny(connection, noneOf);
+                    if (!excluded.isEmpty()) {
+                        queryBuilder.append(" AND NOT (id = ANY(?))");
+                        parameters.add(toIntegerArray(excluded.toArray()));
+                    }
+                }
+                return;
+            } catch (SQLException e) {
+                LOGGER.log(Level.WARNING, "TagIndex non disponibile, filtro sui tag eseguito dal DB", e);
             }
-            if (criteria.getCreatedBefore().isPresent()) {
-                queryBuilder.append(" AND creation_date <= ?");
-                parameters.add(new java.sql.Date(criteria.getCreatedBefore().get().getTime()));
+        }
+        if (allOf != null) {
+            for (String tag : allOf) {
+                queryBuilder.append(" AND EXISTS (SELECT 1 FROM document_tags dt WHERE dt.document_id = document.id AND dt.tag_label = ?)");
+                parameters.add(tag);
             }
-            if (criteria.getTags().isPresent()) {
-                for (String tag : criteria.getTags().get()) {
-                    queryBuilder.append(" AND EXISTS (SELECT 1 FROM document_tags dt WHERE dt.document_id = document.id AND dt.tag_label = ?)");
-                    parameters.add(tag);
-                }
+        }
+        if (anyOf != null && !anyOf.isEmpty()) {
+            queryBuilder.append(" AND EXISTS (SELECT 1 FROM document_tags dt WHERE dt.document_id = document.id AND dt.tag_label = ANY(?))");
+            parameters.add(anyOf.toArray(new String[0]));
+        }
+        if (noneOf != null && !noneOf.isEmpty()) {
+            queryBuilder.append(" AND NOT EXISTS (SELECT 1 FROM document_tags dt WHERE dt.document_id = document.id AND dt.tag_label = ANY(?))");
+            parameters.add(noneOf.toArray(new String[0]));
+        }
+    }
+
+    // esegue un DELETE ... RETURNING id e allinea TagIndex e RelationGraph con gli id effettivamente cancellati
+    private int deleteReturningIds(PreparedStatement ps) throws SQLException {
+        CompressedBitmap deleted = new CompressedBitmap();
+        ResultSet rs = ps.executeQuery();
+        while (rs.next()) {
+            deleted.add(rs.getInt(1));
+        }
+        rs.close();
+        ps.close();
+        if (!deleted.isEmpty())
+            onDocumentsDeleted(deleted);
+        return deleted.cardinality();
+    }
+
+    private static Integer[] toIntegerArray(int[] values) {
+        Integer[] out = new Integer[values.length];
+        for (int i = 0; i < values.length; i++) {
+            out[i] = values[i];
+        }
+        return out;
+    }
+
+    private void updateTagIndex(Runnable update) {
+        afterCommit(update, TagIndex.getInstance()::invalidate);
+    }
+
+    // i tag e le relazioni dei documenti cancellati sono rimossi in cascata dal DB
+    private void onDocumentsDeleted(CompressedBitmap deleted) {
+        afterCommit(() -> {
+            TagIndex.getInstance().onDocumentsDeleted(deleted);
+            RelationGraph.getInstance().onDocumentsDeleted(deleted.toArray());
+        }, () -> {
+            TagIndex.getInstance().invalidate();
+            RelationGraph.getInstance().invalidate();
+        });
+    }
+
+    /**
+     * Trasforma il testo inserito dall'utente in una tsquery in AND con ricerca per prefisso ("canto gregoriano" -> "canto:* & gregoriano:*").
+     * Vengono tenuti solo lettere e cifre, così l'input non può alterare la sintassi della tsquery.
+     * Restituisce null se non resta nessuna parola.
+     */
+    static String toPrefixTsQuery(String text) {
+        if (text == null)
+            return null;
+        StringBuilder out = new StringBuilder();
+        for (String word : text.split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty())
+                continue;
+            if (out.length() > 0)
+                out.append(" & ");
+            out.append(word.toLowerCase()).append(":*");
+        }
+        return out.length() == 0 ? null : out.toString();
+    }
+
+    // aggiunge la condizione keyset su (creation_date, id), coerente con ORDER BY creation_date DESC, id DESC
+    private Page<Document> getDocumentsPage(StringBuilder queryBuilder, List<Object> parameters, Document after, int pageSize) {
+        if (pageSize <= 0)
+            throw new IllegalArgumentException("pageSize must be positive");
+        List<Document> documents = new ArrayList<>();
+        boolean hasNext = false;
+        try {
+            if (after != null) {
+                queryBuilder.append(" AND (creation_date, id) < (?, ?)");
+                parameters.add(new java.sql.Date(after.getCreationDate().getTime()));
+                parameters.add(after.getId());
             }
-            // deterministic ordering: newest first, tie-breaker by id
-            queryBuilder.append(" ORDER BY creation_date DESC, id DESC");
+            queryBuilder.append(" ORDER BY creation_date DESC, id DESC LIMIT ?");
+            parameters.add(pageSize + 1); // una riga in più per sapere se esiste la pagina successiva
             PreparedStatement ps = connection.prepareStatement(queryBuilder.toString());
             for (int i = 0; i < parameters.size(); i++) {
                 ps.setObject(i + 1, parameters.get(i));
             }
-
             ResultSet rs = ps.executeQuery();
-            while(rs.next()){
-                documents.add(createDocumentFromResultSet(rs));
-            }
+            documents.addAll(createDocumentsFromResultSet(rs));
             rs.close();
             ps.close();
+            if (documents.size() > pageSize) {
+                hasNext = true;
+                documents.remove(documents.size() - 1);
+            }
         } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Errore durante searchDocuments()", e);
+            LOGGER.log(Level.SEVERE, "Errore durante getDocumentsPage(query=" + queryBuilder + ")", e);
+        }
+        return new Page<>(documents, hasNext);
+    }
+
+    /**
+     * Esegue la query con un cursore lato server (fetch size e autocommit disattivato, richiesti dal driver
+     * PostgreSQL) e materializza i documenti a blocchi di STREAM_FETCH_SIZE righe.
+     */
+    private void streamDocuments(StringBuilder queryBuilder, List<Object> parameters, Consumer<Document> action) {
+        queryBuilder.append(" ORDER BY creation_date DESC, id DESC");
+        boolean previousAutoCommit = true;
+        try {
+            previousAutoCommit = connection.getAutoCommit();
+            if (previousAutoCommit)
+                connection.setAutoCommit(false);
+            try (PreparedStatement ps = connection.prepareStatement(queryBuilder.toString(),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                ps.setFetchSize(STREAM_FETCH_SIZE);
+                for (int i = 0; i < parameters.size(); i++) {
+                    ps.setObject(i + 1, parameters.get(i));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    List<Document> chunk;
+                    do {
+                        Map<Integer, Integer> authorIds = new HashMap<>();
+                        chunk = readDocumentRows(rs, STREAM_FETCH_SIZE, authorIds);
+                        // il cursore è nostro: se il chiamante non aveva una transazione, autori e tag restano differiti
+                        if (previousAutoCommit)
+                            DocumentBatchLoader.attach(chunk, authorIds);
+                        else
+                            attachAuthorsAndTags(chunk, authorIds);
+                        chunk.forEach(action);
+                    } while (chunk.size() == STREAM_FETCH_SIZE);
+                }
+            }
+            if (previousAutoCommit)
+                connection.commit();
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Errore durante streamDocuments(query=" + queryBuilder + ")", e);
+            rollbackCursor(previousAutoCommit);
+        } catch (RuntimeException | Error e) {
+            // l'errore dell'action arriva al chiamante, ma setAutoCommit(true) nel finally confermerebbe la transazione
+            rollbackCursor(previousAutoCommit);
+            throw e;
+        } finally {
+            if (previousAutoCommit) {
+                try {
+                    connection.setAutoCommit(true);
+                } catch (SQLException e) {
+                    LOGGER.log(Level.WARNING, "Impossibile ripristinare l'autocommit in streamDocuments", e);
+                }
+            }
+        }
+    }
+
+    // annulla la transazione aperta da streamDocuments (non quella di un chiamante)
+    private void rollbackCursor(boolean ownTransaction) {
+        if (!ownTransaction)
+            return;
+        try {
+            connection.rollback();
+        } catch (SQLException ex) {
+            LOGGER.log(Level.WARNING, "Rollback fallito in streamDocuments", ex);
         }
+    }
+
+    /**
+     * Materializza tutte le righe del ResultSet. Autori e tag costano una query ciascuno per l'intero ResultSet,
+     * indipendentemente dal numero di documenti (niente query per riga): fuori da una transazione sono caricati
+     * al primo accesso (vedi DocumentBatchLoader), dentro una transazione subito, sulla stessa connessione.
+     */
+    private List<Document> createDocumentsFromResultSet(ResultSet rs) throws SQLException {
+        Map<Integer, Integer> authorIds = new HashMap<>(); // documentId -> authorId
+        List<Document> documents = readDocumentRows(rs, Integer.MAX_VALUE, authorIds);
+        if (inTransaction())
+            attachAuthorsAndTags(documents, authorIds);
+        else
+            DocumentBatchLoader.attach(documents, authorIds);
         return documents;
     }
 
+    // legge al massimo limit righe, annotando l'autore di ciascun documento in authorIds
+    private List<Document> readDocumentRows(ResultSet rs, int limit, Map<Integer, Integer> authorIds) throws SQLException {
+        List<Document> documents = new ArrayList<>();
+        while (documents.size() < limit && rs.next()) {
+            Document document = createDocumentFromResultSet(rs);
+            documents.add(document);
+            authorIds.put(document.getId(), rs.getInt("author_id"));
+        }
+        return documents;
+    }
+
+    // dentro una transazione, subito e sulla stessa connessione della lettura: autori e tag vedono le modifiche
+    // non ancora confermate e un errore arriva al chiamante invece di lasciare documenti senza autore o tag
+    private void attachAuthorsAndTags(List<Document> documents, Map<Integer, Integer> authorIds) throws SQLException {
+        if (documents.isEmpty())
+            return;
+        Map<Integer, User> authors = new UserDAO().loadUsersByIds(new HashSet<>(authorIds.values()));
+        Map<Integer, List<Tag>> tags = getTagsForDocuments(authorIds.keySet());
+        for (Document d : documents) {
+            d.setAuthor(authors.get(authorIds.get(d.getId())));
+            d.setTags(tags.getOrDefault(d.getId(), new ArrayList<>()));
+        }
+    }
+
+    // mappa solo le colonne della riga corrente: autore e tag vengono collegati da createDocumentsFromResultSet
     private Document createDocumentFromResultSet(ResultSet rs) throws SQLException {
         int id = rs.getInt("id");
         String title = rs.getString("title");
         String description = rs.getString("description");
         String statusStr = rs.getString("status");
         String fileFormat = rs.getString("file_format");
-        int authorId = rs.getInt("author_id");
         String filePath = rs.getString("file_path");
         String fileName = rs.getString("file_name");
         Date creationDate = rs.getDate("creation_date");
         String period = rs.getString("period");
 
         DocumentStatus status = statusStr != null ? DocumentStatus.valueOf(statusStr) : DocumentStatus.DRAFT;
-        User author = new UserDAO().getUserById(authorId);
-        Document document = new Document(id, title ,description, DocumentFormat.valueOf(fileFormat), author, filePath, fileName, creationDate,period);
+        Document document = new Document(id, title ,description, DocumentFormat.valueOf(fileFormat), null, filePath, fileName, creationDate,period);
         document.setStatus(status);
-        document.setTags(getTagsForDocument(id));
+        document.setContentHash(rs.getString("content_hash"));
         return document;
     }
 
@@ -7,13 +7,44 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class DocumentRelationDAO extends BaseDAO {
     private static final Logger LOGGER = Logger.getLogger(DocumentRelationDAO.class.getName());
 
+    // Visite ricorsive (WITH RECURSIVE): ogni ramo porta con sé il percorso già visitato (path),
+    // così un ciclo nelle relazioni non fa ripetere la ricorsione all'infinito.
+
+    // versioni precedenti (source NEW_VERSION_OF destination) con depth negativa, successive con depth positiva
+    private static final String VERSION_CHAIN_QUERY =
+            "WITH RECURSIVE older(id, depth, path) AS (" +
+            "  SELECT ?::int, 0, ARRAY[?::int] " +
+            "  UNION ALL " +
+            "  SELECT r.destination_id, o.depth - 1, o.path || r.destination_id FROM older o " +
+            "  JOIN document_relation r ON r.source_id = o.id AND r.relation_type = ? " +
+            "  WHERE r.destination_id <> ALL(o.path)" +
+            "), newer(id, depth, path) AS (" +
+            "  SELECT ?::int, 0, ARRAY[?::int] " +
+            "  UNION ALL " +
+            "  SELECT r.source_id, n.depth + 1, n.path || r.source_id FROM newer n " +
+            "  JOIN document_relation r ON r.destination_id = n.id AND r.relation_type = ? " +
+            "  WHERE r.source_id <> ALL(n.path)" +
+            ") " +
+            "SELECT id, depth FROM (" +
+            "  SELECT DISTINCT ON (id) id, depth FROM (SELECT id, depth FROM older UNION ALL SELECT id, depth FROM newer) v " +
+            "  ORDER BY id, abs(depth)" +
+            ") chain ORDER BY depth, id";
+
+    // relazioni tra i documenti raggiunti da getNeighbourhood
+    private static final String NEIGHBOURHOOD_QUERY =
+            "SELECT * FROM document_relation WHERE source_id = ANY(?) AND destination_id = ANY(?) " +
+            "AND (?::varchar IS NULL OR relation_type = ?) ORDER BY source_id, destination_id";
+
     public DocumentRelationDAO() {
         super();
     }
@@ -27,10 +58,54 @@ public class DocumentRelationDAO extends BaseDAO {
             ps.setBoolean(4,confirmed);
             ps.executeUpdate();
             ps.close();
+            updateGraph(() -> RelationGraph.getInstance().onRelationAdded(sourceId, destinationId, type));
         }catch(SQLException e){
             LOGGER.log(Level.SEVERE, "Errore durante addDocumentRelation(sourceId=" + sourceId + ", destId=" + destinationId + ")", e);
+            markRollbackOnly(e);
         }
     }
+    /**
+     * Inserisce molte relazioni con un batch JDBC (il driver le riscrive in INSERT multi-riga).
+     * Le coppie sorgente/destinazione già presenti vengono ignorate come in addDocumentRelation.
+     * Restituisce le relazioni effettivamente inserite (le chiavi restituite dal DB), oppure null in caso di errore.
+     */
+    public List<DocumentRelation> addDocumentRelations(List<DocumentRelation> relations){
+        List<DocumentRelation> inserted = new ArrayList<>();
+        if(relations==null || relations.isEmpty())
+            return inserted;
+        try{
+            Map<Long, DocumentRelation> byKey = new HashMap<>();
+            for(DocumentRelation r : relations)
+                byKey.putIfAbsent(relationKey(r.getSource().getId(), r.getDestination().getId()), r);
+            KeyReader reader = keys -> inserted.add(byKey.get(relationKey(keys.getInt("source_id"), keys.getInt("destination_id"))));
+            String query="INSERT INTO document_relation (source_id,destination_id,relation_type,confirmed) VALUES (?,?,?,?) ON CONFLICT (source_id,destination_id) DO NOTHING";
+            PreparedStatement ps=connection.prepareStatement(query, new String[]{"source_id","destination_id"});
+            int pending=0;
+            for(DocumentRelation r : relations){
+                ps.setInt(1,r.getSource().getId());
+                ps.setInt(2,r.getDestination().getId());
+                ps.setString(3,r.getRelationType().toString());
+                ps.setBoolean(4,r.isConfirmed());
+                ps.addBatch();
+                if(++pending % BATCH_SIZE == 0)
+                    executeBatch(ps, reader);
+            }
+            if(pending % BATCH_SIZE != 0)
+                executeBatch(ps, reader);
+            ps.close();
+            // nel grafo solo le relazioni inserite: una coppia già presente mantiene il suo tipo
+            updateGraph(() -> inserted.forEach(r -> RelationGraph.getInstance().onRelationAdded(r.getSource().getId(), r.getDestination().getId(), r.getRelationType())));
+            return inserted;
+        }catch(SQLException e){
+            LOGGER.log(Level.SEVERE, "Errore durante addDocumentRelations(size=" + relations.size() + ")", e);
+            markRollbackOnly(e);
+            return null;
+        }
+    }
+
+    private static long relationKey(int sourceId, int destinationId){
+        return ((long) sourceId << 32) | (destinationId & 0xFFFFFFFFL);
+    }
     public void removeDocumentRelation(int sourceId,int destinationId){
         try{
             String query="DELETE FROM document_relation WHERE source_id=? AND destination_id=?";
@@ -39,8 +114,10 @@ public class DocumentRelationDAO extends BaseDAO {
             ps.setInt(2,destinationId);
             ps.executeUpdate();
             ps.close();
+            updateGraph(() -> RelationGraph.getInstance().onRelationRemoved(sourceId, destinationId));
         }catch(SQLException e){
             LOGGER.log(Level.SEVERE, "Errore durante removeDocumentRelation(sourceId=" + sourceId + ", destId=" + destinationId + ")", e);
+            markRollbackOnly(e);
         }
     }
     public void updateDocumentRelation(int sourceId,int destinationId,DocumentRelationType new_type){
@@ -52,8 +129,10 @@ public class DocumentRelationDAO extends BaseDAO {
             ps.setInt(3,destinationId);
             ps.executeUpdate();
             ps.close();
+            updateGraph(() -> RelationGraph.getInstance().onRelationTypeChanged(sourceId, destinationId, new_type));
         }catch(SQLException e){
             LOGGER.log(Level.SEVERE, "Errore durante updateDocumentRelation(sourceId=" + sourceId + ", destId=" + destinationId + ")", e);
+            markRollbackOnly(e);
         }
     }
     //gives the relations about a type where the document is the source
@@ -73,9 +152,7 @@ public class DocumentRelationDAO extends BaseDAO {
                 ps.setString(2, type.toString());
             }
             var rs = ps.executeQuery();
-            while (rs.next()) {
-                relations.add(createDocumentRelationFromResultSet(rs));
-            }
+            relations = createDocumentRelationsFromResultSet(rs);
             rs.close();
             ps.close();
         } catch (SQLException e) {
@@ -99,9 +176,7 @@ public class DocumentRelationDAO extends BaseDAO {
                 ps.setString(2, type.toString());
             }
             var rs = ps.executeQuery();
-            while (rs.next()) {
-                relations.add(createDocumentRelationFromResultSet(rs));
-            }
+            relations = createDocumentRelationsFromResultSet(rs);
             rs.close();
             ps.close();
         } catch (SQLException e) {
@@ -117,9 +192,7 @@ public class DocumentRelationDAO extends BaseDAO {
             PreparedStatement ps = connection.prepareStatement(query);
             ps.setInt(1, documentId);
             var rs = ps.executeQuery();
-            while (rs.next()) {
-                relations.add(createDocumentRelationFromResultSet(rs));
-            }
+            relations = createDocumentRelationsFromResultSet(rs);
             rs.close();
             ps.close();
         } catch (SQLException e) {
@@ -134,9 +207,7 @@ public class DocumentRelationDAO extends BaseDAO {
             PreparedStatement ps = connection.prepareStatement(query);
             ps.setInt(1, documentId);
             var rs = ps.executeQuery();
-            while (rs.next()) {
-                relations.add(createDocumentRelationFromResultSet(rs));
-            }
+            relations = createDocumentRelationsFromResultSet(rs);
             rs.close();
             ps.close();
         } catch (SQLException e) {
@@ -154,9 +225,7 @@ public class DocumentRelationDAO extends BaseDAO {
             ps.setInt(1, documentId);
             ps.setBoolean(2, confirmed);
             var rs = ps.executeQuery();
-            while (rs.next()) {
-                relations.add(createDocumentRelationFromResultSet(rs));
-            }
+            relations = createDocumentRelationsFromResultSet(rs);
             rs.close();
             ps.close();
         } catch (SQLException e) {
@@ -172,9 +241,7 @@ public class DocumentRelationDAO extends BaseDAO {
             ps.setInt(1, documentId);
             ps.setBoolean(2, confirmed);
             var rs = ps.executeQuery();
-            while (rs.next()) {
-                relations.add(createDocumentRelationFromResultSet(rs));
-            }
+            relations = createDocumentRelationsFromResultSet(rs);
             rs.close();
             ps.close();
         } catch (SQLException e) {
@@ -200,17 +267,129 @@ public class DocumentRelationDAO extends BaseDAO {
 
         }catch(SQLException e){
             LOGGER.log(Level.SEVERE, "Errore durante setRelationConfirmed(sourceId=" + sourceId + ", destId=" + destinationId + ", confirmed=" + confirmed + ")", e);
+            markRollbackOnly(e);
+        }
+    }
+    /**
+     * Relazioni tra i documenti raggiungibili da documentId in al più maxDepth passi, in entrambe le direzioni.
+     * Con type non null si seguono solo le relazioni di quel tipo. I documenti sono trovati con una visita in
+     * ampiezza sul RelationGraph (ogni documento visitato una volta sola, anche con cicli), poi una query
+     * legge le relazioni tra loro.
+     */
+    public List<DocumentRelation> getNeighbourhood(int documentId, int maxDepth, DocumentRelationType type) {
+        List<DocumentRelation> relations = new ArrayList<>();
+        if (maxDepth <= 0)
+            return relations;
+        int[] reached = getReachableDocumentIds(documentId, maxDepth, type, RelationGraph.Direction.BOTH);
+        if (reached.length == 0)
+            return relations;
+        Object[] nodes = new Object[reached.length + 1];
+        nodes[0] = documentId;
+        for (int i = 0; i < reached.length; i++) {
+            nodes[i + 1] = reached[i];
+        }
+        String typeName = type != null ? type.toString() : null;
+        try (PreparedStatement ps = connection.prepareStatement(NEIGHBOURHOOD_QUERY)) {
+            java.sql.Array ids = connection.createArrayOf("integer", nodes);
+            ps.setArray(1, ids);
+            ps.setArray(2, ids);
+            ps.setString(3, typeName);
+            ps.setString(4, typeName);
+            try (ResultSet rs = ps.executeQuery()) {
+                relations = createDocumentRelationsFromResultSet(rs);
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Errore durante getNeighbourhood(documentId=" + documentId + ", maxDepth=" + maxDepth + ", type=" + type + ")", e);
+        }
+        return relations;
+    }
+
+    /**
+     * Tutta la catena di versioni (NEW_VERSION_OF) che contiene documentId, dalla più vecchia alla più recente.
+     * Se il documento non ha altre versioni la lista contiene solo il documento stesso.
+     */
+    public List<Document> getVersionChain(int documentId) {
+        List<Integer> ids = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement(VERSION_CHAIN_QUERY)) {
+            String type = DocumentRelationType.NEW_VERSION_OF.toString();
+            ps.setInt(1, documentId);
+            ps.setInt(2, documentId);
+            ps.setString(3, type);
+            ps.setInt(4, documentId);
+            ps.setInt(5, documentId);
+            ps.setString(6, type);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getInt("id"));
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Errore durante getVersionChain(documentId=" + documentId + ")", e);
+            return new ArrayList<>();
+        }
+        return new DocumentDAO().getDocumentsByIds(ids);
+    }
+
+    /**
+     * Versione più recente del documento: l'ultima della sua catena NEW_VERSION_OF
+     * (il documento stesso se non ne esistono di successive).
+     */
+    public Document getLatestVersion(int documentId) {
+        List<Document> chain = getVersionChain(documentId);
+        return chain.isEmpty() ? null : chain.get(chain.size() - 1);
+    }
+
+    /**
+     * Id dei documenti raggiungibili in al più maxDepth passi, in ordine di distanza, usando il RelationGraph in memoria.
+     */
+    public int[] getReachableDocumentIds(int documentId, int maxDepth, DocumentRelationType type, RelationGraph.Direction direction) {
+        try {
+            return RelationGraph.getInstance().reachable(connection, documentId, maxDepth, type, direction);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Errore durante getReachableDocumentIds(documentId=" + documentId + ", maxDepth=" + maxDepth + ")", e);
+            return new int[0];
+        }
+    }
+
+    /**
+     * Percorso minimo tra due documenti (id, estremi inclusi) seguendo le relazioni; vuoto se non sono collegati.
+     */
+    public int[] getShortestPath(int fromId, int toId, DocumentRelationType type, RelationGraph.Direction direction) {
+        try {
+            return RelationGraph.getInstance().shortestPath(connection, fromId, toId, type, direction);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Errore durante getShortestPath(fromId=" + fromId + ", toId=" + toId + ")", e);
+            return new int[0];
         }
     }
+
     //----private methods----//
-    private DocumentRelation createDocumentRelationFromResultSet(ResultSet rs) throws SQLException {
-        int sourceId = rs.getInt("source_id");
-        int destinationId = rs.getInt("destination_id");
-        Document source=new DocumentDAO().getDocumentById(sourceId);
-        Document destination=new DocumentDAO().getDocumentById(destinationId);
-        String relationType = rs.getString("relation_type");
-        boolean confirmed = rs.getBoolean("confirmed");
-        return new DocumentRelation(source, destination, DocumentRelationType.valueOf(relationType),confirmed);
+    private void updateGraph(Runnable update) {
+        afterCommit(update, RelationGraph.getInstance()::invalidate);
     }
 
+    // legge tutte le righe e carica i documenti coinvolti con una sola query invece di due per riga
+    private List<DocumentRelation> createDocumentRelationsFromResultSet(ResultSet rs) throws SQLException {
+        List<Object[]> rows = new ArrayList<>();
+        LinkedHashSet<Integer> documentIds = new LinkedHashSet<>();
+        while (rs.next()) {
+            int sourceId = rs.getInt("source_id");
+            int destinationId = rs.getInt("destination_id");
+            rows.add(new Object[]{sourceId, destinationId, rs.getString("relation_type"), rs.getBoolean("confirmed")});
+            documentIds.add(sourceId);
+            documentIds.add(destinationId);
+        }
+        Map<Integer, Document> documents = new HashMap<>();
+        for (Document d : new DocumentDAO().getDocumentsByIds(new ArrayList<>(documentIds))) {
+            documents.put(d.getId(), d);
+        }
+        List<DocumentRelation> relations = new ArrayList<>();
+        for (Object[] row : rows) {
+            relations.add(new DocumentRelation(documents.get((Integer) row[0]), documents.get((Integer) row[1]),
+                    DocumentRelationType.valueOf((String) row[2]), (Boolean) row[3]));
+        }
+        return relations;
+    }
+
+
 }
@@ -0,0 +1,82 @@
+package ORM;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// indice invertito n-gramma -> documenti per la ricerca per melodia (vedi Ingestion.MelodyNgrams)
+public class MelodyIndexDAO extends BaseDAO {
+    private static final Logger LOGGER = Logger.getLogger(MelodyIndexDAO.class.getName());
+
+    public MelodyIndexDAO() {
+        super();
+    }
+
+    // sostituisce i gram del documento (es. dopo un nuovo upload del file)
+    public boolean replaceNgrams(int documentId, Map<Integer, Integer> ngramCounts) {
+        try {
+            // cancellazione e reinserimento insieme: un errore a metà non lascia il documento senza indice
+            UnitOfWork.run(() -> {
+                PreparedStatement delete = connection.prepareStatement("DELETE FROM melody_ngram WHERE document_id = ?");
+                delete.setInt(1, documentId);
+                delete.executeUpdate();
+                delete.close();
+
+                String query = "INSERT INTO melody_ngram (ngram, document_id, occurrences) VALUES (?, ?, ?)";
+                PreparedStatement ps = connection.prepareStatement(query);
+                int pending = 0;
+                for (Map.Entry<Integer, Integer> gram : ngramCounts.entrySet()) {
+                    ps.setInt(1, gram.getKey());
+                    ps.setInt(2, documentId);
+                    ps.setInt(3, gram.getValue());
+                    ps.addBatch();
+                    if (++pending % BATCH_SIZE == 0)
+                        ps.executeBatch();
+                }
+                if (pending % BATCH_SIZE != 0)
+                    ps.executeBatch();
+                ps.close();
+            });
+            return true;
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Errore durante replaceNgrams(docId=" + documentId + ", ngrams=" + ngramCounts.size() + ")", e);
+            markRollbackOnly(e);
+            return false;
+        }
+    }
+
+    /**
+     * Documenti che contengono almeno minMatches dei gram cercati, dal più simile: prima per numero
+     * di gram distinti in comune, poi per occorrenze totali. Si leggono solo le liste dei gram
+     * richiesti tramite la chiave primaria, senza toccare i file.
+     */
+    public List<Integer> searchByNgrams(Collection<Integer> ngrams, int minMatches, int limit) {
+        List<Integer> documentIds = new ArrayList<>();
+        if (ngrams == null || ngrams.isEmpty())
+            return documentIds;
+        try {
+            String query = "SELECT document_id FROM melody_ngram WHERE ngram = ANY(?) " +
+                    "GROUP BY document_id HAVING COUNT(*) >= ? " +
+                    "ORDER BY COUNT(*) DESC, SUM(occurrences) DESC, document_id LIMIT ?";
+            PreparedStatement ps = connection.prepareStatement(query);
+            ps.setArray(1, connection.createArrayOf("integer", ngrams.toArray()));
+            ps.setInt(2, minMatches);
+            ps.setInt(3, limit);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                documentIds.add(rs.getInt("document_id"));
+            }
+            rs.close();
+            ps.close();
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Errore durante searchByNgrams(ngrams=" + ngrams.size() + ")", e);
+        }
+        return documentIds;
+    }
+}
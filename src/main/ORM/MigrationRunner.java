@@ -0,0 +1,167 @@
+package ORM;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Applica all'avvio gli script di migrazione dello schema (JDBC/migrations/V<n>__<descrizione>.sql)
+ * in ordine di versione, registrandoli nella tabella schema_migrations con il loro checksum.
+ * Uno script già applicato e poi modificato blocca l'avvio: le migrazioni non si riscrivono, se ne aggiunge una nuova.
+ * Tutto avviene in una sola transazione protetta da un advisory lock, così due istanze non migrano insieme.
+ * Se la cartella manca o non contiene script l'avvio fallisce, invece di partire con uno schema incompleto.
+ */
+public class MigrationRunner {
+    private static final Logger LOGGER = Logger.getLogger(MigrationRunner.class.getName());
+    private static final Pattern FILE_NAME = Pattern.compile("V(\\d+)__(.+)\\.sql");
+    private static final long LOCK_KEY = 7_240_311L; // chiave arbitraria per pg_advisory_xact_lock
+
+    private final Path directory;
+
+    public MigrationRunner(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Applica le migrazioni mancanti e restituisce quante ne sono state eseguite.
+     */
+    public int migrate(Connection connection) throws SQLException {
+        List<Migration> migrations = load();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            try (Statement st = connection.createStatement()) {
+                st.execute("SELECT pg_advisory_xact_lock(" + LOCK_KEY + ")");
+                st.execute("CREATE TABLE IF NOT EXISTS schema_migrations (" +
+                        "version INTEGER PRIMARY KEY, " +
+                        "description VARCHAR(255) NOT NULL, " +
+                        "checksum CHAR(64) NOT NULL, " +
+                        "applied_at TIMESTAMP NOT NULL DEFAULT now())");
+            }
+            Map<Integer, String> applied = appliedChecksums(connection);
+
+            int count = 0;
+            for (Migration m : migrations) {
+                String checksum = applied.get(m.version);
+                if (checksum != null) {
+                    if (!checksum.trim().equals(m.checksum))
+                        throw new SQLException("La migrazione V" + m.version + " (" + m.description
+                                + ") è stata modificata dopo essere stata applicata");
+                    continue;
+                }
+                apply(connection, m);
+                count++;
+            }
+            connection.commit();
+            if (count > 0)
+                LOGGER.info("Migrazioni dello schema applicate: " + count);
+            return count;
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    //------ private methods
+
+    private List<Migration> load() throws SQLException {
+        List<Migration> migrations = new ArrayList<>();
+        // senza script i DAO userebbero colonne e indici mancanti: meglio fermare l'avvio (es. working directory sbagliata)
+        if (!Files.isDirectory(directory))
+            throw new SQLException("Cartella delle migrazioni non trovata: " + directory.toAbsolutePath());
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+                if (!matcher.matches())
+                    continue;
+                // i fine riga vengono normalizzati: lo stesso script su Windows e Linux ha lo stesso checksum
+                String sql = Files.readString(file, StandardCharsets.UTF_8).replace("\r\n", "\n");
+                migrations.add(new Migration(Integer.parseInt(matcher.group(1)), matcher.group(2).replace('_', ' '), sql, sha256(sql)));
+            }
+        } catch (IOException e) {
+            throw new SQLException("Impossibile leggere le migrazioni da " + directory, e);
+        }
+        if (migrations.isEmpty())
+            throw new SQLException("Nessuno script di migrazione in " + directory.toAbsolutePath());
+        migrations.sort((a, b) -> Integer.compare(a.version, b.version));
+        for (int i = 1; i < migrations.size(); i++) {
+            if (migrations.get(i).version == migrations.get(i - 1).version)
+                throw new SQLException("Versione di migrazione duplicata: V" + migrations.get(i).version);
+        }
+        return migrations;
+    }
+
+    private static Map<Integer, String> appliedChecksums(Connection connection) throws SQLException {
+        Map<Integer, String> applied = new HashMap<>();
+        try (PreparedStatement ps = connection.prepareStatement("SELECT version, checksum FROM schema_migrations");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                applied.put(rs.getInt("version"), rs.getString("checksum"));
+            }
+        }
+        return applied;
+    }
+
+    private static void apply(Connection connection, Migration m) throws SQLException {
+        LOGGER.info("Applicazione migrazione V" + m.version + " (" + m.description + ")");
+        try (Statement st = connection.createStatement()) {
+            st.execute(m.sql);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Errore durante la migrazione V" + m.version, e);
+            throw e;
+        }
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT INTO schema_migrations (version, description, checksum) VALUES (?, ?, ?)")) {
+            ps.setInt(1, m.version);
+            ps.setString(2, m.description);
+            ps.setString(3, m.checksum);
+            ps.executeUpdate();
+        }
+    }
+
+    static String sha256(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 non disponibile", e);
+        }
+    }
+
+    private static final class Migration {
+        private final int version;
+        private final String description;
+        private final String sql;
+        private final String checksum;
+
+        private Migration(int version, String description, String sql, String checksum) {
+            this.version = version;
+            this.description = description;
+            this.sql = sql;
+            this.checksum = checksum;
+        }
+    }
+}
@@ -21,24 +21,50 @@ public class PublishRequestDAO extends BaseDAO {
     public PublishRequestDAO() {
         super();
     }
-    public void addRequest(Document doc) {
+    /**
+     * Crea la richiesta PENDING e porta il documento in PENDING con un unico statement atomico.
+     * L'indice univoco parziale uq_publish_request_pending fa ignorare l'inserimento se il documento
+     * ha già una richiesta in attesa, anche con richieste concorrenti.
+     * Restituisce true se la richiesta è stata creata, false se ne esisteva già una o in caso di errore:
+     * per distinguere i due casi il chiamante usa hasPendingRequest (vedi UserController.askForPublication).
+     */
+    public boolean addRequest(Document doc) {
         try{
-            String query="INSERT INTO publish_request (document_id,request_status,date_request) VALUES(?,?,?)";
+            String query="WITH ins AS (" +
+                    "INSERT INTO publish_request (document_id,request_status,date_request) VALUES(?,?,?) " +
+                    "ON CONFLICT (document_id) WHERE request_status='PENDING' DO NOTHING RETURNING document_id) " +
+                    "UPDATE document SET status=? WHERE id IN (SELECT document_id FROM ins) RETURNING id";
             PreparedStatement ps=connection.prepareStatement(query);
             ps.setInt(1,doc.getId());
             ps.setString(2, RequestStatus.PENDING.toString());
             ps.setDate(3, java.sql.Date.valueOf(java.time.LocalDate.now()));
-            ps.executeUpdate();
+            ps.setString(4, DocumentStatus.PENDING.toString());
+            ResultSet rs=ps.executeQuery();
+            boolean created=rs.next();
+            rs.close();
             ps.close();
-
-            String query2="UPDATE document SET status=? WHERE id=?";
-            PreparedStatement ps2=connection.prepareStatement(query2);
-            ps2.setString(1, DocumentStatus.PENDING.toString());
-            ps2.setInt(2,doc.getId());
-            ps2.executeUpdate();
-            ps2.close();
+            return created;
         }catch (SQLException e){
             LOGGER.log(Level.SEVERE, "Errore durante addRequest(docId=" + (doc!=null?doc.getId():null) + ")", e);
+            markRollbackOnly(e);
+            return false;
+        }
+    }
+
+    // controllo puntuale sull'indice parziale, senza caricare le richieste
+    public boolean hasPendingRequest(int documentId) {
+        try{
+            String query="SELECT EXISTS (SELECT 1 FROM publish_request WHERE document_id=? AND request_status='PENDING')";
+            PreparedStatement ps=connection.prepareStatement(query);
+            ps.setInt(1,documentId);
+            ResultSet rs=ps.executeQuery();
+            boolean pending=rs.next() && rs.getBoolean(1);
+            rs.close();
+            ps.close();
+            return pending;
+        }catch (SQLException e){
+            LOGGER.log(Level.SEVERE, "Errore durante hasPendingRequest(documentId=" + documentId + ")", e);
+            return false;
         }
     }
     public void removeRequest(int docId) {
@@ -50,6 +76,7 @@ public class PublishRequestDAO extends BaseDAO {
             ps.close();
         }catch (SQLException e){
             LOGGER.log(Level.SEVERE, "Errore durante removeRequest(docId=" + docId + ")", e);
+            markRollbackOnly(e);
         }
     }
 
@@ -65,6 +92,7 @@ public class PublishRequestDAO extends BaseDAO {
             ps2.close();
         }catch (SQLException e){
             LOGGER.log(Level.SEVERE, "Errore durante updateRequestStatus(docId=" + docId + ", moderatorId=" + moderator_id + ")", e);
+            markRollbackOnly(e);
         }
     }
     public List<PublishRequest> getRequestByModerator(int moderatorId){
@@ -0,0 +1,783 @@
+package ORM;
+
+import DomainModel.DocumentRelationType;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Grafo in memoria delle relazioni tra documenti, costruito da document_relation.
+ * Gli archi sono tenuti in array di int (nessun Integer né DocumentRelation) e le query lavorano su
+ * uno snapshot immutabile in formato CSR: per ogni tipo di relazione un array di offset per nodo e uno
+ * di vicini, sia per gli archi uscenti sia per quelli entranti. Le letture non prendono lock.
+ * DocumentRelationDAO e DocumentDAO lo aggiornano a ogni modifica: la lista degli archi cambia in tempo costante
+ * (gli archi sono indicizzati per coppia sorgente/destinazione) e le query vedono lo snapshot più una piccola
+ * sovrapposizione con gli archi aggiunti e rimossi da allora. Dopo MERGE_THRESHOLD modifiche lo snapshot viene
+ * ricostruito su un thread in background, fuori dal monitor, senza bloccare né le letture né le modifiche.
+ * Dentro una transazione aperta il grafo condiviso non vede le modifiche non confermate: la visita carica
+ * dal DB solo gli archi che raggiunge, un livello per query, senza toccare il grafo condiviso.
+ */
+public class RelationGraph {
+    private static final Logger LOGGER = Logger.getLogger(RelationGraph.class.getName());
+    private static final RelationGraph INSTANCE = new RelationGraph();
+    private static final DocumentRelationType[] TYPES = DocumentRelationType.values();
+    private static final int MERGE_THRESHOLD = 256;
+    private static final String OUTGOING_EDGES = "SELECT source_id, destination_id, relation_type, destination_id AS next " +
+            "FROM document_relation WHERE source_id = ANY(?) AND (?::varchar IS NULL OR relation_type = ?)";
+    private static final String INCOMING_EDGES = "SELECT source_id, destination_id, relation_type, source_id AS next " +
+            "FROM document_relation WHERE destination_id = ANY(?) AND (?::varchar IS NULL OR relation_type = ?)";
+
+    public enum Direction { OUTGOING, INCOMING, BOTH }
+
+    private final int mergeThreshold;
+    // stato protetto da synchronized: lista corrente degli archi (null = da (ri)caricare dal DB), copia da cui
+    // è stato costruito lo snapshot e coppie (sorgente, destinazione) modificate da allora, in ordine
+    private EdgeList edges = null;
+    private EdgeList baseEdges = null;
+    private long[] changes = new long[MERGE_THRESHOLD];
+    private int changeCount;
+    private boolean merging;
+    private int generation; // incrementata da invalidate: scarta le ricostruzioni avviate prima
+    private ExecutorService merger; // thread di ricostruzione, creato al primo uso
+    private volatile View view = null; // null = da caricare
+
+    private RelationGraph() {
+        this.mergeThreshold = MERGE_THRESHOLD;
+    }
+
+    // grafo vuoto già caricato, per i test
+    RelationGraph(int mergeThreshold) {
+        this.mergeThreshold = mergeThreshold;
+        install(new EdgeList());
+    }
+
+    public static RelationGraph getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Vicini diretti del documento (ognuno una volta sola). type null = tutti i tipi.
+     */
+    public int[] neighbours(Connection connection, int documentId, DocumentRelationType type, Direction direction) throws SQLException {
+        return reachable(connection, documentId, 1, type, direction);
+    }
+
+    /**
+     * Visita in ampiezza: id dei documenti raggiungibili in al più maxDepth passi (escluso quello di partenza),
+     * in ordine di distanza.
+     */
+    public int[] reachable(Connection connection, int documentId, int maxDepth, DocumentRelationType type, Direction direction) throws SQLException {
+        if (maxDepth <= 0)
+            return new int[0];
+        View v = view(connection, documentId, -1, maxDepth, type, direction);
+        int start = v.indexOf(documentId);
+        if (start < 0)
+            return new int[0];
+        Bfs visit = v.bfs(start, -1, maxDepth, type, direction, false);
+        int[] out = new int[visit.tail - 1];
+        for (int i = 1; i < visit.tail; i++) {
+            out[i - 1] = v.idOf(visit.queue[i]);
+        }
+        return out;
+    }
+
+    /**
+     * Percorso minimo (in numero di relazioni) da fromId a toId, estremi inclusi; array vuoto se non esiste.
+     */
+    public int[] shortestPath(Connection connection, int fromId, int toId, DocumentRelationType type, Direction direction) throws SQLException {
+        View v = view(connection, fromId, toId, Integer.MAX_VALUE, type, direction);
+        int from = v.indexOf(fromId);
+        int to = v.indexOf(toId);
+        if (from < 0 || to < 0)
+            return fromId == toId ? new int[]{fromId} : new int[0];
+        Bfs visit = v.bfs(from, to, Integer.MAX_VALUE, type, direction, true);
+        if (visit.dist[to] < 0)
+            return new int[0];
+        int[] path = new int[visit.dist[to] + 1];
+        for (int i = path.length - 1, node = to; i >= 0; i--, node = visit.parent[node]) {
+            path[i] = v.idOf(node);
+        }
+        return path;
+    }
+
+    public synchronized void onRelationAdded(int sourceId, int destinationId, DocumentRelationType type) {
+        if (edges != null && edges.add(sourceId, destinationId, (byte) type.ordinal()))
+            changed(EdgeList.key(sourceId, destinationId));
+    }
+
+    public synchronized void onRelationRemoved(int sourceId, int destinationId) {
+        if (edges != null && edges.remove(sourceId, destinationId))
+            changed(EdgeList.key(sourceId, destinationId));
+    }
+
+    public synchronized void onRelationTypeChanged(int sourceId, int destinationId, DocumentRelationType type) {
+        if (edges != null && edges.setType(sourceId, destinationId, (byte) type.ordinal()))
+            changed(EdgeList.key(sourceId, destinationId));
+    }
+
+    // le relazioni dei documenti cancellati spariscono per ON DELETE CASCADE
+    public synchronized void onDocumentsDeleted(int[] sortedDocumentIds) {
+        if (edges == null)
+            return;
+        long[] removed = edges.removeTouching(sortedDocumentIds);
+        if (removed.length > 0)
+            changed(removed);
+    }
+
+    /**
+     * Scarta il grafo: verrà ricaricato dal DB alla prossima query.
+     */
+    public synchronized void invalidate() {
+        edges = null;
+        baseEdges = null;
+        changeCount = 0;
+        generation++;
+        view = null;
+    }
+
+    //------ private methods
+
+    // vista su cui eseguire una visita da startId (fino a targetId, se >= 0, o a maxDepth passi)
+    private View view(Connection connection, int startId, int targetId, int maxDepth,
+                      DocumentRelationType type, Direction direction) throws SQLException {
+        if (!connection.getAutoCommit())
+            return new View(new Snapshot(loadAround(connection, startId, targetId, maxDepth, type, direction)), Overlay.EMPTY);
+        View v = view;
+        if (v != null)
+            return v;
+        synchronized (this) {
+            if (edges == null) {
+                EdgeList loaded = load(connection);
+                LOGGER.log(Level.INFO, "RelationGraph caricato: " + loaded.size + " relazioni");
+                install(loaded);
+            }
+            return view;
+        }
+    }
+
+    private void install(EdgeList loaded) {
+        edges = loaded;
+        baseEdges = loaded.copy();
+        changeCount = 0;
+        view = new View(new Snapshot(baseEdges), Overlay.EMPTY);
+    }
+
+    private void changed(long... keys) {
+        if (changeCount + keys.length > changes.length)
+            changes = Arrays.copyOf(changes, Math.max(changes.length * 2, changeCount + keys.length));
+        System.arraycopy(keys, 0, changes, changeCount, keys.length);
+        changeCount += keys.length;
+        View current = view;
+        view = new View(current.base, overlay());
+        if (changeCount >= mergeThreshold && !merging)
+            startMerge();
+    }
+
+    // differenza tra la lista corrente e quella dello snapshot, limitata alle coppie modificate
+    private Overlay overlay() {
+        long[] keys = Arrays.copyOf(changes, changeCount);
+        Arrays.sort(keys);
+        Overlay.Builder builder = new Overlay.Builder();
+        for (int i = 0; i < keys.length; i++) {
+            if (i > 0 && keys[i] == keys[i - 1])
+                continue;
+            int source = (int) (keys[i] >> 32);
+            int destination = (int) keys[i];
+            int before = baseEdges.typeOf(source, destination);
+            int after = edges.typeOf(source, destination);
+            if (before == after)
+                continue;
+            if (before >= 0)
+                builder.remove(keys[i]);
+            if (after >= 0)
+                builder.add(source, destination, (byte) after);
+        }
+        return builder.build();
+    }
+
+    // copia la lista sotto il monitor, costruisce lo snapshot fuori; le modifiche arrivate nel frattempo
+    // restano nella sovrapposizione del nuovo snapshot
+    private void startMerge() {
+        merging = true;
+        EdgeList copy = edges.copy();
+        int merged = changeCount;
+        int started = generation;
+        mergeExecutor().execute(() -> {
+            Snapshot rebuilt = null;
+            try {
+                rebuilt = new Snapshot(copy);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "Errore durante la ricostruzione del RelationGraph", e);
+            } finally {
+                merged(started, copy, rebuilt, merged);
+            }
+        });
+    }
+
+    private synchronized void merged(int started, EdgeList copy, Snapshot rebuilt, int merged) {
+        merging = false;
+        if (rebuilt == null || started != generation)
+            return;
+        baseEdges = copy;
+        changeCount -= merged;
+        System.arraycopy(changes, merged, changes, 0, changeCount);
+        view = new View(rebuilt, overlay());
+        if (changeCount >= mergeThreshold)
+            startMerge();
+    }
+
+    private synchronized ExecutorService mergeExecutor() {
+        if (merger == null) {
+            merger = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "relation-graph-merge");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return merger;
+    }
+
+    private static EdgeList load(Connection connection) throws SQLException {
+        EdgeList loaded = new EdgeList();
+        String query = "SELECT source_id, destination_id, relation_type FROM document_relation";
+        try (PreparedStatement ps = connection.prepareStatement(query);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                loaded.append(rs.getInt("source_id"), rs.getInt("destination_id"),
+                        (byte) DocumentRelationType.valueOf(rs.getString("relation_type")).ordinal());
+            }
+        }
+        return loaded;
+    }
+
+    // visita livello per livello caricando solo gli archi dei nodi raggiunti: con gli stessi filtri di tipo e
+    // direzione, la BFS sul sottografo caricato dà le stesse distanze che sul grafo completo
+    private static EdgeList loadAround(Connection connection, int startId, int targetId, int maxDepth,
+                                       DocumentRelationType type, Direction direction) throws SQLException {
+        EdgeList loaded = new EdgeList();
+        String typeName = type != null ? type.toString() : null;
+        String query = direction == Direction.OUTGOING ? OUTGOING_EDGES
+                : direction == Direction.INCOMING ? INCOMING_EDGES
+                : OUTGOING_EDGES + " UNION ALL " + INCOMING_EDGES;
+        IntSet visited = new IntSet();
+        visited.add(startId);
+        int[] frontier = {startId};
+        int frontierSize = 1;
+        try (PreparedStatement ps = connection.prepareStatement(query)) {
+            for (int depth = 0; depth < maxDepth && frontierSize > 0 && !visited.contains(targetId); depth++) {
+                Object[] boxed = new Object[frontierSize];
+                for (int i = 0; i < frontierSize; i++) {
+                    boxed[i] = frontier[i];
+                }
+                java.sql.Array ids = connection.createArrayOf("integer", boxed);
+                ps.setArray(1, ids);
+                ps.setString(2, typeName);
+                ps.setString(3, typeName);
+                if (direction == Direction.BOTH) {
+                    ps.setArray(4, ids);
+                    ps.setString(5, typeName);
+                    ps.setString(6, typeName);
+                }
+                int[] next = new int[16];
+                int n = 0;
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        loaded.add(rs.getInt("source_id"), rs.getInt("destination_id"),
+                                (byte) DocumentRelationType.valueOf(rs.getString("relation_type")).ordinal());
+                        int node = rs.getInt("next");
+                        if (visited.add(node)) {
+                            if (n == next.length)
+                                next = Arrays.copyOf(next, n * 2);
+                            next[n++] = node;
+                        }
+                    }
+                }
+                frontier = next;
+                frontierSize = n;
+            }
+        }
+        return loaded;
+    }
+
+    // archi come array paralleli; al più un arco per coppia (source, destination), come la PK della tabella.
+    // La tabella hash (indirizzamento aperto, scansione lineare) dà la posizione di un arco in tempo costante.
+    private static final class EdgeList {
+        private int[] sources = new int[64];
+        private int[] destinations = new int[64];
+        private byte[] types = new byte[64];
+        private int size;
+        private long[] keys = new long[128];
+        private int[] slots = new int[128]; // indice dell'arco + 1, 0 = posizione libera
+
+        private void append(int source, int destination, byte type) {
+            if (size == sources.length) {
+                int capacity = size * 2;
+                sources = Arrays.copyOf(sources, capacity);
+                destinations = Arrays.copyOf(destinations, capacity);
+                types = Arrays.copyOf(types, capacity);
+            }
+            sources[size] = source;
+            destinations[size] = destination;
+            types[size] = type;
+            size++;
+            if (size * 2 > keys.length)
+                rehash(keys.length * 2);
+            else
+                put(source, destination, size - 1);
+        }
+
+        private int find(int source, int destination) {
+            return slots[locate(key(source, destination))] - 1;
+        }
+
+        // ordinale del tipo dell'arco, -1 se l'arco non c'è
+        private int typeOf(int source, int destination) {
+            int i = find(source, destination);
+            return i >= 0 ? types[i] : -1;
+        }
+
+        private EdgeList copy() {
+            EdgeList copy = new EdgeList();
+            copy.sources = Arrays.copyOf(sources, sources.length);
+            copy.destinations = Arrays.copyOf(destinations, destinations.length);
+            copy.types = Arrays.copyOf(types, types.length);
+            copy.size = size;
+            copy.keys = Arrays.copyOf(keys, keys.length);
+            copy.slots = Arrays.copyOf(slots, slots.length);
+            return copy;
+        }
+
+        private boolean add(int source, int destination, byte type) {
+            if (find(source, destination) >= 0)
+                return false;
+            append(source, destination, type);
+            return true;
+        }
+
+        private boolean remove(int source, int destination) {
+            int i = find(source, destination);
+            if (i < 0)
+                return false;
+            removeAt(i);
+            return true;
+        }
+
+        private boolean setType(int source, int destination, byte type) {
+            int i = find(source, destination);
+            if (i < 0 || types[i] == type)
+                return false;
+            types[i] = type;
+            return true;
+        }
+
+        // restituisce le coppie (sorgente, destinazione) degli archi rimossi
+        private long[] removeTouching(int[] sortedIds) {
+            long[] removed = new long[0];
+            int n = 0;
+            for (int i = size - 1; i >= 0; i--) {
+                if (Arrays.binarySearch(sortedIds, sources[i]) >= 0 || Arrays.binarySearch(sortedIds, destinations[i]) >= 0) {
+                    if (n == removed.length)
+                        removed = Arrays.copyOf(removed, Math.max(8, n * 2));
+                    removed[n++] = key(sources[i], destinations[i]);
+                    removeAt(i);
+                }
+            }
+            return Arrays.copyOf(removed, n);
+        }
+
+        // l'ordine degli archi non conta: l'ultimo prende il posto di quello rimosso
+        private void removeAt(int i) {
+            unindex(locate(key(sources[i], destinations[i])));
+            size--;
+            if (i == size)
+                return;
+            sources[i] = sources[size];
+            destinations[i] = destinations[size];
+            types[i] = types[size];
+            put(sources[i], destinations[i], i);
+        }
+
+        private static long key(int source, int destination) {
+            return ((long) source << 32) | (destination & 0xFFFFFFFFL);
+        }
+
+        private static int hash(long key) {
+            key *= 0x9E3779B97F4A7C15L;
+            return (int) (key ^ (key >>> 32));
+        }
+
+        // posizione della chiave, o la prima libera della sua sequenza di scansione
+        private int locate(long key) {
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            while (slots[i] != 0 && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        private void put(int source, int destination, int edge) {
+            long key = key(source, destination);
+            int i = locate(key);
+            keys[i] = key;
+            slots[i] = edge + 1;
+        }
+
+        // cancellazione con spostamento all'indietro: nessuna lapide, le scansioni restano corte
+        private void unindex(int hole) {
+            int mask = keys.length - 1;
+            int j = hole;
+            while (true) {
+                j = (j + 1) & mask;
+                if (slots[j] == 0)
+                    break;
+                int home = hash(keys[j]) & mask;
+                boolean stays = hole <= j ? hole < home && home <= j : hole < home || home <= j;
+                if (!stays) {
+                    keys[hole] = keys[j];
+                    slots[hole] = slots[j];
+                    hole = j;
+                }
+            }
+            slots[hole] = 0;
+        }
+
+        private void rehash(int capacity) {
+            keys = new long[capacity];
+            slots = new int[capacity];
+            for (int i = 0; i < size; i++) {
+                put(sources[i], destinations[i], i);
+            }
+        }
+    }
+
+    /**
+     * Rappresentazione CSR immutabile. I nodi sono gli id dei documenti con almeno una relazione,
+     * ordinati e rinumerati da 0; i vicini del nodo n per il tipo t sono targets[t][offsets[t][n] .. offsets[t][n+1]).
+     */
+    private static final class Snapshot {
+        private final int[] nodeIds;
+        private final int[][] outOffsets = new int[TYPES.length][];
+        private final int[][] outTargets = new int[TYPES.length][];
+        private final int[][] inOffsets = new int[TYPES.length][];
+        private final int[][] inTargets = new int[TYPES.length][];
+
+        private Snapshot(EdgeList edges) {
+            int[] ids = new int[edges.size * 2];
+            System.arraycopy(edges.sources, 0, ids, 0, edges.size);
+            System.arraycopy(edges.destinations, 0, ids, edges.size, edges.size);
+            Arrays.sort(ids);
+            int distinct = 0;
+            for (int i = 0; i < ids.length; i++) {
+                if (i == 0 || ids[i] != ids[i - 1])
+                    ids[distinct++] = ids[i];
+            }
+            nodeIds = Arrays.copyOf(ids, distinct);
+
+            int[] src = new int[edges.size];
+            int[] dst = new int[edges.size];
+            for (int i = 0; i < edges.size; i++) {
+                src[i] = indexOf(edges.sources[i]);
+                dst[i] = indexOf(edges.destinations[i]);
+            }
+            for (int t = 0; t < TYPES.length; t++) {
+                outOffsets[t] = new int[distinct + 1];
+                inOffsets[t] = new int[distinct + 1];
+            }
+            // conteggio dei gradi, somme prefisse, poi riempimento (counting sort per nodo)
+            for (int i = 0; i < edges.size; i++) {
+                outOffsets[edges.types[i]][src[i] + 1]++;
+                inOffsets[edges.types[i]][dst[i] + 1]++;
+            }
+            for (int t = 0; t < TYPES.length; t++) {
+                for (int n = 0; n < distinct; n++) {
+                    outOffsets[t][n + 1] += outOffsets[t][n];
+                    inOffsets[t][n + 1] += inOffsets[t][n];
+                }
+                outTargets[t] = new int[outOffsets[t][distinct]];
+                inTargets[t] = new int[inOffsets[t][distinct]];
+            }
+            int[][] outFill = new int[TYPES.length][];
+            int[][] inFill = new int[TYPES.length][];
+            for (int t = 0; t < TYPES.length; t++) {
+                outFill[t] = Arrays.copyOf(outOffsets[t], distinct);
+                inFill[t] = Arrays.copyOf(inOffsets[t], distinct);
+            }
+            for (int i = 0; i < edges.size; i++) {
+                int t = edges.types[i];
+                outTargets[t][outFill[t][src[i]]++] = dst[i];
+                inTargets[t][inFill[t][dst[i]]++] = src[i];
+            }
+        }
+
+        private int indexOf(int documentId) {
+            int i = Arrays.binarySearch(nodeIds, documentId);
+            return i >= 0 ? i : -1;
+        }
+    }
+
+    /**
+     * Snapshot più sovrapposizione: è ciò che vede una query. I nodi sono quelli dello snapshot (0..n-1) seguiti dai
+     * documenti che compaiono solo negli archi aggiunti. Gli archi rimossi dalla sovrapposizione vengono saltati
+     * durante la visita del CSR, quelli aggiunti si trovano per ricerca binaria.
+     */
+    private static final class View {
+        private final Snapshot base;
+        private final Overlay overlay;
+        private final int[] extraIds; // ordinati
+
+        private View(Snapshot base, Overlay overlay) {
+            this.base = base;
+            this.overlay = overlay;
+            int[] ids = new int[overlay.outFrom.length * 2];
+            int n = 0;
+            for (int i = 0; i < overlay.outFrom.length; i++) {
+                if (base.indexOf(overlay.outFrom[i]) < 0)
+                    ids[n++] = overlay.outFrom[i];
+                if (base.indexOf(overlay.outTo[i]) < 0)
+                    ids[n++] = overlay.outTo[i];
+            }
+            Arrays.sort(ids, 0, n);
+            int distinct = 0;
+            for (int i = 0; i < n; i++) {
+                if (i == 0 || ids[i] != ids[i - 1])
+                    ids[distinct++] = ids[i];
+            }
+            this.extraIds = Arrays.copyOf(ids, distinct);
+        }
+
+        private int size() {
+            return base.nodeIds.length + extraIds.length;
+        }
+
+        private int indexOf(int documentId) {
+            int i = base.indexOf(documentId);
+            if (i >= 0)
+                return i;
+            i = Arrays.binarySearch(extraIds, documentId);
+            return i >= 0 ? base.nodeIds.length + i : -1;
+        }
+
+        private int idOf(int node) {
+            return node < base.nodeIds.length ? base.nodeIds[node] : extraIds[node - base.nodeIds.length];
+        }
+
+        /**
+         * BFS da start; si ferma a maxDepth o quando raggiunge target (se >= 0).
+         * Restituisce distanze (-1 = non raggiunto) e ordine di visita, più il predecessore di ogni nodo se richiesto.
+         */
+        private Bfs bfs(int start, int target, int maxDepth, DocumentRelationType type, Direction direction, boolean withParents) {
+            Bfs visit = new Bfs(size(), withParents);
+            visit.dist[start] = 0;
+            visit.queue[visit.tail++] = start;
+            for (int head = 0; head < visit.tail; head++) {
+                int node = visit.queue[head];
+                if (node == target || visit.dist[node] == maxDepth)
+                    continue;
+                expand(node, type, direction, visit);
+                if (target >= 0 && visit.dist[target] >= 0)
+                    break;
+            }
+            return visit;
+        }
+
+        private void expand(int node, DocumentRelationType type, Direction direction, Bfs visit) {
+            int id = idOf(node);
+            if (node < base.nodeIds.length) {
+                for (int t = 0; t < TYPES.length; t++) {
+                    if (type != null && type.ordinal() != t)
+                        continue;
+                    if (direction != Direction.INCOMING)
+                        expandBase(base.outOffsets[t], base.outTargets[t], node, id, true, visit);
+                    if (direction != Direction.OUTGOING)
+                        expandBase(base.inOffsets[t], base.inTargets[t], node, id, false, visit);
+                }
+            }
+            if (direction != Direction.INCOMING)
+                expandAdded(overlay.outFrom, overlay.outTo, overlay.outTypes, node, id, type, visit);
+            if (direction != Direction.OUTGOING)
+                expandAdded(overlay.inFrom, overlay.inTo, overlay.inTypes, node, id, type, visit);
+        }
+
+        private void expandBase(int[] offsets, int[] targets, int node, int id, boolean outgoing, Bfs visit) {
+            for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+                int next = targets[i];
+                if (overlay.removed.length > 0) {
+                    int nextId = base.nodeIds[next];
+                    long key = outgoing ? EdgeList.key(id, nextId) : EdgeList.key(nextId, id);
+                    if (Arrays.binarySearch(overlay.removed, key) >= 0)
+                        continue;
+                }
+                visit.reach(node, next);
+            }
+        }
+
+        private void expandAdded(int[] from, int[] to, byte[] types, int node, int id, DocumentRelationType type, Bfs visit) {
+            for (int i = Overlay.firstOf(from, id); i < from.length && from[i] == id; i++) {
+                if (type == null || type.ordinal() == types[i])
+                    visit.reach(node, indexOf(to[i]));
+            }
+        }
+    }
+
+    /**
+     * Archi cambiati rispetto allo snapshot: coppie (sorgente, destinazione) rimosse, ordinate, e archi aggiunti,
+     * ordinati per sorgente (out*) e per destinazione (in*, dove from è la destinazione). Un cambio di tipo è
+     * una rimozione più un'aggiunta.
+     */
+    private static final class Overlay {
+        private static final Overlay EMPTY = new Builder().build();
+
+        private final long[] removed;
+        private final int[] outFrom, outTo, inFrom, inTo;
+        private final byte[] outTypes, inTypes;
+
+        private Overlay(long[] removed, int[] sources, int[] destinations, byte[] types) {
+            this.removed = removed;
+            int n = sources.length;
+            outFrom = new int[n];
+            outTo = new int[n];
+            outTypes = new byte[n];
+            inFrom = new int[n];
+            inTo = new int[n];
+            inTypes = new byte[n];
+            sortBy(sources, destinations, types, outFrom, outTo, outTypes);
+            sortBy(destinations, sources, types, inFrom, inTo, inTypes);
+        }
+
+        private static void sortBy(int[] from, int[] to, byte[] types, int[] sortedFrom, int[] sortedTo, byte[] sortedTypes) {
+            long[] order = new long[from.length];
+            for (int i = 0; i < from.length; i++) {
+                order[i] = ((long) from[i] << 32) | i;
+            }
+            Arrays.sort(order);
+            for (int i = 0; i < order.length; i++) {
+                int j = (int) order[i];
+                sortedFrom[i] = from[j];
+                sortedTo[i] = to[j];
+                sortedTypes[i] = types[j];
+            }
+        }
+
+        // prima posizione con valore >= id
+        private static int firstOf(int[] sorted, int id) {
+            int low = 0, high = sorted.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (sorted[mid] < id)
+                    low = mid + 1;
+                else
+                    high = mid;
+            }
+            return low;
+        }
+
+        private static final class Builder {
+            private long[] removed = new long[0];
+            private int removedCount;
+            private int[] sources = new int[0];
+            private int[] destinations = new int[0];
+            private byte[] types = new byte[0];
+            private int addedCount;
+
+            // le chiavi arrivano in ordine crescente
+            private void remove(long key) {
+                if (removedCount == removed.length)
+                    removed = Arrays.copyOf(removed, Math.max(8, removedCount * 2));
+                removed[removedCount++] = key;
+            }
+
+            private void add(int source, int destination, byte type) {
+                if (addedCount == sources.length) {
+                    int capacity = Math.max(8, addedCount * 2);
+                    sources = Arrays.copyOf(sources, capacity);
+                    destinations = Arrays.copyOf(destinations, capacity);
+                    types = Arrays.copyOf(types, capacity);
+                }
+                sources[addedCount] = source;
+                destinations[addedCount] = destination;
+                types[addedCount] = type;
+                addedCount++;
+            }
+
+            private Overlay build() {
+                return new Overlay(Arrays.copyOf(removed, removedCount), Arrays.copyOf(sources, addedCount),
+                        Arrays.copyOf(destinations, addedCount), Arrays.copyOf(types, addedCount));
+            }
+        }
+    }
+
+    // stato di una visita: lo snapshot è condiviso tra thread, quindi non tiene stato delle query
+    private static final class Bfs {
+        private final int[] dist;
+        private final int[] queue;
+        private final int[] parent;
+        private int tail;
+
+        private Bfs(int nodes, boolean withParents) {
+            dist = new int[nodes];
+            Arrays.fill(dist, -1);
+            queue = new int[nodes];
+            parent = withParents ? new int[nodes] : null;
+        }
+
+        private void reach(int node, int next) {
+            if (dist[next] >= 0)
+                return;
+            dist[next] = dist[node] + 1;
+            if (parent != null)
+                parent[next] = node;
+            queue[tail++] = next;
+        }
+    }
+
+    // insieme di int a indirizzamento aperto, per gli id visitati senza Integer
+    private static final class IntSet {
+        private static final int FREE = Integer.MIN_VALUE;
+        private int[] table = new int[32];
+        private int size;
+
+        private IntSet() {
+            Arrays.fill(table, FREE);
+        }
+
+        private boolean contains(int value) {
+            return table[slot(table, value)] == value;
+        }
+
+        private boolean add(int value) {
+            int i = slot(table, value);
+            if (table[i] == value)
+                return false;
+            table[i] = value;
+            if (++size * 2 > table.length) {
+                int[] old = table;
+                table = new int[old.length * 2];
+                Arrays.fill(table, FREE);
+                for (int v : old) {
+                    if (v != FREE)
+                        table[slot(table, v)] = v;
+                }
+            }
+            return true;
+        }
+
+        // posizione del valore, o la prima libera della sua sequenza di scansione
+        private static int slot(int[] table, int value) {
+            int mask = table.length - 1;
+            int h = value * 0x9E3779B9;
+            int i = (h ^ (h >>> 16)) & mask;
+            while (table[i] != FREE && table[i] != value) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+    }
+}
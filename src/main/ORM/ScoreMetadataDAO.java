@@ -0,0 +1,83 @@
+package ORM;
+
+import DomainModel.ScoreMetadata;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class ScoreMetadataDAO extends BaseDAO {
+    private static final Logger LOGGER = Logger.getLogger(ScoreMetadataDAO.class.getName());
+
+    public ScoreMetadataDAO() {
+        super();
+    }
+
+    // inserisce o sostituisce i metadati del documento (es. dopo un nuovo upload del file)
+    public boolean saveMetadata(int documentId, ScoreMetadata metadata) {
+        try {
+            String query = "INSERT INTO score_metadata (document_id, composer, key_signature, time_signature, tempo, instruments, measure_count) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?) " +
+                    "ON CONFLICT (document_id) DO UPDATE SET composer = EXCLUDED.composer, key_signature = EXCLUDED.key_signature, " +
+                    "time_signature = EXCLUDED.time_signature, tempo = EXCLUDED.tempo, instruments = EXCLUDED.instruments, " +
+                    "measure_count = EXCLUDED.measure_count";
+            PreparedStatement ps = connection.prepareStatement(query);
+            ps.setInt(1, documentId);
+            ps.setString(2, metadata.getComposer());
+            ps.setString(3, metadata.getKeySignature());
+            ps.setString(4, metadata.getTimeSignature());
+            if (metadata.getTempo() != null)
+                ps.setInt(5, metadata.getTempo());
+            else
+                ps.setNull(5, Types.INTEGER);
+            ps.setArray(6, connection.createArrayOf("text", metadata.getInstruments().toArray()));
+            ps.setInt(7, metadata.getMeasureCount());
+            int affected = ps.executeUpdate();
+            ps.close();
+            return affected > 0;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Errore durante saveMetadata(docId=" + documentId + ")", e);
+            markRollbackOnly(e);
+            return false;
+        }
+    }
+
+    public ScoreMetadata getMetadata(int documentId) {
+        try {
+            String query = "SELECT * FROM score_metadata WHERE document_id = ?";
+            PreparedStatement ps = connection.prepareStatement(query);
+            ps.setInt(1, documentId);
+            ResultSet rs = ps.executeQuery();
+            ScoreMetadata metadata = null;
+            if (rs.next())
+                metadata = createMetadataFromResultSet(rs);
+            rs.close();
+            ps.close();
+            return metadata;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Errore durante getMetadata(docId=" + documentId + ")", e);
+            return null;
+        }
+    }
+
+    //------ private methods
+
+    private ScoreMetadata createMetadataFromResultSet(ResultSet rs) throws SQLException {
+        ScoreMetadata metadata = new ScoreMetadata();
+        metadata.setComposer(rs.getString("composer"));
+        metadata.setKeySignature(rs.getString("key_signature"));
+        metadata.setTimeSignature(rs.getString("time_signature"));
+        int tempo = rs.getInt("tempo");
+        metadata.setTempo(rs.wasNull() ? null : tempo);
+        Array instruments = rs.getArray("instruments");
+        if (instruments != null)
+            metadata.setInstruments(Arrays.asList((String[]) instruments.getArray()));
+        metadata.setMeasureCount(rs.getInt("measure_count"));
+        return metadata;
+    }
+}
@@ -0,0 +1,216 @@
+package ORM;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cache LRU dei PreparedStatement di una singola connessione fisica, indicizzata per testo SQL.
+ * I DAO continuano a chiamare prepareStatement/close: close() restituisce lo statement alla cache
+ * invece di chiuderlo, così il driver può riusare lo statement preparato lato server
+ * invece di rifare parsing e planning a ogni chiamata.
+ * Una connessione è usata da un solo thread alla volta, ma i metodi sono comunque sincronizzati.
+ * Gli statement che un DAO non ha chiuso (es. eccezione prima di close()) vengono recuperati da
+ * releaseAll() quando la connessione torna al pool.
+ */
+final class StatementCache {
+    private static final Logger LOGGER = Logger.getLogger(StatementCache.class.getName());
+
+    private final Connection physical;
+    private final Connection owner; // proxy restituito da getConnection() degli statement
+    private final int maxSize;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong evictions;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ArrayList<PreparedStatement> uncached = new ArrayList<>(); // statement fuori cache del prestito corrente
+    private int leased; // entry in prestito: se zero releaseAll non ha niente da fare
+
+    StatementCache(Connection physical, Connection owner, int maxSize, AtomicLong hits, AtomicLong misses, AtomicLong evictions) {
+        this.physical = physical;
+        this.owner = owner;
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+    }
+
+    synchronized PreparedStatement prepare(String sql) throws SQLException {
+        Entry entry = entries.get(sql);
+        if (entry != null && !entry.inUse && !entry.statement.isClosed()) {
+            hits.incrementAndGet();
+            return entry.lease();
+        }
+        misses.incrementAndGet();
+        if (entry != null && entry.inUse) {
+            // stesso SQL già aperto (es. chiamata annidata): statement non in cache
+            PreparedStatement ps = physical.prepareStatement(sql);
+            uncached.add(ps);
+            return ps;
+        }
+
+        entry = new Entry(physical.prepareStatement(sql));
+        Entry previous = entries.put(sql, entry);
+        if (previous != null)
+            closeQuietly(previous.statement);
+        evictIfNeeded();
+        return entry.lease();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Chiamato quando la connessione torna al pool: rilascia gli statement ancora in prestito,
+     * che così tornano riutilizzabili invece di restare occupati per sempre, e chiude quelli fuori cache.
+     * Le vecchie referenze diventano inutilizzabili come dopo un close().
+     */
+    synchronized void releaseAll() {
+        if (leased == 0 && uncached.isEmpty())
+            return;
+        int leaked = 0;
+        for (Entry e : new ArrayList<>(entries.values())) {
+            if (e.inUse && e.lease != null) {
+                e.lease.closed = true;
+                release(e);
+                leaked++;
+            }
+        }
+        for (PreparedStatement ps : uncached) {
+            closeQuietly(ps);
+        }
+        uncached.clear();
+        if (leaked > 0)
+            LOGGER.log(Level.FINE, leaked + " statement non chiusi recuperati al rilascio della connessione");
+    }
+
+    synchronized void closeAll() {
+        for (Entry e : entries.values()) {
+            closeQuietly(e.statement);
+        }
+        entries.clear();
+        leased = 0;
+        for (PreparedStatement ps : uncached) {
+            closeQuietly(ps);
+        }
+        uncached.clear();
+    }
+
+    //------ private methods
+
+    private void evictIfNeeded() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (entries.size() > maxSize && it.hasNext()) {
+            Entry eldest = it.next();
+            it.remove();
+            evictions.incrementAndGet();
+            if (eldest.inUse)
+                eldest.evicted = true; // verrà chiuso quando il DAO lo rilascia
+            else
+                closeQuietly(eldest.statement);
+        }
+    }
+
+    private synchronized void release(Entry entry) {
+        leased--;
+        entry.inUse = false;
+        entry.lease = null;
+        if (entry.evicted) {
+            closeQuietly(entry.statement);
+            return;
+        }
+        try {
+            // riporta lo statement allo stato iniziale per il prossimo utilizzo
+            ResultSet open = entry.statement.getResultSet();
+            if (open != null)
+                open.close();
+            entry.statement.clearParameters();
+            entry.statement.clearBatch();
+            entry.statement.setFetchSize(0);
+            entry.statement.setMaxRows(0);
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Statement non riutilizzabile, viene rimosso dalla cache", e);
+            entries.values().remove(entry);
+            closeQuietly(entry.statement);
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement ps) {
+        try {
+            ps.close();
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Errore durante la chiusura di uno statement in cache", e);
+        }
+    }
+
+    private final class Entry {
+        private final PreparedStatement statement;
+        private boolean inUse;
+        private boolean evicted;
+        private Lease lease; // prestito corrente, null se libero
+
+        private Entry(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        // ogni prestito ha il suo proxy, così un doppio close() non rilascia lo statement di un altro utilizzo
+        private PreparedStatement lease() {
+            leased++;
+            inUse = true;
+            lease = new Lease(this);
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, lease);
+        }
+    }
+
+    private final class Lease implements InvocationHandler {
+        private final Entry entry;
+        private volatile boolean closed;
+
+        private Lease(Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release(entry);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || entry.statement.isClosed();
+                case "getConnection":
+                    return owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + entry.statement + "]";
+                default:
+                    if (closed)
+                        throw new SQLException("Statement già chiuso");
+                    try {
+                        return method.invoke(entry.statement, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
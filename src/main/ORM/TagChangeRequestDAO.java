@@ -39,8 +39,10 @@ public class TagChangeRequestDAO extends BaseDAO {
             LOGGER.log(Level.SEVERE, "Error during addRequestForExistingTag(docId="
                     + (req.getDocument() != null ? req.getDocument().getId() : null)
                     + ", label=" + req.getExistingTagLabel() + ")", e);
+            markRollbackOnly(e);
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Validation failed in addRequestForExistingTag()", e);
+            markRollbackOnly(e);
         }
     }
 
@@ -71,8 +73,10 @@ public class TagChangeRequestDAO extends BaseDAO {
                     "Error during addRequestForNewLabel(docId=" +
                             (req.getDocument() != null ? req.getDocument().getId() : null) +
                             ", proposedLabel=" + req.getProposedLabel() + ")", e);
+            markRollbackOnly(e);
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Validation failed in addRequestForNewLabel()", e);
+            markRollbackOnly(e);
         }
     }
 
@@ -96,6 +100,7 @@ public class TagChangeRequestDAO extends BaseDAO {
         }catch (SQLException e) {
             LOGGER.log(Level.SEVERE,
                     "Error during updateStatus(requestId=" + requestId + ", status=" + newStatus + ")", e);
+            markRollbackOnly(e);
         }
     }
 
@@ -21,26 +21,34 @@ public class TagDAO extends BaseDAO {
         return new Tag(label, description);
     }
 
-    private String normalize(String s){
-        return s == null ? null: s.trim().toLowerCase();
-    }
-
     public void addTag(Tag t) {
         try {
-            String q = "INSERT INTO tag (tag_label, description) VALUES (?, ?)";
+            // un'etichetta già presente non è un errore: la richiesta che la propone può comunque essere approvata
+            String q = "INSERT INTO tag (tag_label, description) VALUES (?, ?) ON CONFLICT (tag_label) DO NOTHING";
             PreparedStatement ps = connection.prepareStatement(q);
             ps.setString(1, t.getLabel());
             ps.setString(2, t.getDescription());
-            ps.executeUpdate();
+            int inserted = ps.executeUpdate();
             ps.close();
+            if (inserted == 0)
+                return;
+            afterCommit(() -> TagDictionary.getInstance().onTagAdded(TagDictionary.normalize(t.getLabel()), t),
+                    TagDictionary.getInstance()::invalidate);
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE,
                     "Error during addTag(label=" + t.getLabel() + ")", e);
+            markRollbackOnly(e);
         }
     }
 
     public Tag findByLabelNormalized(String label){
+        if (label == null)
+            return null;
         try{
+            // fuori da una transazione il vocabolario in memoria è allineato al DB: nessuna query
+            if (!inTransaction())
+                return TagDictionary.getInstance().find(connection, TagDictionary.normalize(label));
+
             String query = "SELECT tag_label, description FROM tag WHERE LOWER(TRIM(tag_label)) = LOWER(TRIM(?))";
             PreparedStatement preparedStatement = connection.prepareStatement(query);
             preparedStatement.setString(1, label);
@@ -0,0 +1,96 @@
+package ORM;
+
+import DomainModel.Tag;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Vocabolario dei tag in memoria, indicizzato per etichetta normalizzata (vedi normalize).
+ * Viene caricato dalla tabella tag al primo utilizzo, aggiornato da TagDAO.addTag e ricaricato
+ * periodicamente per recepire eventuali modifiche fatte da altri processi.
+ */
+public class TagDictionary {
+    private static final Logger LOGGER = Logger.getLogger(TagDictionary.class.getName());
+    private static final long REFRESH_MILLIS = 10 * 60_000;
+    private static final TagDictionary INSTANCE = new TagDictionary();
+
+    private Map<String, Tag> byNormalizedLabel = null; // null = da (ri)caricare
+    private long loadedAt;
+    private long hits;
+    private long misses;
+
+    private TagDictionary() {}
+
+    public static TagDictionary getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Cerca il tag con la chiave già normalizzata. Restituisce una copia, o null se il tag non esiste.
+     */
+    public synchronized Tag find(Connection connection, String normalizedLabel) throws SQLException {
+        if (byNormalizedLabel == null || System.currentTimeMillis() - loadedAt > REFRESH_MILLIS)
+            load(connection);
+        Tag t = byNormalizedLabel.get(normalizedLabel);
+        if (t == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return new Tag(t.getLabel(), t.getDescription());
+    }
+
+    /**
+     * Chiave di ricerca di un'etichetta, equivalente a LOWER(TRIM(label)) di PostgreSQL: si tolgono solo gli spazi
+     * (non tab e a capo) e il minuscolo non dipende dal locale della JVM (es. "I" -> "ı" in turco).
+     */
+    public static String normalize(String label) {
+        if (label == null)
+            return null;
+        int start = 0;
+        int end = label.length();
+        while (start < end && label.charAt(start) == ' ')
+            start++;
+        while (end > start && label.charAt(end - 1) == ' ')
+            end--;
+        return label.substring(start, end).toLowerCase(Locale.ROOT);
+    }
+
+    public synchronized void onTagAdded(String normalizedLabel, Tag tag) {
+        if (byNormalizedLabel != null)
+            byNormalizedLabel.putIfAbsent(normalizedLabel, new Tag(tag.getLabel(), tag.getDescription()));
+    }
+
+    public synchronized void invalidate() {
+        byNormalizedLabel = null;
+    }
+
+    public synchronized CacheStats getStats() {
+        return new CacheStats(hits, misses, 0, byNormalizedLabel == null ? 0 : byNormalizedLabel.size());
+    }
+
+    //------ private methods
+
+    private void load(Connection connection) throws SQLException {
+        Map<String, Tag> loaded = new HashMap<>();
+        String query = "SELECT tag_label, description FROM tag";
+        try (PreparedStatement ps = connection.prepareStatement(query);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                String label = rs.getString("tag_label");
+                loaded.putIfAbsent(normalize(label), new Tag(label, rs.getString("description")));
+            }
+        }
+        byNormalizedLabel = loaded;
+        loadedAt = System.currentTimeMillis();
+        LOGGER.log(Level.INFO, "TagDictionary caricato: " + loaded.size() + " tag");
+    }
+}
@@ -0,0 +1,182 @@
+package ORM;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Indice invertito in memoria tag -> id dei documenti, con posting list compresse (CompressedBitmap).
+ * Viene caricato da document_tags al primo utilizzo e tenuto allineato da DocumentDAO.
+ * Dentro una transazione aperta non viene usato: DocumentDAO filtra i tag con il DB, che vede anche le modifiche non confermate.
+ * Le query AND/OR/NOT sui tag si risolvono con intersezioni di bitmap prima di interrogare il DB.
+ */
+public class TagIndex {
+    private static final Logger LOGGER = Logger.getLogger(TagIndex.class.getName());
+    private static final TagIndex INSTANCE = new TagIndex();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Map<String, CompressedBitmap> postings = null; // null = da (ri)caricare
+
+    private TagIndex() {}
+
+    public static TagIndex getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Calcola i documenti che hanno tutti i tag di allOf, almeno uno di anyOf (se non vuoto) e nessuno di noneOf.
+     * Restituisce null se allOf e anyOf sono entrambi vuoti: senza condizioni positive l'insieme
+     * non è delimitato e il chiamante deve usare solo noneOf come esclusione.
+     */
+    public CompressedBitmap query(Connection connection, List<String> allOf, List<String> anyOf, List<String> noneOf) throws SQLException {
+        Map<String, CompressedBitmap> postings = ensureLoaded(connection);
+        lock.readLock().lock();
+        try {
+            CompressedBitmap result = null;
+            if (allOf != null) {
+                for (String tag : allOf) {
+                    CompressedBitmap p = postings.getOrDefault(tag, new CompressedBitmap());
+                    result = result == null ? p.copy() : result.and(p);
+                    if (result.isEmpty())
+                        return result;
+                }
+            }
+            if (anyOf != null && !anyOf.isEmpty()) {
+                CompressedBitmap union = new CompressedBitmap();
+                for (String tag : anyOf) {
+                    CompressedBitmap p = postings.get(tag);
+                    if (p != null)
+                        union = union.or(p);
+                }
+                result = result == null ? union : result.and(union);
+            }
+            if (result == null)
+                return null;
+            return result.andNot(unionOf(postings, noneOf));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Unione delle posting list dei tag indicati.
+     */
+    public CompressedBitmap documentsWithAny(Connection connection, List<String> tags) throws SQLException {
+        Map<String, CompressedBitmap> postings = ensureLoaded(connection);
+        lock.readLock().lock();
+        try {
+            return unionOf(postings, tags);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void onTagAdded(int documentId, String tagLabel) {
+        lock.writeLock().lock();
+        try {
+            if (postings != null)
+                postings.computeIfAbsent(tagLabel, k -> new CompressedBitmap()).add(documentId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void onTagRemoved(int documentId, String tagLabel) {
+        lock.writeLock().lock();
+        try {
+            if (postings != null) {
+                CompressedBitmap p = postings.get(tagLabel);
+                if (p != null) {
+                    p.remove(documentId);
+                    if (p.isEmpty())
+                        postings.remove(tagLabel);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void onDocumentsDeleted(CompressedBitmap documentIds) {
+        lock.writeLock().lock();
+        try {
+            if (postings != null) {
+                postings.replaceAll((tag, p) -> p.andNot(documentIds));
+                postings.values().removeIf(CompressedBitmap::isEmpty);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Scarta l'indice: verrà ricaricato dal DB alla prossima query.
+     * Da usare quando una modifica potrebbe non essere confermata (transazione aperta) o cambia il DB.
+     */
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            postings = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //------ private methods
+
+    private static CompressedBitmap unionOf(Map<String, CompressedBitmap> postings, List<String> tags) {
+        CompressedBitmap union = new CompressedBitmap();
+        if (tags != null) {
+            for (String tag : tags) {
+                CompressedBitmap p = postings.get(tag);
+                if (p != null)
+                    union = union.or(p);
+            }
+        }
+        return union;
+    }
+
+    // restituisce le posting list correnti; la mappa resta valida anche se nel frattempo l'indice viene invalidato
+    private Map<String, CompressedBitmap> ensureLoaded(Connection connection) throws SQLException {
+        lock.readLock().lock();
+        try {
+            if (postings != null)
+                return postings;
+        } finally {
+            lock.readLock().unlock();
+        }
+        // dentro una transazione aperta i dati letti potrebbero essere annullati: non si carica l'indice
+        // (rileggere tutta document_tags a ogni query costerebbe più del filtro fatto dal DB)
+        if (!connection.getAutoCommit())
+            throw new SQLException("TagIndex non caricato: connessione in una transazione aperta");
+        lock.writeLock().lock();
+        try {
+            if (postings == null) {
+                postings = load(connection);
+                LOGGER.log(Level.INFO, "TagIndex caricato: " + postings.size() + " tag");
+            }
+            return postings;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static Map<String, CompressedBitmap> load(Connection connection) throws SQLException {
+        Map<String, CompressedBitmap> loaded = new HashMap<>();
+        String query = "SELECT document_id, tag_label FROM document_tags";
+        try (PreparedStatement ps = connection.prepareStatement(query);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                loaded.computeIfAbsent(rs.getString("tag_label"), k -> new CompressedBitmap()).add(rs.getInt("document_id"));
+            }
+        }
+        return loaded;
+    }
+}
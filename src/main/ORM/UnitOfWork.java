@@ -0,0 +1,133 @@
+package ORM;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Esegue più operazioni dei DAO in un'unica transazione sulla connessione del thread corrente,
+ * con un solo commit finale: o vanno a buon fine tutte o non ne resta traccia.
+ * I DAO catturano le SQLException, quindi segnalano gli errori con markRollbackOnly.
+ * Se la connessione è già in una transazione aperta dal chiamante si usa un savepoint.
+ */
+public final class UnitOfWork {
+    private static final Logger LOGGER = Logger.getLogger(UnitOfWork.class.getName());
+    private static final ThreadLocal<UnitOfWork> CURRENT = new ThreadLocal<>();
+
+    private final boolean ownsTransaction;
+    private Exception rollbackCause;
+    private final List<Runnable> afterCommit = new ArrayList<>();
+
+    @FunctionalInterface
+    public interface Work<T> {
+        T execute() throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Action {
+        void execute() throws Exception;
+    }
+
+    private UnitOfWork(boolean ownsTransaction) {
+        this.ownsTransaction = ownsTransaction;
+    }
+
+    public static void run(Action action) throws Exception {
+        execute(() -> {
+            action.execute();
+            return null;
+        });
+    }
+
+    public static <T> T execute(Work<T> work) throws Exception {
+        if (CURRENT.get() != null)
+            return work.execute(); // unit of work annidata: partecipa a quella esterna
+
+        // la transazione tiene la connessione legata al thread; il setAutoCommit(true) finale la restituisce al pool
+        Connection connection = DBConnection.getInstance().getThreadConnection();
+        boolean ownsTransaction = connection.getAutoCommit();
+        UnitOfWork uow = new UnitOfWork(ownsTransaction);
+        Savepoint savepoint = null;
+        CURRENT.set(uow);
+        try {
+            if (ownsTransaction)
+                connection.setAutoCommit(false);
+            else
+                savepoint = connection.setSavepoint();
+
+            T result;
+            try {
+                result = work.execute();
+            } catch (Exception e) {
+                uow.rollback(connection, savepoint);
+                throw e;
+            }
+            if (uow.rollbackCause != null) {
+                uow.rollback(connection, savepoint);
+                throw new SQLException("Transazione annullata: un'operazione sul database è fallita", uow.rollbackCause);
+            }
+
+            if (ownsTransaction)
+                connection.commit();
+            else
+                connection.releaseSavepoint(savepoint);
+            uow.afterCommit.forEach(UnitOfWork::runQuietly);
+            return result;
+        } finally {
+            CURRENT.remove();
+            if (ownsTransaction) {
+                try {
+                    connection.setAutoCommit(true);
+                } catch (SQLException e) {
+                    LOGGER.log(Level.WARNING, "Impossibile ripristinare l'autocommit dopo la unit of work", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Segnala che un'operazione è fallita: la unit of work attiva (se c'è) verrà annullata invece di confermata.
+     */
+    public static void markRollbackOnly(Exception cause) {
+        UnitOfWork uow = CURRENT.get();
+        if (uow != null && uow.rollbackCause == null)
+            uow.rollbackCause = cause;
+    }
+
+    /**
+     * Rimanda l'azione a dopo il commit della unit of work attiva. Restituisce false se non è possibile
+     * (nessuna unit of work, oppure transazione del chiamante di cui non si conosce l'esito).
+     */
+    public static boolean runAfterCommit(Runnable action) {
+        UnitOfWork uow = CURRENT.get();
+        if (uow == null || !uow.ownsTransaction)
+            return false;
+        uow.afterCommit.add(action);
+        return true;
+    }
+
+    //------ private methods
+
+    private void rollback(Connection connection, Savepoint savepoint) {
+        try {
+            if (ownsTransaction)
+                connection.rollback();
+            else
+                connection.rollback(savepoint);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Rollback della unit of work fallito", e);
+        }
+    }
+
+    private static void runQuietly(Runnable action) {
+        try {
+            action.run();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Errore in un'azione eseguita dopo il commit", e);
+        }
+    }
+}
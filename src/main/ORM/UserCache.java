@@ -0,0 +1,137 @@
+package ORM;
+
+import DomainModel.User;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache read-through degli utenti usata da UserDAO, indicizzata per id ed email.
+ * È limitata sia in dimensione (LRU) sia in durata (TTL) e viene invalidata dalle scritture di UserDAO.
+ * Restituisce sempre copie, così chi modifica un User (es. incrementNextFileName) non altera la cache.
+ * Un contatore delle invalidazioni evita di rimettere in cache una riga letta prima di una modifica:
+ * chi legge dal DB prende invalidations() prima della query e lo passa a put.
+ */
+public class UserCache {
+    private static final int MAX_SIZE = 10_000;
+    private static final long TTL_MILLIS = 5 * 60_000;
+    private static final UserCache INSTANCE = new UserCache(MAX_SIZE, TTL_MILLIS);
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LinkedHashMap<Integer, Entry> byId;
+    private final Map<String, Integer> idByEmail = new HashMap<>();
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    UserCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.byId = new LinkedHashMap<>(16, 0.75f, true); // ordine di accesso per l'LRU
+    }
+
+    public static UserCache getInstance() {
+        return INSTANCE;
+    }
+
+    public synchronized User getById(int userId) {
+        Entry e = byId.get(userId);
+        if (e == null || isExpired(e)) {
+            if (e != null)
+                evict(userId);
+            misses++;
+            return null;
+        }
+        hits++;
+        return copy(e.user);
+    }
+
+    public synchronized User getByEmail(String email) {
+        Integer id = email == null ? null : idByEmail.get(email);
+        if (id == null) {
+            misses++;
+            return null;
+        }
+        return getById(id);
+    }
+
+    public synchronized long invalidations() {
+        return invalidations;
+    }
+
+    /**
+     * Come put(user), ma non fa nulla se dopo invalidationsBeforeRead la cache è stata invalidata:
+     * la riga potrebbe essere stata letta prima della modifica.
+     */
+    public synchronized void put(User user, long invalidationsBeforeRead) {
+        if (invalidations == invalidationsBeforeRead)
+            put(user);
+    }
+
+    public synchronized void put(User user) {
+        if (user == null)
+            return;
+        Entry previous = byId.put(user.getId(), new Entry(copy(user), System.currentTimeMillis()));
+        if (previous != null && !previous.user.getEmail().equals(user.getEmail()))
+            idByEmail.remove(previous.user.getEmail());
+        idByEmail.put(user.getEmail(), user.getId());
+        Iterator<Map.Entry<Integer, Entry>> it = byId.entrySet().iterator();
+        while (byId.size() > maxSize && it.hasNext()) {
+            Map.Entry<Integer, Entry> eldest = it.next();
+            it.remove();
+            idByEmail.remove(eldest.getValue().user.getEmail());
+            evictions++;
+        }
+    }
+
+    public synchronized void invalidate(int userId) {
+        invalidations++;
+        remove(userId);
+    }
+
+    public synchronized void invalidateAll() {
+        invalidations++;
+        byId.clear();
+        idByEmail.clear();
+    }
+
+    public synchronized CacheStats getStats() {
+        return new CacheStats(hits, misses, evictions, byId.size());
+    }
+
+    //------ private methods
+
+    private boolean isExpired(Entry e) {
+        return System.currentTimeMillis() - e.loadedAt > ttlMillis;
+    }
+
+    private void evict(int userId) {
+        remove(userId);
+        evictions++;
+    }
+
+    private void remove(int userId) {
+        Entry e = byId.remove(userId);
+        if (e != null)
+            idByEmail.remove(e.user.getEmail());
+    }
+
+    // User concatena nome e cognome nel costruttore: passando il cognome vuoto il nome resta invariato
+    private static User copy(User u) {
+        return new User(u.getId(), u.getName(), "", u.getEmail(), u.getPassword(), u.isModerator(), u.isAdmin(), u.getNextFileName());
+    }
+
+    private static final class Entry {
+        private final User user;
+        private final long loadedAt;
+
+        private Entry(User user, long loadedAt) {
+            this.user = user;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -2,13 +2,18 @@ package ORM;
 
 
 import DomainModel.Document;
+import DomainModel.Page;
 import DomainModel.User;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -19,6 +24,10 @@ public class UserDAO extends BaseDAO {
         super();
     }
 
+    UserDAO(Connection connection) {
+        super(connection);
+    }
+
     public void addUser(String name, String surname, String email, String password, boolean isModerator, boolean isAdmin) {
         try{
             String query = "INSERT INTO \"user\" (name,surname,email,password,is_moderator, is_admin) VALUES(?,?,?,?,?,?)";
@@ -35,6 +44,7 @@ public class UserDAO extends BaseDAO {
             System.out.println("User added successfully");
         }catch(Exception e){
             LOGGER.log(Level.SEVERE, "Errore durante addUser(email=" + email + ")", e);
+            markRollbackOnly(e);
         }
     }
 
@@ -45,6 +55,7 @@ public class UserDAO extends BaseDAO {
             statement.setInt(1, userId);
             int affected = statement.executeUpdate();
             statement.close();
+            invalidateCachedUser(userId);
             if(affected > 0) {
                 System.out.println("User removed successfully");
             }
@@ -53,11 +64,15 @@ public class UserDAO extends BaseDAO {
             }
         }catch (SQLException e){
             LOGGER.log(Level.SEVERE, "Errore durante removeUser(id=" + userId + ")", e);
+            markRollbackOnly(e);
         }
     }
 
     public User getUserById(int userId) {
-        User user = null;
+        User user = UserCache.getInstance().getById(userId);
+        if (user != null)
+            return user;
+        long invalidations = UserCache.getInstance().invalidations();
         try{
             String query = "SELECT * FROM \"user\" WHERE id = ?";
             PreparedStatement statement = connection.prepareStatement(query);
@@ -65,6 +80,7 @@ public class UserDAO extends BaseDAO {
             ResultSet rs= statement.executeQuery();
             if(rs.next()) {
                 user = createUserFromResultSet(rs);
+                cacheUser(user, invalidations);
             }
             else{
                 System.out.println("User not found");
@@ -77,6 +93,47 @@ public class UserDAO extends BaseDAO {
         return user;
     }
 
+    //carica con una sola query tutti gli utenti richiesti, indicizzati per id
+    public Map<Integer, User> getUsersByIds(Collection<Integer> userIds) {
+        try {
+            return loadUsersByIds(userIds);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Errore durante getUsersByIds(ids=" + userIds + ")", e);
+            return new HashMap<>();
+        }
+    }
+
+    // come getUsersByIds, ma l'errore arriva al chiamante (es. DocumentDAO, che fallisce l'intera lettura)
+    Map<Integer, User> loadUsersByIds(Collection<Integer> userIds) throws SQLException {
+        Map<Integer, User> users = new HashMap<>();
+        if (userIds == null || userIds.isEmpty())
+            return users;
+        // dal DB si leggono solo gli utenti non presenti in cache
+        List<Integer> missing = new ArrayList<>();
+        for (Integer id : userIds) {
+            User cached = UserCache.getInstance().getById(id);
+            if (cached != null)
+                users.put(id, cached);
+            else
+                missing.add(id);
+        }
+        if (missing.isEmpty())
+            return users;
+        long invalidations = UserCache.getInstance().invalidations();
+        String query = "SELECT * FROM \"user\" WHERE id = ANY(?)";
+        try (PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setArray(1, connection.createArrayOf("integer", missing.toArray()));
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    User user = createUserFromResultSet(rs);
+                    cacheUser(user, invalidations);
+                    users.put(user.getId(), user);
+                }
+            }
+        }
+        return users;
+    }
+
     public List<User> getModerators() {
         List<User> moderators = new ArrayList<User>();
         try{
@@ -109,6 +166,7 @@ public class UserDAO extends BaseDAO {
             }
         }catch(Exception e){
             LOGGER.log(Level.SEVERE, "Errore durante addFavouriteDocuments(userId=" + userId + ", docId=" + documentId + ")", e);
+            markRollbackOnly(e);
         }
     }
     public void removeFavouriteDocuments(int userId,int documentId){
@@ -127,6 +185,7 @@ public class UserDAO extends BaseDAO {
             }
         }catch(Exception e){
             LOGGER.log(Level.SEVERE, "Errore durante removeFavouriteDocuments(userId=" + userId + ", docId=" + documentId + ")", e);
+            markRollbackOnly(e);
         }
     }
     public void addFavouriteCollection(int userId,int collectionId){
@@ -145,6 +204,7 @@ public class UserDAO extends BaseDAO {
             }
         }catch(Exception e){
             LOGGER.log(Level.SEVERE, "Errore durante addFavouriteCollection(userId=" + userId + ", collectionId=" + collectionId + ")", e);
+            markRollbackOnly(e);
         }
     }
     public void removeFavouriteCollection(int userId,int collectionId){
@@ -163,6 +223,7 @@ public class UserDAO extends BaseDAO {
             }
         }catch(Exception e){
             LOGGER.log(Level.SEVERE, "Errore durante removeFavouriteCollection(userId=" + userId + ", collectionId=" + collectionId + ")", e);
+            markRollbackOnly(e);
         }
     }
     public List<Document> getFavouriteDocument(int userId){
@@ -172,12 +233,13 @@ public class UserDAO extends BaseDAO {
             PreparedStatement ps = connection.prepareStatement(query);
             ps.setInt(1, userId);
             ResultSet rs=ps.executeQuery();
-            DocumentDAO documentDAO= new DocumentDAO();
+            List<Integer> documentIds = new ArrayList<>();
             while (rs.next()) {
-                documents.add(documentDAO.getDocumentById(rs.getInt("document_id")));
+                documentIds.add(rs.getInt("document_id"));
             }
             rs.close();
             ps.close();
+            documents.addAll(new DocumentDAO().getDocumentsByIds(documentIds));
         }catch (SQLException e){
             LOGGER.log(Level.SEVERE, "Errore durante getFavouriteDocument(userId=" + userId + ")", e);
         }
@@ -199,8 +261,37 @@ public class UserDAO extends BaseDAO {
         }
         return users;
     }
+    //paginazione keyset per id: afterId è l'id dell'ultimo utente della pagina precedente (null per la prima)
+    public Page<User> getUsersPage(Integer afterId, int pageSize){
+        if (pageSize <= 0)
+            throw new IllegalArgumentException("pageSize must be positive");
+        List<User> users = new ArrayList<>();
+        boolean hasNext = false;
+        try{
+            String query = "SELECT * FROM \"user\" WHERE id > ? ORDER BY id LIMIT ?";
+            PreparedStatement statement = connection.prepareStatement(query);
+            statement.setInt(1, afterId != null ? afterId : 0);
+            statement.setInt(2, pageSize + 1);
+            ResultSet rs= statement.executeQuery();
+            while(rs.next()) {
+                users.add(createUserFromResultSet(rs));
+            }
+            rs.close();
+            statement.close();
+            if (users.size() > pageSize) {
+                hasNext = true;
+                users.remove(users.size() - 1);
+            }
+        }catch (SQLException e){
+            LOGGER.log(Level.SEVERE, "Errore durante getUsersPage(afterId=" + afterId + ")", e);
+        }
+        return new Page<>(users, hasNext);
+    }
     public User getUserByEmail(String email){
-        User user=null;
+        User user=UserCache.getInstance().getByEmail(email);
+        if (user != null)
+            return user;
+        long invalidations = UserCache.getInstance().invalidations();
         try{
             String query = "SELECT * FROM \"user\" WHERE \"email\" = ?";
             PreparedStatement statement = connection.prepareStatement(query);
@@ -208,6 +299,7 @@ public class UserDAO extends BaseDAO {
             ResultSet rs= statement.executeQuery();
             if(rs.next()) {
                 user=createUserFromResultSet(rs);
+                cacheUser(user, invalidations);
             }
             rs.close();
             statement.close();
@@ -225,6 +317,7 @@ public class UserDAO extends BaseDAO {
             statement.setInt(2, userId);
             int affected = statement.executeUpdate();
             statement.close();
+            invalidateCachedUser(userId);
             if (affected > 0) {
                 System.out.println("Next file name updated successfully");
                 return true;
@@ -235,6 +328,7 @@ public class UserDAO extends BaseDAO {
             }
         }catch (SQLException e){
             LOGGER.log(Level.SEVERE, "Errore durante updateNextFileName(userId=" + userId + ", nextFileName=" + nextFileName + ")", e);
+            markRollbackOnly(e);
             return false;
         }
     }
@@ -247,6 +341,7 @@ public class UserDAO extends BaseDAO {
             statement.setInt(2, userId);
             int affected = statement.executeUpdate();
             statement.close();
+            invalidateCachedUser(userId);
             if (affected > 0) {
                 System.out.println("User moderator status updated successfully");
                 return true;
@@ -257,11 +352,25 @@ public class UserDAO extends BaseDAO {
             }
         }catch (SQLException e){
             LOGGER.log(Level.SEVERE, "Errore durante setModerator(userId=" + userId + ", isModerator=" + isModerator + ")", e);
+            markRollbackOnly(e);
             return false;
         }
     }
     //------ private methods
 
+    // subito, così le letture della stessa transazione vanno al DB, e di nuovo a modifica confermata:
+    // un altro thread potrebbe aver rimesso in cache la riga precedente prima del commit
+    private void invalidateCachedUser(int userId) {
+        UserCache.getInstance().invalidate(userId);
+        afterCommit(() -> UserCache.getInstance().invalidate(userId), () -> UserCache.getInstance().invalidate(userId));
+    }
+
+    // invalidations letto prima della query: se nel frattempo un utente è stato modificato la riga non va in cache
+    private void cacheUser(User user, long invalidations) {
+        if (!inTransaction())
+            UserCache.getInstance().put(user, invalidations);
+    }
+
     private User createUserFromResultSet(ResultSet rs) throws SQLException {
         int id = rs.getInt("id");
         String name = rs.getString("name");
@@ -0,0 +1,663 @@
+package Storage;
+
+import DomainModel.DocumentFormat;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Archivio su disco locale dei file dei documenti, indicizzato per contenuto (SHA-256).
+ * Il file con hash "abcd..." sta in <root>/ab/abcd...: due upload identici occupano un solo file.
+ * I file non vengono mai modificati dopo la scrittura, quindi possono essere letti senza lock:
+ * in streaming con FileChannel.transferTo (copia gestita dal kernel, senza passare per lo heap)
+ * oppure mappati in memoria per le letture ad accesso casuale sui file grandi (PDF, audio).
+ * I contenuti fino a SMALL_BLOB_MAX_SIZE non hanno un file proprio ma finiscono nei segmenti
+ * impacchettati di SegmentStore; per chi usa l'archivio non cambia nulla.
+ * I formati che si comprimono bene vengono salvati compressi (vedi Compression) e decompressi
+ * al volo in lettura; l'hash resta quello del contenuto originale.
+ * Accanto a un contenuto possono stare dati derivati (es. i picchi della forma d'onda di un audio)
+ * in <root>/ab/abcd....<tipo>: vengono calcolati una volta sola e rimossi insieme al contenuto.
+ * Il nome logico del documento (getFilePath()/getFileName()) resta quello assegnato dal controller;
+ * il documento punta al suo contenuto tramite getContentHash().
+ */
+public class BlobStore {
+    private static final Logger LOGGER = Logger.getLogger(BlobStore.class.getName());
+    private static BlobStore instance;
+
+    // NOTE: cartella di default dell'archivio, relativa alla directory di lavoro come JDBC/migrations
+    private static final Path DEFAULT_ROOT = Path.of("document", "blobs");
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+    private static final String COMPRESSED_SUFFIX = ".z";
+    private static final Pattern SIDECAR_KIND = Pattern.compile("[a-z]+");
+    private static final Pattern UPLOAD_ID = Pattern.compile("[0-9a-f]{8}(-[0-9a-f]{4}){3}-[0-9a-f]{12}");
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long SMALL_BLOB_MAX_SIZE = 64 * 1024;
+    private static final long SEGMENT_MAX_SIZE = 64L * 1024 * 1024;
+    private static final double COMPACTION_DEAD_RATIO = 0.5; // si compatta un segmento con almeno metà spazio morto
+
+    private final Path root;
+    private final Path tmp;
+    private final Path uploads;
+    private final SegmentStore segments;
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+    private ExecutorService maintenance; // thread di compattazione, creato al primo uso
+    // upload in corso: stato dell'hash incrementale; dopo un riavvio viene ricostruito dal file parziale
+    private final ConcurrentHashMap<String, UploadSession> sessions = new ConcurrentHashMap<>();
+
+    BlobStore(Path root) {
+        this(root, SEGMENT_MAX_SIZE);
+    }
+
+    BlobStore(Path root, long segmentMaxSize) {
+        this.root = root;
+        this.tmp = root.resolve("tmp");
+        this.uploads = root.resolve("uploads");
+        try {
+            Files.createDirectories(tmp);
+            Files.createDirectories(uploads);
+            this.segments = new SegmentStore(root.resolve("segments"), segmentMaxSize);
+        } catch (IOException e) {
+            throw new IllegalStateException("Impossibile creare l'archivio dei file in " + root.toAbsolutePath(), e);
+        }
+    }
+
+    public static synchronized BlobStore getInstance() {
+        if (instance == null)
+            instance = new BlobStore(DEFAULT_ROOT);
+        return instance;
+    }
+
+    public String put(InputStream content) throws IOException {
+        return put(content, null);
+    }
+
+    /**
+     * Salva il contenuto letto dallo stream e ne restituisce l'hash. Se lo stesso contenuto
+     * è già presente non viene scritto un secondo file. Il formato decide se comprimere
+     * (null: nessuna compressione); l'hash è sempre quello del contenuto originale. Lo stream non viene chiuso.
+     */
+    public String put(InputStream content, DocumentFormat format) throws IOException {
+        Path temp = Files.createTempFile(tmp, "upload-", ".part");
+        try {
+            MessageDigest digest = newDigest();
+            try (DigestInputStream in = new DigestInputStream(content, digest);
+                 var out = Files.newOutputStream(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, n);
+                }
+            }
+            String hash = toHex(digest.digest());
+            publish(temp, hash, format);
+            return hash;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public String put(Path file, DocumentFormat format) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return put(in, format);
+        }
+    }
+
+    /**
+     * Inizia un upload a blocchi e ne restituisce l'identificativo. I blocchi vengono scritti
+     * direttamente su un file parziale e l'hash è calcolato man mano: la memoria usata è costante
+     * qualunque sia la dimensione del file.
+     */
+    public String beginUpload() throws IOException {
+        String uploadId = UUID.randomUUID().toString();
+        Files.createFile(partOf(uploadId));
+        sessions.put(uploadId, new UploadSession(newDigest(), 0));
+        return uploadId;
+    }
+
+    /**
+     * Byte già ricevuti per l'upload: il client riprende a inviare da questa posizione.
+     */
+    public long getUploadedSize(String uploadId) throws IOException {
+        UploadSession session = session(uploadId);
+        synchronized (session) {
+            ensureUsable(session);
+            return session.size;
+        }
+    }
+
+    /**
+     * Aggiunge un blocco che inizia alla posizione offset e restituisce i byte ricevuti in totale.
+     * Un blocco già ricevuto per intero (es. reinviato dopo un timeout) viene ignorato;
+     * un blocco che lascerebbe un buco nel file viene rifiutato.
+     */
+    public long appendChunk(String uploadId, long offset, InputStream chunk) throws IOException {
+        UploadSession session = session(uploadId);
+        synchronized (session) {
+            ensureUsable(session);
+            if (offset > session.size)
+                throw new IOException("Blocco fuori sequenza: atteso offset " + session.size + ", ricevuto " + offset);
+            ReadableByteChannel in = Channels.newChannel(chunk);
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            long position = offset;
+            try (FileChannel out = FileChannel.open(partOf(uploadId), StandardOpenOption.WRITE)) {
+                while (in.read(buffer) != -1) {
+                    buffer.flip();
+                    // la parte del blocco già presente nel file viene saltata
+                    int skip = (int) Math.min(buffer.remaining(), Math.max(0, session.size - position));
+                    position += skip;
+                    buffer.position(buffer.position() + skip);
+                    if (buffer.hasRemaining()) {
+                        session.digest.update(buffer.duplicate());
+                        while (buffer.hasRemaining()) {
+                            position += out.write(buffer, position);
+                        }
+                        session.size = position;
+                    }
+                    buffer.clear();
+                }
+                out.force(false);
+            } catch (IOException e) {
+                // stato incerto: alla prossima richiesta l'hash viene ricalcolato dal file
+                session.usable = false;
+                sessions.remove(uploadId, session);
+                throw e;
+            }
+            return session.size;
+        }
+    }
+
+    /**
+     * Conclude l'upload: verifica l'hash atteso (se indicato), sposta il file nell'archivio
+     * e ne restituisce l'hash. Se la verifica fallisce il file parziale viene scartato.
+     */
+    public String completeUpload(String uploadId, String expectedHash) throws IOException {
+        return completeUpload(uploadId, expectedHash, null);
+    }
+
+    public String completeUpload(String uploadId, String expectedHash, DocumentFormat format) throws IOException {
+        UploadSession session = session(uploadId);
+        synchronized (session) {
+            ensureUsable(session);
+            session.usable = false;
+            Path part = partOf(uploadId);
+            String hash = toHex(session.digest.digest());
+            sessions.remove(uploadId);
+            try {
+                if (expectedHash != null && !expectedHash.equalsIgnoreCase(hash))
+                    throw new IOException("Hash del contenuto non corrispondente: atteso " + expectedHash + ", calcolato " + hash);
+                publish(part, hash, format);
+                return hash;
+            } finally {
+                Files.deleteIfExists(part);
+            }
+        }
+    }
+
+    public void abortUpload(String uploadId) throws IOException {
+        UploadSession session = sessions.remove(uploadId);
+        if (session != null) {
+            synchronized (session) {
+                session.usable = false;
+            }
+        }
+        Files.deleteIfExists(partOf(uploadId));
+    }
+
+    public boolean contains(String hash) {
+        return segments.contains(hash) || Files.isRegularFile(pathOf(hash)) || Files.isRegularFile(compressedPathOf(hash));
+    }
+
+    /**
+     * Dimensione originale del contenuto, anche se è salvato compresso.
+     */
+    public long size(String hash) throws IOException {
+        Stored stored = locate(hash);
+        if (!stored.compressed)
+            return stored.packed != null ? stored.packed.limit() : Files.size(stored.file);
+        try (InputStream in = stored.rawStream()) {
+            return Compression.originalSize(in);
+        }
+    }
+
+    /**
+     * Byte effettivamente occupati su disco dal contenuto (dopo l'eventuale compressione).
+     */
+    public long storedSize(String hash) throws IOException {
+        Stored stored = locate(hash);
+        return stored.packed != null ? stored.packed.limit() : Files.size(stored.file);
+    }
+
+    public boolean isStoredCompressed(String hash) throws IOException {
+        return locate(hash).compressed;
+    }
+
+    /**
+     * Stream del contenuto originale; i contenuti compressi vengono decompressi al volo.
+     */
+    public InputStream open(String hash) throws IOException {
+        Stored stored = locate(hash);
+        return stored.compressed ? Compression.decompress(stored.rawStream()) : stored.rawStream();
+    }
+
+    /**
+     * Copia l'intero contenuto sul canale indicato senza passare per lo heap; restituisce i byte scritti.
+     */
+    public long transferTo(String hash, WritableByteChannel target) throws IOException {
+        return transferTo(hash, 0, Long.MAX_VALUE, target);
+    }
+
+    /**
+     * Copia al più count byte a partire da position; restituisce i byte effettivamente scritti.
+     * I contenuti compressi vengono decompressi in streaming con un buffer di dimensione fissa.
+     */
+    public long transferTo(String hash, long position, long count, WritableByteChannel target) throws IOException {
+        if (position < 0 || count < 0)
+            throw new IllegalArgumentException("position e count non possono essere negativi");
+        Stored stored = locate(hash);
+        if (stored.compressed)
+            return copyDecompressed(stored, position, count, target);
+        if (stored.packed != null) {
+            ByteBuffer packed = stored.packed;
+            if (position >= packed.limit())
+                return 0;
+            packed.position((int) position).limit((int) Math.min(packed.limit(), position + Math.min(count, Integer.MAX_VALUE)));
+            long written = 0;
+            while (packed.hasRemaining()) {
+                written += target.write(packed);
+            }
+            return written;
+        }
+        try (FileChannel channel = FileChannel.open(stored.file, StandardOpenOption.READ)) {
+            long end = Math.min(channel.size(), count > Long.MAX_VALUE - position ? Long.MAX_VALUE : position + count);
+            long written = 0;
+            // transferTo può copiare meno byte di quelli richiesti (es. verso socket): si ripete fino alla fine
+            while (position + written < end) {
+                long n = channel.transferTo(position + written, end - position - written, target);
+                if (n <= 0)
+                    break;
+                written += n;
+            }
+            return written;
+        }
+    }
+
+    /**
+     * Mappa in sola lettura la porzione [position, position+length) del contenuto
+     * (per i contenuti nei segmenti è una vista sulla mappatura del segmento).
+     * La mappatura resta valida anche dopo la chiusura del canale e viene rilasciata dal GC.
+     * Un contenuto compresso non si può mappare: viene decompresso in un buffer sullo heap.
+     */
+    public ByteBuffer map(String hash, long position, int length) throws IOException {
+        Stored stored = locate(hash);
+        if (stored.compressed || stored.packed != null) {
+            ByteBuffer whole = stored.compressed ? ByteBuffer.wrap(open(hash).readAllBytes()).asReadOnlyBuffer() : stored.packed;
+            if (position < 0 || length < 0 || position + length > whole.limit())
+                throw new IllegalArgumentException("Intervallo fuori dal file: " + position + "+" + length + " su " + whole.limit());
+            return whole.slice((int) position, length);
+        }
+        try (FileChannel channel = FileChannel.open(stored.file, StandardOpenOption.READ)) {
+            if (position < 0 || length < 0 || position + length > channel.size())
+                throw new IllegalArgumentException("Intervallo fuori dal file: " + position + "+" + length + " su " + channel.size());
+            return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        }
+    }
+
+    /**
+     * Mappa l'intero contenuto; per i file oltre i 2 GB va usata map(hash, position, length) a finestre.
+     */
+    public ByteBuffer map(String hash) throws IOException {
+        long size = size(hash);
+        if (size > Integer.MAX_VALUE)
+            throw new IOException("File troppo grande per una sola mappatura: " + size + " byte");
+        return map(hash, 0, (int) size);
+    }
+
+    /**
+     * Salva (o sostituisce) i dati derivati di tipo kind del contenuto indicato.
+     */
+    public void putSidecar(String hash, String kind, byte[] data) throws IOException {
+        Path target = sidecarPathOf(hash, kind);
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(tmp, kind + "-", ".part");
+        try {
+            Files.write(temp, data);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public boolean hasSidecar(String hash, String kind) {
+        return Files.isRegularFile(sidecarPathOf(hash, kind));
+    }
+
+    /**
+     * Mappa in sola lettura i dati derivati: si leggono da disco solo le pagine effettivamente usate.
+     */
+    public ByteBuffer mapSidecar(String hash, String kind) throws IOException {
+        try (FileChannel channel = FileChannel.open(sidecarPathOf(hash, kind), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Rimuove i file non più referenziati da alcun documento e gli upload abbandonati. Sono esclusi i file più recenti
+     * di minAge: potrebbero appartenere a un upload il cui documento non è ancora stato confermato.
+     * Restituisce il numero di file rimossi.
+     */
+    public int collectGarbage(Set<String> referencedHashes, Duration minAge) throws IOException {
+        Instant limit = Instant.now().minus(minAge);
+        int removed = 0;
+        try (Stream<Path> files = Files.walk(root, 2)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                // file compressi e dati derivati seguono il contenuto da cui dipendono
+                if (name.indexOf('.') > 0)
+                    name = name.substring(0, name.indexOf('.'));
+                if (!HASH.matcher(name).matches() || referencedHashes.contains(name) || !Files.isRegularFile(file))
+                    continue;
+                if (Files.getLastModifiedTime(file).toInstant().isAfter(limit))
+                    continue;
+                if (Files.deleteIfExists(file))
+                    removed++;
+            }
+        }
+        int packed = segments.markDead(referencedHashes, limit);
+        if (packed > 0) {
+            removed += packed;
+            compactInBackground();
+        }
+        // upload abbandonati
+        for (Path dir : new Path[]{tmp, uploads}) {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    if (Files.getLastModifiedTime(file).toInstant().isBefore(limit) && Files.deleteIfExists(file)) {
+                        sessions.remove(file.getFileName().toString().replace(".part", ""));
+                        removed++;
+                    }
+                }
+            }
+        }
+        if (removed > 0)
+            LOGGER.info("File non referenziati rimossi dall'archivio: " + removed);
+        return removed;
+    }
+
+    /**
+     * Compatta subito i segmenti con molto spazio morto; restituisce i byte liberati.
+     */
+    public long compact() throws IOException {
+        return segments.compact(COMPACTION_DEAD_RATIO);
+    }
+
+    /**
+     * Avvia la compattazione su un thread in background (al più una alla volta).
+     */
+    public void compactInBackground() {
+        if (!compactionScheduled.compareAndSet(false, true))
+            return;
+        maintenanceExecutor().execute(() -> {
+            try {
+                compact();
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "Errore durante la compattazione dei segmenti", e);
+            } finally {
+                compactionScheduled.set(false);
+            }
+        });
+    }
+
+    public static boolean isValidHash(String hash) {
+        return hash != null && HASH.matcher(hash).matches();
+    }
+
+    //------ private methods
+
+    private Path pathOf(String hash) {
+        if (!isValidHash(hash))
+            throw new IllegalArgumentException("Hash non valido: " + hash);
+        return root.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private Path sidecarPathOf(String hash, String kind) {
+        // il suffisso ".z" è riservato ai contenuti compressi
+        if (kind == null || !SIDECAR_KIND.matcher(kind).matches() || COMPRESSED_SUFFIX.equals("." + kind))
+            throw new IllegalArgumentException("Tipo di dati derivati non valido: " + kind);
+        return pathOf(hash).resolveSibling(hash + "." + kind);
+    }
+
+    private Path partOf(String uploadId) {
+        if (!UPLOAD_ID.matcher(uploadId == null ? "" : uploadId).matches())
+            throw new IllegalArgumentException("Upload non valido: " + uploadId);
+        return uploads.resolve(uploadId + ".part");
+    }
+
+    private UploadSession session(String uploadId) throws IOException {
+        Path part = partOf(uploadId);
+        UploadSession session = sessions.get(uploadId);
+        if (session != null)
+            return session;
+        if (!Files.isRegularFile(part))
+            throw new NoSuchFileException(part.toString(), null, "Upload inesistente o già concluso");
+        // ripresa dopo un riavvio: l'hash dei byte già ricevuti viene ricalcolato leggendo il file
+        MessageDigest digest = newDigest();
+        long size = 0;
+        try (InputStream in = Files.newInputStream(part)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, n);
+                size += n;
+            }
+        }
+        UploadSession previous = sessions.putIfAbsent(uploadId, new UploadSession(digest, size));
+        return previous != null ? previous : sessions.get(uploadId);
+    }
+
+    // una sessione chiusa o in errore non va più usata: la richiesta successiva ne ricostruisce una dal file
+    private static void ensureUsable(UploadSession session) throws IOException {
+        if (!session.usable)
+            throw new IOException("Upload interrotto o già concluso, riprovare");
+    }
+
+    private Path compressedPathOf(String hash) {
+        Path path = pathOf(hash);
+        return path.resolveSibling(hash + COMPRESSED_SUFFIX);
+    }
+
+    // dove e come è salvato il contenuto: nei segmenti o in un file proprio, compresso o no
+    private Stored locate(String hash) throws IOException {
+        SegmentStore.Packed packed = segments.read(hash);
+        if (packed != null)
+            return new Stored(packed.data, null, packed.compressed);
+        Path path = pathOf(hash);
+        if (Files.isRegularFile(path))
+            return new Stored(null, path, false);
+        Path compressed = compressedPathOf(hash);
+        if (Files.isRegularFile(compressed))
+            return new Stored(null, compressed, true);
+        throw new NoSuchFileException(path.toString(), null, "Contenuto non presente nell'archivio");
+    }
+
+    private static long copyDecompressed(Stored stored, long position, long count, WritableByteChannel target) throws IOException {
+        try (InputStream in = Compression.decompress(stored.rawStream())) {
+            try {
+                in.skipNBytes(position); // i byte prima della posizione vanno comunque decompressi
+            } catch (EOFException e) {
+                return 0;
+            }
+            byte[] buffer = new byte[BUFFER_SIZE];
+            ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+            long written = 0;
+            while (written < count) {
+                int n = in.read(buffer, 0, (int) Math.min(buffer.length, count - written));
+                if (n == -1)
+                    break;
+                wrapped.clear().limit(n);
+                while (wrapped.hasRemaining()) {
+                    written += target.write(wrapped);
+                }
+            }
+            return written;
+        }
+    }
+
+    // sposta il file temporaneo nella posizione definitiva; se il contenuto esiste già lo si tiene
+    private void publish(Path temp, String hash, DocumentFormat format) throws IOException {
+        for (Path existing : new Path[]{pathOf(hash), compressedPathOf(hash)}) {
+            if (Files.isRegularFile(existing)) {
+                touch(existing);
+                return;
+            }
+        }
+        if (segments.contains(hash)) {
+            segments.append(hash, temp, false); // già presente: viene solo marcato come recente
+            return;
+        }
+        Path compressed = Compression.compress(temp, format, tmp);
+        try {
+            Path source = compressed != null ? compressed : temp;
+            if (Files.size(source) <= SMALL_BLOB_MAX_SIZE) {
+                segments.append(hash, source, compressed != null);
+                return;
+            }
+            Path target = compressed != null ? compressedPathOf(hash) : pathOf(hash);
+            Files.createDirectories(target.getParent());
+            try {
+                Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                touch(target); // upload concorrente dello stesso contenuto
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(source, target);
+            }
+        } finally {
+            if (compressed != null)
+                Files.deleteIfExists(compressed);
+        }
+    }
+
+    // un contenuto deduplicato torna "recente", così collectGarbage non lo rimuove prima che il documento sia confermato
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, java.nio.file.attribute.FileTime.from(Instant.now()));
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Impossibile aggiornare la data di " + file, e);
+        }
+    }
+
+    private synchronized ExecutorService maintenanceExecutor() {
+        if (maintenance == null) {
+            maintenance = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "blob-store-maintenance");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return maintenance;
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0)
+                return 0;
+            if (!buffer.hasRemaining())
+                return -1;
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    private static final class Stored {
+        private final ByteBuffer packed;
+        private final Path file;
+        private final boolean compressed;
+
+        private Stored(ByteBuffer packed, Path file, boolean compressed) {
+            this.packed = packed;
+            this.file = file;
+            this.compressed = compressed;
+        }
+
+        // byte così come sono salvati, senza decompressione
+        private InputStream rawStream() throws IOException {
+            return packed != null ? new ByteBufferInputStream(packed.duplicate()) : Files.newInputStream(file);
+        }
+    }
+
+    private static final class UploadSession {
+        private final MessageDigest digest;
+        private long size;
+        private boolean usable = true;
+
+        private UploadSession(MessageDigest digest, long size) {
+            this.digest = digest;
+            this.size = size;
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 non disponibile", e);
+        }
+    }
+
+    private static String toHex(byte[] digest) {
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,77 @@
+package Storage;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Intervallo di byte [start, end] (estremi inclusi) di un contenuto di size byte, come nell'header HTTP Range.
+ * Sono accettate le forme "bytes=a-b", "bytes=a-" e "bytes=-n" (ultimi n byte); di una richiesta con più
+ * intervalli si serve solo il primo, come consentito dallo standard.
+ */
+public final class ByteRange {
+    private static final Pattern RANGE = Pattern.compile("bytes=\\s*(\\d*)-(\\d*)\\s*(,.*)?");
+
+    private final long start;
+    private final long end;
+    private final long size;
+
+    private ByteRange(long start, long end, long size) {
+        this.start = start;
+        this.end = end;
+        this.size = size;
+    }
+
+    /**
+     * Intervallo richiesto dall'header (null o vuoto = intero contenuto, anche se vuoto), limitato alla fine del contenuto.
+     * Restituisce null se l'header non è valido o se l'intervallo cade oltre la fine (HTTP 416).
+     */
+    public static ByteRange parse(String header, long size) {
+        if (header == null || header.isBlank())
+            return new ByteRange(0, size - 1, size); // con size 0: intervallo vuoto, lunghezza 0
+        Matcher m = RANGE.matcher(header.trim());
+        if (!m.matches() || (m.group(1).isEmpty() && m.group(2).isEmpty()))
+            return null;
+        try {
+            if (m.group(1).isEmpty()) {
+                long suffix = Long.parseLong(m.group(2));
+                if (suffix == 0 || size == 0)
+                    return null;
+                return new ByteRange(Math.max(0, size - suffix), size - 1, size);
+            }
+            long start = Long.parseLong(m.group(1));
+            long end = m.group(2).isEmpty() ? size - 1 : Math.min(Long.parseLong(m.group(2)), size - 1);
+            if (start >= size || end < start)
+                return null;
+            return new ByteRange(start, end, size);
+        } catch (NumberFormatException e) {
+            return null; // valori oltre Long.MAX_VALUE
+        }
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public long getLength() {
+        return end - start + 1;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public boolean isWhole() {
+        return start == 0 && end == size - 1;
+    }
+
+    // valore dell'header Content-Range della risposta
+    public String toContentRange() {
+        if (getLength() == 0)
+            return "bytes */" + size;
+        return "bytes " + start + "-" + end + "/" + size;
+    }
+}
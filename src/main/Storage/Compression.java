@@ -0,0 +1,103 @@
+package Storage;
+
+import DomainModel.DocumentFormat;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compressione trasparente dei contenuti nell'archivio, decisa in base al formato del documento:
+ * i formati testuali (TXT, MusicXML) e MIDI si comprimono bene, mentre PDF, immagini e audio
+ * sono già compressi e vengono salvati così come sono.
+ * Si usa deflate al livello più veloce, così la scrittura e la lettura in streaming
+ * non aggiungono latenza percepibile. Il contenuto compresso è preceduto dalla lunghezza originale (8 byte).
+ * Se la compressione non fa risparmiare almeno il 10% il contenuto resta non compresso.
+ */
+final class Compression {
+    private static final int MIN_SIZE = 256; // sotto questa soglia l'intestazione deflate non conviene
+    private static final double MAX_RATIO = 0.9;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private Compression() {
+    }
+
+    static boolean isCompressible(DocumentFormat format) {
+        if (format == null)
+            return false;
+        switch (format) {
+            case TXT:
+            case MUSICXML:
+            case MIDI:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Comprime source in un file temporaneo nella cartella indicata e lo restituisce,
+     * oppure null se il formato non va compresso o se la compressione non conviene.
+     */
+    static Path compress(Path source, DocumentFormat format, Path tmpDir) throws IOException {
+        long size = Files.size(source);
+        if (!isCompressible(format) || size < MIN_SIZE)
+            return null;
+        Path target = Files.createTempFile(tmpDir, "deflate-", ".part");
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (InputStream in = Files.newInputStream(source);
+             DataOutputStream out = new DataOutputStream(Files.newOutputStream(target))) {
+            out.writeLong(size);
+            DeflaterOutputStream deflate = new DeflaterOutputStream(out, deflater, BUFFER_SIZE);
+            in.transferTo(deflate);
+            deflate.finish();
+        } catch (IOException e) {
+            Files.deleteIfExists(target);
+            throw e;
+        } finally {
+            deflater.end();
+        }
+        if (Files.size(target) > size * MAX_RATIO) {
+            Files.deleteIfExists(target);
+            return null;
+        }
+        return target;
+    }
+
+    /**
+     * Lunghezza originale di un contenuto compresso (letta dall'intestazione); lo stream non viene chiuso.
+     */
+    static long originalSize(InputStream compressed) throws IOException {
+        return new DataInputStream(compressed).readLong();
+    }
+
+    /**
+     * Stream che decomprime al volo un contenuto compresso; chiude anche lo stream sottostante.
+     */
+    static InputStream decompress(InputStream compressed) throws IOException {
+        originalSize(compressed);
+        Inflater inflater = new Inflater();
+        return new InflaterInputStream(compressed, inflater, BUFFER_SIZE) {
+            private boolean ended;
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    if (!ended) {
+                        ended = true;
+                        inflater.end(); // un Inflater passato dall'esterno non viene rilasciato da close()
+                    }
+                }
+            }
+        };
+    }
+}
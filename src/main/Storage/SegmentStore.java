@@ -0,0 +1,477 @@
+package Storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Archivio dei file piccoli (TXT, MIDI, MusicXML di pochi KB) impacchettati in segmenti append-only,
+ * invece di un file per contenuto: meno inode e backup di pochi file grandi.
+ * Ogni record è: magic, data di scrittura, hash (32 byte), lunghezza, CRC32, contenuto;
+ * il magic distingue i contenuti salvati così come sono da quelli compressi (vedi Compression).
+ * L'indice hash -> (segmento, offset, lunghezza) sta in memoria e viene ricostruito all'avvio
+ * leggendo solo le intestazioni dei record; le letture usano la mappatura in memoria del segmento.
+ * Il CRC di ogni record viene verificato a ogni lettura (e durante la compattazione), non all'avvio.
+ * I record non più referenziati vengono marcati da markDead (lo stato non è persistito: dopo un
+ * riavvio tornano vivi fino alla pulizia successiva) e compact copia i record vivi dei segmenti
+ * con molto spazio morto in segmenti nuovi, senza tenere il monitor: letture e scritture proseguono
+ * durante la copia e solo lo scambio delle voci dell'indice avviene sotto lock.
+ */
+final class SegmentStore {
+    private static final Logger LOGGER = Logger.getLogger(SegmentStore.class.getName());
+    private static final Pattern FILE_NAME = Pattern.compile("seg-(\\d{6})\\.dat");
+    private static final int MAGIC = 0x53454752; // "SEGR": contenuto così com'è
+    private static final int MAGIC_COMPRESSED = 0x5345475A; // "SEGZ": contenuto compresso
+    private static final int HEADER_SIZE = 4 + 8 + 32 + 4 + 4;
+
+    private final Path directory;
+    private final long maxSegmentSize;
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private final Map<String, Entry> index = new HashMap<>();
+    private final Object compaction = new Object(); // una compattazione alla volta
+    private Segment active;
+
+    SegmentStore(Path directory, long maxSegmentSize) throws IOException {
+        this.directory = directory;
+        this.maxSegmentSize = maxSegmentSize;
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Matcher m = FILE_NAME.matcher(file.getFileName().toString());
+                if (m.matches()) {
+                    int id = Integer.parseInt(m.group(1));
+                    segments.put(id, new Segment(id, file));
+                }
+            }
+        }
+        for (Segment segment : segments.values()) {
+            scan(segment);
+        }
+        active = segments.isEmpty() ? newSegment(1) : segments.lastEntry().getValue();
+    }
+
+    synchronized boolean contains(String hash) {
+        return index.containsKey(hash);
+    }
+
+    /**
+     * Record in sola lettura (contenuto ed eventuale compressione), oppure null se non è in un segmento.
+     * Il buffer resta valido anche se il segmento viene poi compattato e cancellato.
+     */
+    Packed read(String hash) throws IOException {
+        Entry e;
+        MappedByteBuffer mapped;
+        synchronized (this) {
+            e = index.get(hash);
+            if (e == null)
+                return null;
+            mapped = e.segment.mapped(e.offset + e.length);
+        }
+        ByteBuffer data = mapped.slice((int) e.offset, e.length).asReadOnlyBuffer();
+        if (crcOf(data.duplicate()) != e.crc)
+            throw new IOException("Record danneggiato in " + e.segment.file.getFileName() + " alla posizione "
+                    + e.offset + ": CRC non corrispondente per " + hash);
+        return new Packed(data, e.compressed);
+    }
+
+    /**
+     * Accoda il contenuto del file source (già verificato con il suo hash). Se l'hash è già presente
+     * non viene scritto nulla e il record torna "recente" per la pulizia.
+     */
+    synchronized void append(String hash, Path source, boolean compressed) throws IOException {
+        Entry existing = index.get(hash);
+        if (existing != null) {
+            existing.lastUsed = System.currentTimeMillis();
+            return;
+        }
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            long length = in.size();
+            if (length > Integer.MAX_VALUE)
+                throw new IOException("Contenuto troppo grande per un segmento: " + length + " byte");
+            ByteBuffer data = ByteBuffer.allocate((int) length);
+            while (data.hasRemaining() && in.read(data) != -1) {
+                // lettura completa del file piccolo
+            }
+            data.flip();
+            write(hash, System.currentTimeMillis(), data, crcOf(data.duplicate()), compressed);
+        }
+    }
+
+    /**
+     * Marca come morti i record non referenziati e più vecchi di limit; restituisce quanti sono.
+     */
+    synchronized int markDead(Set<String> referencedHashes, Instant limit) {
+        int dead = 0;
+        Iterator<Map.Entry<String, Entry>> it = index.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Entry> me = it.next();
+            Entry e = me.getValue();
+            if (referencedHashes.contains(me.getKey()) || e.lastUsed > limit.toEpochMilli())
+                continue;
+            it.remove();
+            e.segment.deadBytes += HEADER_SIZE + e.length;
+            dead++;
+        }
+        return dead;
+    }
+
+    /**
+     * Copia i record vivi dei segmenti con almeno minDeadRatio di spazio morto in segmenti nuovi
+     * e ne cancella i file. Restituisce i byte liberati.
+     * La copia e il force avvengono fuori dal monitor; sotto lock si scelgono i segmenti e alla fine si
+     * spostano le voci dell'indice, solo per i record non cancellati né riscritti nel frattempo.
+     * Un record con CRC errato non viene copiato e sparisce dall'indice.
+     */
+    long compact(double minDeadRatio) throws IOException {
+        synchronized (compaction) {
+            Map<Segment, List<Map.Entry<String, Entry>>> candidates = new TreeMap<>((a, b) -> Integer.compare(a.id, b.id));
+            synchronized (this) {
+                // anche il segmento attivo può essere compattato: prima si passa a uno nuovo
+                if (active.size() > 0 && (double) active.deadBytes / active.size() >= minDeadRatio)
+                    active = newSegment(nextId());
+                for (Segment segment : segments.values()) {
+                    long size = segment.size();
+                    if (segment != active && size > 0 && (double) segment.deadBytes / size >= minDeadRatio)
+                        candidates.put(segment, new ArrayList<>());
+                }
+                if (candidates.isEmpty())
+                    return 0;
+                for (Map.Entry<String, Entry> me : index.entrySet()) {
+                    List<Map.Entry<String, Entry>> live = candidates.get(me.getValue().segment);
+                    if (live != null)
+                        live.add(Map.entry(me.getKey(), me.getValue()));
+                }
+            }
+
+            List<Segment> outputs = new ArrayList<>();
+            Map<String, Entry[]> moved = new HashMap<>(); // hash -> {voce vecchia, voce nuova (null = danneggiata)}
+            try {
+                copyLive(candidates, outputs, moved);
+            } catch (IOException | RuntimeException e) {
+                synchronized (this) {
+                    for (Segment output : outputs) {
+                        segments.remove(output.id);
+                        Files.deleteIfExists(output.file);
+                    }
+                }
+                throw e;
+            }
+
+            synchronized (this) {
+                for (Map.Entry<String, Entry[]> me : moved.entrySet()) {
+                    Entry old = me.getValue()[0];
+                    Entry copied = me.getValue()[1];
+                    if (index.get(me.getKey()) != old) {
+                        if (copied != null)
+                            copied.segment.deadBytes += HEADER_SIZE + copied.length;
+                        continue;
+                    }
+                    if (copied == null) {
+                        index.remove(me.getKey());
+                        continue;
+                    }
+                    copied.lastUsed = old.lastUsed;
+                    index.put(me.getKey(), copied);
+                }
+                long reclaimed = 0;
+                for (Map.Entry<Segment, List<Map.Entry<String, Entry>>> me : candidates.entrySet()) {
+                    Segment segment = me.getKey();
+                    // i record copiati sono già scritti su disco (force) prima di cancellare il vecchio segmento
+                    segments.remove(segment.id);
+                    segment.mapped = null;
+                    Files.deleteIfExists(segment.file);
+                    reclaimed += segment.deadBytes;
+                    long copied = me.getValue().stream().filter(live -> moved.get(live.getKey())[1] != null).count();
+                    LOGGER.info("Segmento " + segment.file.getFileName() + " compattato: " + copied + " record spostati");
+                }
+                return reclaimed;
+            }
+        }
+    }
+
+    synchronized long deadBytes() {
+        long dead = 0;
+        for (Segment s : segments.values()) {
+            dead += s.deadBytes;
+        }
+        return dead;
+    }
+
+    synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    //------ private methods
+
+    private void write(String hash, long timestamp, ByteBuffer data, int crc, boolean compressed) throws IOException {
+        int length = data.remaining();
+        if (active.size() > 0 && active.size() + HEADER_SIZE + length > maxSegmentSize)
+            active = newSegment(nextId());
+        try (FileChannel out = FileChannel.open(active.file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            long offset = writeRecord(out, hash, timestamp, data, crc, compressed);
+            out.force(false);
+            index.put(hash, new Entry(active, offset, length, timestamp, compressed, crc));
+        }
+    }
+
+    // copia fuori dal monitor: i segmenti di destinazione non sono ancora nell'indice, quindi nessun altro li scrive
+    private void copyLive(Map<Segment, List<Map.Entry<String, Entry>>> candidates, List<Segment> outputs,
+                          Map<String, Entry[]> moved) throws IOException {
+        Segment output = null;
+        FileChannel out = null;
+        try {
+            for (Map.Entry<Segment, List<Map.Entry<String, Entry>>> candidate : candidates.entrySet()) {
+                if (candidate.getValue().isEmpty())
+                    continue;
+                MappedByteBuffer mapped;
+                try (FileChannel in = FileChannel.open(candidate.getKey().file, StandardOpenOption.READ)) {
+                    mapped = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+                }
+                for (Map.Entry<String, Entry> me : candidate.getValue()) {
+                    Entry e = me.getValue();
+                    ByteBuffer data = mapped.slice((int) e.offset, e.length);
+                    if (crcOf(data.duplicate()) != e.crc) {
+                        LOGGER.log(Level.SEVERE, "Record danneggiato in " + candidate.getKey().file.getFileName() + " alla posizione "
+                                + e.offset + ": CRC non corrispondente per " + me.getKey() + ", non viene copiato");
+                        moved.put(me.getKey(), new Entry[]{e, null});
+                        continue;
+                    }
+                    if (output == null || (out.size() > 0 && out.size() + HEADER_SIZE + e.length > maxSegmentSize)) {
+                        if (out != null) {
+                            out.force(false);
+                            out.close();
+                        }
+                        synchronized (this) {
+                            output = newSegment(nextId());
+                        }
+                        outputs.add(output);
+                        out = FileChannel.open(output.file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                    }
+                    long offset = writeRecord(out, me.getKey(), e.lastUsed, data, e.crc, e.compressed);
+                    moved.put(me.getKey(), new Entry[]{e, new Entry(output, offset, e.length, e.lastUsed, e.compressed, e.crc)});
+                }
+            }
+            if (out != null)
+                out.force(false);
+        } finally {
+            if (out != null)
+                out.close();
+        }
+    }
+
+    // accoda intestazione e contenuto; restituisce la posizione del contenuto
+    private static long writeRecord(FileChannel out, String hash, long timestamp, ByteBuffer data, int crc, boolean compressed) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(compressed ? MAGIC_COMPRESSED : MAGIC).putLong(timestamp).put(hexToBytes(hash)).putInt(data.remaining()).putInt(crc).flip();
+        long offset = out.size();
+        while (header.hasRemaining()) {
+            out.write(header);
+        }
+        while (data.hasRemaining()) {
+            out.write(data);
+        }
+        return offset + HEADER_SIZE;
+    }
+
+    private int nextId() {
+        return segments.lastKey() + 1;
+    }
+
+    private Segment newSegment(int id) throws IOException {
+        Path file = directory.resolve(String.format("seg-%06d.dat", id));
+        if (!Files.exists(file))
+            Files.createFile(file);
+        Segment segment = new Segment(id, file);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    /**
+     * Legge le sole intestazioni: il CRC dei record si verifica quando vengono letti. Un record incompleto in coda (scrittura interrotta) viene troncato.
+     * Un record danneggiato a metà file non fa perdere i successivi: la lettura riprende dal primo record
+     * valido dopo il danno e i byte saltati contano come spazio morto, che la compattazione elimina.
+     * Se dopo il danno non c'è nessun record valido ma il danno non ha la forma di una scrittura interrotta,
+     * il segmento viene copiato a parte prima di troncarlo.
+     */
+    private void scan(Segment segment) throws IOException {
+        try (FileChannel ch = FileChannel.open(segment.file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = ch.size();
+            long position = 0;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            byte[] hash = new byte[32];
+            while (position < size) {
+                header.clear();
+                boolean complete = size - position >= HEADER_SIZE && ch.read(header, position) == HEADER_SIZE;
+                header.flip();
+                int magic = complete ? header.getInt() : 0;
+                long timestamp = complete ? header.getLong() : 0;
+                if (complete)
+                    header.get(hash);
+                int length = complete ? header.getInt() : -1;
+                int crc = complete ? header.getInt() : 0;
+                long dataStart = position + HEADER_SIZE;
+                boolean validHeader = (magic == MAGIC || magic == MAGIC_COMPRESSED) && length >= 0;
+                // il CRC si controlla solo sull'ultimo record, l'unico che una scrittura interrotta può lasciare a metà
+                if (!validHeader || dataStart + length > size
+                        || (dataStart + length == size && !crcMatches(ch, dataStart, length, crc))) {
+                    long next = resync(ch, position, size);
+                    if (next >= 0) {
+                        LOGGER.log(Level.SEVERE, "Record danneggiato in " + segment.file.getFileName() + " alla posizione "
+                                + position + ": " + (next - position) + " byte saltati, lettura ripresa da " + next);
+                        segment.deadBytes += next - position;
+                        position = next;
+                        continue;
+                    }
+                    // una scrittura interrotta lascia un'intestazione parziale o un record valido ma incompleto
+                    if (complete && !validHeader)
+                        quarantine(segment, position);
+                    truncate(ch, segment, position);
+                    return;
+                }
+                String key = bytesToHex(hash);
+                Entry previous = index.put(key, new Entry(segment, dataStart, length, timestamp, magic == MAGIC_COMPRESSED, crc));
+                if (previous != null)
+                    previous.segment.deadBytes += HEADER_SIZE + previous.length;
+                position = dataStart + length;
+            }
+        }
+    }
+
+    // posizione del primo record integro (magic, lunghezza e CRC) dopo from, -1 se non ce ne sono
+    private static long resync(FileChannel ch, long from, long size) throws IOException {
+        ByteBuffer rest = ByteBuffer.allocate((int) (size - from));
+        while (rest.hasRemaining() && ch.read(rest, from + rest.position()) > 0) {
+            // lettura della parte restante del segmento, solo in caso di danno
+        }
+        rest.flip();
+        for (int i = 1; i + HEADER_SIZE <= rest.limit(); i++) {
+            int magic = rest.getInt(i);
+            if (magic != MAGIC && magic != MAGIC_COMPRESSED)
+                continue;
+            int length = rest.getInt(i + 4 + 8 + 32);
+            if (length < 0 || (long) i + HEADER_SIZE + length > rest.limit())
+                continue;
+            CRC32 crc = new CRC32();
+            crc.update(rest.slice(i + HEADER_SIZE, length));
+            if ((int) crc.getValue() == rest.getInt(i + 4 + 8 + 32 + 4))
+                return from + i;
+        }
+        return -1;
+    }
+
+    private static boolean crcMatches(FileChannel ch, long position, int length, int expected) throws IOException {
+        ByteBuffer data = ByteBuffer.allocate(length);
+        while (data.hasRemaining() && ch.read(data, position + data.position()) > 0) {
+            // lettura dell'ultimo record
+        }
+        data.flip();
+        return crcOf(data) == expected;
+    }
+
+    private static int crcOf(ByteBuffer data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+
+    // copia del segmento danneggiato, per un eventuale recupero manuale: il nome non viene riconosciuto come segmento
+    private static void quarantine(Segment segment, long position) throws IOException {
+        Path copy = segment.file.resolveSibling(segment.file.getFileName() + ".corrupt-" + System.currentTimeMillis());
+        Files.copy(segment.file, copy);
+        LOGGER.log(Level.SEVERE, "Segmento " + segment.file.getFileName() + " danneggiato alla posizione " + position
+                + ": copia conservata in " + copy.getFileName());
+    }
+
+    private static void truncate(FileChannel ch, Segment segment, long position) throws IOException {
+        LOGGER.log(Level.WARNING, "Record incompleto o non valido in " + segment.file.getFileName() + " alla posizione " + position + ": segmento troncato");
+        ch.truncate(position);
+    }
+
+    private static byte[] hexToBytes(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+
+    private static String bytesToHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static final class Segment {
+        private final int id;
+        private final Path file;
+        private long deadBytes;
+        private MappedByteBuffer mapped;
+
+        private Segment(int id, Path file) {
+            this.id = id;
+            this.file = file;
+        }
+
+        private long size() throws IOException {
+            return Files.size(file);
+        }
+
+        // il segmento attivo cresce: la mappatura viene rifatta quando non copre più il record richiesto
+        private MappedByteBuffer mapped(long end) throws IOException {
+            if (mapped == null || mapped.capacity() < end) {
+                try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                    mapped = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                }
+            }
+            return mapped;
+        }
+    }
+
+    private static final class Entry {
+        private final Segment segment;
+        private final long offset;
+        private final int length;
+        private final boolean compressed;
+        private final int crc;
+        private volatile long lastUsed; // letta anche dalla compattazione fuori dal monitor
+
+        private Entry(Segment segment, long offset, int length, long lastUsed, boolean compressed, int crc) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.lastUsed = lastUsed;
+            this.compressed = compressed;
+            this.crc = crc;
+        }
+    }
+
+    static final class Packed {
+        final ByteBuffer data;
+        final boolean compressed;
+
+        private Packed(ByteBuffer data, boolean compressed) {
+            this.data = data;
+            this.compressed = compressed;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package BusinessLogic;
+
+import ORM.DBConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ControllerExecutorTest {
+
+    private ControllerExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        DBConnection.setEnableTesting(true);
+        executor = new ControllerExecutor(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void concurrency_isBoundedByPermits() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.run(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+            }));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        assertTrue(maxRunning.get() <= 2, "Non più di 2 operazioni contemporanee, osservate: " + maxRunning.get());
+        assertEquals(2, executor.getAvailablePermits());
+    }
+
+    @Test
+    void insideOperation_isTrackedPerThread() {
+        assertFalse(executor.isInsideOperation());
+        assertTrue(executor.submit(executor::isInsideOperation).join());
+        assertFalse(executor.isInsideOperation());
+    }
+
+    @Test
+    void asyncController_returnsControllerResult() throws ExecutionException, InterruptedException {
+        AsyncController<StringBuilder> async = new AsyncController<>(new StringBuilder("abc"), executor);
+        assertEquals(3, async.call(StringBuilder::length).get());
+    }
+
+    @Test
+    void exceptions_completeFutureExceptionally() {
+        CompletableFuture<Object> failed = executor.submit(() -> {
+            throw new IllegalStateException("boom");
+        });
+        ExecutionException e = assertThrows(ExecutionException.class, failed::get);
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+    }
+}
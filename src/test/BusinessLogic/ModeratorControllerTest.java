@@ -331,6 +331,48 @@ class ModeratorControllerTest {
     }
 
 
+    @Test
+    void decideTagRequest_approvesTwoNewLabelRequestsForSameLabel() {
+        TagDAO tagDAO = new TagDAO();
+        TagChangeRequestDAO reqDAO = new TagChangeRequestDAO();
+        UserController authorController = new UserController(normalUser);
+
+        authorController.createDocument("DocSameLabel1", "desc", "1900", DocumentFormat.PDF, List.of());
+        authorController.createDocument("DocSameLabel2", "desc", "1900", DocumentFormat.PDF, List.of());
+        List<Document> docs = documentDAO.getDocumentsByAuthor(normalUser.getId());
+        assertEquals(2, docs.size());
+
+        // entrambe le richieste vengono proposte prima che il tag esista
+        String label = "DOPPIO-" + System.currentTimeMillis();
+        List<Integer> reqIds = new ArrayList<>();
+        for (Document d : docs) {
+            authorController.requestAddNewTag(d.getId(), label);
+            TagChangeRequest req = reqDAO.getByAuthor(normalUser.getId())
+                    .stream()
+                    .filter(r -> r.getDocument() != null
+                            && r.getDocument().getId() == d.getId()
+                            && label.equals(r.getProposedLabel())
+                            && r.getStatus() == RequestStatus.PENDING)
+                    .findFirst()
+                    .orElseThrow(() -> new AssertionError("Pending ADD new-tag request not found"));
+            reqIds.add(req.getId());
+        }
+
+        for (int reqId : reqIds)
+            moderatorController.decideTagRequest(reqId, RequestStatus.APPROVED);
+
+        // la seconda approvazione riusa il tag creato dalla prima invece di fallire
+        for (int reqId : reqIds)
+            assertEquals(RequestStatus.APPROVED, reqDAO.getById(reqId).getStatus());
+        assertNotNull(tagDAO.findByLabelNormalized(label));
+        for (Document d : docs) {
+            assertTrue(documentDAO.getDocumentById(d.getId()).getTags().stream()
+                            .anyMatch(t -> label.equals(t.getLabel())),
+                    "Both documents should carry the approved tag");
+        }
+    }
+
+
     @Test
     void viewPendingTagRequests_positive_and_auth() {
         TagDAO tagDAO = new TagDAO();
@@ -322,6 +322,25 @@ class RelationControllerTest {
         assertTrue(srcAfter.isEmpty());
     }
 
+    @Test
+    void findConnection() {
+        UserController uc = new UserController(currentUser);
+        uc.createDocument("Ca", "d", "1900", DocumentFormat.TXT, java.util.List.of());
+        uc.createDocument("Cb", "d", "1900", DocumentFormat.TXT, java.util.List.of());
+        uc.createDocument("Cc", "d", "1900", DocumentFormat.TXT, java.util.List.of());
+        List<Document> docs = documentDAO.getDocumentsByAuthor(currentUser.getId());
+        Document c = docs.get(0), b = docs.get(1), a = docs.get(2);
+        relationDAO.addDocumentRelation(a.getId(), b.getId(), DocumentRelationType.QUOTE, true);
+        relationDAO.addDocumentRelation(c.getId(), b.getId(), DocumentRelationType.ANSWER_TO, true);
+
+        List<Document> path = new RelationController(a).findConnection(c);
+        assertEquals(List.of(a.getId(), b.getId(), c.getId()), path.stream().map(Document::getId).toList());
+
+        relationDAO.removeDocumentRelation(c.getId(), b.getId());
+        assertTrue(new RelationController(a).findConnection(c).isEmpty());
+        assertDoesNotThrow(() -> new RelationController(a).findConnection(null));
+    }
+
     // helper che interroga la tabella document_relation per controlli diretti
     private int countRelationRows(int sourceId, int destinationId, DocumentRelationType type) {
         try {
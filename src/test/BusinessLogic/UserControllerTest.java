@@ -152,6 +152,24 @@ class UserControllerTest {
         assertDoesNotThrow(() -> controller.createDocument("Doc", "d", "1900", null, List.of("t")));
     }
 
+    @Test
+    void viewDocumentDetails_resolvesRelatedDocuments() {
+        controller.createDocument("RelSrc", "d", "1900", DocumentFormat.TXT, List.of());
+        controller.createDocument("RelDst", "d", "1900", DocumentFormat.TXT, List.of());
+        List<Document> docs = documentDAO.getDocumentsByAuthor(currentUser.getId());
+        int srcId = docs.get(1).getId();
+        int dstId = docs.get(0).getId();
+        new DocumentRelationDAO().addDocumentRelation(srcId, dstId, DocumentRelationType.QUOTE, true);
+
+        DocumentDetails details = controller.viewDocumentDetails(srcId);
+        assertNotNull(details);
+        assertEquals(1, details.getSourceRelations().size());
+        Document related = details.getSourceRelations().get(0).getDestination();
+        assertEquals(dstId, related.getId());
+        assertEquals(currentUser.getId(), related.getAuthor().getId());
+        assertNotNull(related.getTags());
+    }
+
     /*
      * viewOwnDocuments
      * - caso: inizialmente vuoto
@@ -169,6 +187,29 @@ class UserControllerTest {
         assertEquals("Mine", docs2.get(0).getTitle());
     }
 
+    /*
+     * viewDocumentDetails
+     * - caso: restituisce documento, autore e commenti insieme
+     * - caso: documento inesistente -> null
+     */
+    @Test
+    void viewDocumentDetails() {
+        controller.createDocument("Detail", "d", "1900", DocumentFormat.TXT, List.of("t"));
+        int docId = documentDAO.getDocumentsByAuthor(currentUser.getId()).get(0).getId();
+        controller.writeComment(docId, "Bello");
+
+        DocumentDetails details = controller.viewDocumentDetails(docId);
+        assertNotNull(details);
+        assertEquals("Detail", details.getDocument().getTitle());
+        assertEquals(currentUser.getId(), details.getDocument().getAuthor().getId());
+        assertEquals(1, details.getComments().size());
+        assertTrue(details.getSourceRelations().isEmpty());
+        assertTrue(details.getDestinationRelations().isEmpty());
+        assertTrue(details.getTagRequests().isEmpty());
+
+        assertNull(controller.viewDocumentDetails(Integer.MAX_VALUE));
+    }
+
     /*
      * addDocumentToCollection
      * - caso: aggiunge documento a collection posseduta
@@ -26,6 +26,7 @@ public class DocumentSearchCriteriaBuilderTest {
                 .setCreatedAfter(after)
                 .setCreatedBefore(before)
                 .setTags(tags)
+                .setFullTextQuery("sonata")
                 .build();
 
         assertTrue(criteria.getDocumentTitle().isPresent());
@@ -47,6 +48,9 @@ public class DocumentSearchCriteriaBuilderTest {
         assertEquals(2, criteria.getTags().get().size());
         assertEquals(Arrays.asList("tag1", "tag2"), criteria.getTags().get());
 
+        assertTrue(criteria.getFullTextQuery().isPresent());
+        assertEquals("sonata", criteria.getFullTextQuery().get());
+
         // ensure defensive copy: modifying original list does not affect criteria
         tags.add("newtag");
         assertEquals(2, criteria.getTags().get().size());
@@ -64,6 +68,7 @@ public class DocumentSearchCriteriaBuilderTest {
         assertFalse(criteria.getCreatedAfter().isPresent());
         assertFalse(criteria.getCreatedBefore().isPresent());
         assertFalse(criteria.getTags().isPresent());
+        assertFalse(criteria.getFullTextQuery().isPresent());
     }
 
     @Test
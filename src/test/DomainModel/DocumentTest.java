@@ -0,0 +1,70 @@
+package DomainModel;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DocumentTest {
+
+    private static Document newDocument() {
+        return new Document(1, "Titolo", "desc", DocumentFormat.PDF, null, "path", "file", null, "1900");
+    }
+
+    @Test
+    // Il loader viene eseguito solo al primo accesso e una sola volta.
+    void loaders_runOnFirstAccessOnly() {
+        Document d = newDocument();
+        User author = new User(7, "Mario", "Rossi", "m@r.it", "pwd", false, false, 0);
+        AtomicInteger authorLoads = new AtomicInteger();
+        AtomicInteger tagLoads = new AtomicInteger();
+        d.setAuthorLoader(() -> { authorLoads.incrementAndGet(); return author; });
+        d.setTagsLoader(() -> { tagLoads.incrementAndGet(); return List.of(new Tag("jazz", null)); });
+
+        assertEquals(0, authorLoads.get());
+        assertEquals(0, tagLoads.get());
+
+        assertSame(author, d.getAuthor());
+        assertSame(author, d.getAuthor());
+        assertEquals(1, authorLoads.get());
+        assertEquals(0, tagLoads.get());
+
+        assertEquals("jazz", d.getTags().get(0).getLabel());
+        d.getTags();
+        assertEquals(1, tagLoads.get());
+    }
+
+    @Test
+    // Un valore assegnato esplicitamente scarta il loader ancora pendente.
+    void setters_discardPendingLoader() {
+        Document d = newDocument();
+        d.setAuthorLoader(() -> { throw new AssertionError("loader should not run"); });
+        d.setTagsLoader(() -> { throw new AssertionError("loader should not run"); });
+
+        User author = new User(3, "Anna", "Bianchi", "a@b.it", "pwd", false, false, 0);
+        d.setAuthor(author);
+        d.setTags(List.of());
+
+        assertSame(author, d.getAuthor());
+        assertTrue(d.getTags().isEmpty());
+    }
+
+    @Test
+    // Un errore di caricamento non viene memorizzato: l'accesso successivo riprova.
+    void failedLoad_isRetriedOnNextAccess() {
+        Document d = newDocument();
+        User author = new User(7, "Mario", "Rossi", "m@r.it", "pwd", false, false, 0);
+        AtomicInteger attempts = new AtomicInteger();
+        d.setAuthorLoader(() -> {
+            if (attempts.incrementAndGet() == 1)
+                throw new IllegalStateException("DB non raggiungibile");
+            return author;
+        });
+
+        assertThrows(IllegalStateException.class, d::getAuthor);
+        assertSame(author, d.getAuthor());
+        assertEquals(2, attempts.get());
+    }
+}
@@ -0,0 +1,77 @@
+package Ingestion;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MidiMelodyExtractorTest {
+
+    // inizio di "Fra Martino" in do maggiore
+    private static final int[] FRA_MARTINO = {60, 62, 64, 60, 60, 62, 64, 60, 64, 65, 67};
+
+    private final MidiMelodyExtractor extractor = new MidiMelodyExtractor();
+
+    @Test
+    void melodyPerChannel_keepsHighestNoteOfChords_andSkipsDrums() throws Exception {
+        Sequence sequence = new Sequence(Sequence.PPQ, 480);
+        Track track = sequence.createTrack();
+        for (int i = 0; i < FRA_MARTINO.length; i++) {
+            long tick = i * 480L;
+            addNote(track, 0, FRA_MARTINO[i], tick);
+            addNote(track, 0, FRA_MARTINO[i] - 12, tick); // raddoppio all'ottava sotto
+            addNote(track, 9, 36, tick);                   // grancassa
+            if (i % 2 == 0)
+                addNote(track, 1, 48, tick);               // basso su un altro canale
+        }
+
+        List<int[]> melodies = extractor.extract(new ByteArrayInputStream(write(sequence)));
+
+        assertEquals(2, melodies.size(), "Una linea per il canale 1 e una per il canale 2, nessuna per le percussioni");
+        assertArrayEquals(FRA_MARTINO, melodies.get(0));
+        assertEquals(6, melodies.get(1).length);
+    }
+
+    @Test
+    void transposedMelody_producesSameNgrams() {
+        int[] transposed = new int[FRA_MARTINO.length];
+        for (int i = 0; i < transposed.length; i++) {
+            transposed[i] = FRA_MARTINO[i] + 7;
+        }
+        Map<Integer, Integer> original = MelodyNgrams.count(FRA_MARTINO);
+
+        assertEquals(original, MelodyNgrams.count(transposed));
+        assertEquals(FRA_MARTINO.length - MelodyNgrams.SIZE, original.values().stream().mapToInt(Integer::intValue).sum());
+        assertEquals(2, MelodyNgrams.count(new int[]{60, 62, 64, 60, 60, 62, 64, 60, 60}).values().stream().mapToInt(Integer::intValue).max().orElse(0),
+                "Un motivo ripetuto conta due occorrenze dello stesso gram");
+        assertTrue(MelodyNgrams.count(new int[]{60, 62, 64, 65}).isEmpty(), "Servono almeno SIZE + 1 note");
+        assertTrue(original.keySet().stream().allMatch(gram -> gram >= 0));
+    }
+
+    @Test
+    void invalidFile_throwsIOException() {
+        assertThrows(IOException.class, () -> extractor.extract(new ByteArrayInputStream("non è un midi".getBytes())));
+    }
+
+    private static void addNote(Track track, int channel, int pitch, long tick) throws InvalidMidiDataException {
+        track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, channel, pitch, 90), tick));
+        track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF, channel, pitch, 0), tick + 400));
+    }
+
+    private static byte[] write(Sequence sequence) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MidiSystem.write(sequence, 0, out);
+        return out.toByteArray();
+    }
+}
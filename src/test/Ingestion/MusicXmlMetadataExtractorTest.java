@@ -0,0 +1,124 @@
+package Ingestion;
+
+import DomainModel.ScoreMetadata;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MusicXmlMetadataExtractorTest {
+
+    private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<!DOCTYPE score-partwise PUBLIC \"-//Recordare//DTD MusicXML 4.0 Partwise//EN\" \"http://www.musicxml.org/dtds/partwise.dtd\">\n" +
+            "<score-partwise version=\"4.0\">\n" +
+            "  <identification><creator type=\"lyricist\">Anonimo</creator><creator type=\"composer\">Franz Schubert</creator></identification>\n" +
+            "  <part-list>\n" +
+            "    <score-part id=\"P1\"><part-name>Voce</part-name></score-part>\n" +
+            "    <score-part id=\"P2\"><part-name>Pianoforte</part-name></score-part>\n" +
+            "  </part-list>\n";
+
+    private final MusicXmlMetadataExtractor extractor = new MusicXmlMetadataExtractor();
+
+    @Test
+    void partwiseScore_extractsAllFields() throws IOException {
+        ScoreMetadata m = extractor.extract(stream(score(3)));
+
+        assertEquals("Franz Schubert", m.getComposer());
+        assertEquals("Bb major", m.getKeySignature());
+        assertEquals("3/4", m.getTimeSignature());
+        assertEquals(96, m.getTempo());
+        assertEquals(List.of("voce", "pianoforte"), m.getInstruments());
+        assertEquals(3, m.getMeasureCount(), "Le battute vanno contate una volta sola, non per ogni parte");
+    }
+
+    @Test
+    void longScore_isReadInStreaming() throws IOException {
+        // partitura di alcune decine di MB generata al volo: non viene mai tenuta tutta in memoria
+        int measures = 200_000;
+        String measure = "<measure number=\"n\"><note><pitch><step>C</step><octave>4</octave></pitch><duration>1</duration></note></measure>\n";
+        InputStream body = new InputStream() {
+            private int written;
+            private byte[] current = new byte[0];
+            private int pos;
+
+            @Override
+            public int read() {
+                if (pos == current.length) {
+                    if (written == measures)
+                        return -1;
+                    current = measure.getBytes(StandardCharsets.UTF_8);
+                    pos = 0;
+                    written++;
+                }
+                return current[pos++];
+            }
+        };
+        InputStream xml = new SequenceInputStream(Collections.enumeration(List.of(
+                stream(HEADER + "<part id=\"P1\">"), body, stream("</part></score-partwise>"))));
+
+        assertEquals(measures, extractor.extract(xml).getMeasureCount());
+    }
+
+    @Test
+    void minorKey_metronomeTempo_andTimewise() throws IOException {
+        String xml = "<score-timewise><part-list><score-part id=\"P1\"><part-name>Violino</part-name></score-part></part-list>" +
+                "<measure number=\"1\"><part id=\"P1\"><attributes><key><fifths>-3</fifths><mode>minor</mode></key>" +
+                "<time><beats>6</beats><beat-type>8</beat-type></time></attributes>" +
+                "<direction><direction-type><metronome><beat-unit>quarter</beat-unit><per-minute>c. 120</per-minute></metronome></direction-type></direction>" +
+                "</part></measure><measure number=\"2\"><part id=\"P1\"/></measure></score-timewise>";
+        ScoreMetadata m = extractor.extract(stream(xml));
+
+        assertNull(m.getComposer());
+        assertEquals("C minor", m.getKeySignature());
+        assertEquals("6/8", m.getTimeSignature());
+        assertEquals(120, m.getTempo());
+        assertEquals(2, m.getMeasureCount());
+    }
+
+    @Test
+    void compressedMxl_isRead() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            zip.putNextEntry(new ZipEntry("META-INF/container.xml"));
+            zip.write("<container/>".getBytes(StandardCharsets.UTF_8));
+            zip.putNextEntry(new ZipEntry("score.xml"));
+            zip.write(score(2).getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(2, extractor.extract(new ByteArrayInputStream(bytes.toByteArray())).getMeasureCount());
+    }
+
+    @Test
+    void invalidXml_throwsIOException() {
+        assertThrows(IOException.class, () -> extractor.extract(stream("<score-partwise><part>")));
+    }
+
+    private static String score(int measures) {
+        StringBuilder xml = new StringBuilder(HEADER);
+        for (String part : new String[]{"P1", "P2"}) {
+            xml.append("<part id=\"").append(part).append("\">");
+            for (int i = 1; i <= measures; i++) {
+                xml.append("<measure number=\"").append(i).append("\">");
+                if (i == 1)
+                    xml.append("<attributes><key><fifths>-2</fifths></key><time><beats>3</beats><beat-type>4</beat-type></time></attributes>")
+                            .append("<sound tempo=\"96\"/>");
+                xml.append("<note><rest/><duration>3</duration></note></measure>");
+            }
+            xml.append("</part>");
+        }
+        return xml.append("</score-partwise>").toString();
+    }
+
+    private static InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
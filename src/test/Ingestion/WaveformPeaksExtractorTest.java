@@ -0,0 +1,80 @@
+package Ingestion;
+
+import DomainModel.WaveformPeaks;
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WaveformPeaksExtractorTest {
+
+    private static final int RATE = 44_100;
+
+    private final WaveformPeaksExtractor extractor = new WaveformPeaksExtractor();
+
+    @Test
+    void wav_producesMultiResolutionPeaks() throws IOException {
+        // 10 secondi: prima metà a volume pieno, seconda metà a un quarto
+        int frames = RATE * 10;
+        byte[] pcm = new byte[frames * 2];
+        for (int i = 0; i < frames; i++) {
+            double amplitude = i < frames / 2 ? 32_000 : 8_000;
+            short sample = (short) (amplitude * Math.sin(2 * Math.PI * 440 * i / RATE));
+            pcm[2 * i] = (byte) sample;
+            pcm[2 * i + 1] = (byte) (sample >> 8);
+        }
+        byte[] wav = write(pcm, new AudioFormat(RATE, 16, 1, true, false), AudioFileFormat.Type.WAVE);
+
+        ByteBuffer peaksFile = ByteBuffer.wrap(extractor.extract(new ByteArrayInputStream(wav)));
+        assertTrue(peaksFile.limit() < wav.length / 100, "I picchi devono essere una piccola frazione del file");
+
+        WaveformPeaks finest = WaveformPeaksExtractor.read(peaksFile, Integer.MAX_VALUE);
+        assertEquals(256, finest.getFramesPerPeak());
+        assertEquals((frames + 255) / 256, finest.getPeakCount());
+        assertEquals(10_000, finest.getDurationMillis());
+
+        WaveformPeaks overview = WaveformPeaksExtractor.read(peaksFile, 800);
+        assertTrue(overview.getPeakCount() <= 800 && overview.getPeakCount() > 800 / 4, "Si sceglie il livello più fine che sta nel limite");
+        assertEquals(frames, overview.getTotalFrames());
+        assertTrue(overview.getMax(0) >= 120 && overview.getMin(0) <= -120);
+        int last = overview.getPeakCount() - 1;
+        assertTrue(overview.getMax(last) < 40 && overview.getMin(last) > -40);
+    }
+
+    @Test
+    void aiffStereo8Bit_isConvertedBeforeComputingPeaks() throws IOException {
+        int frames = 1000;
+        byte[] pcm = new byte[frames * 2];
+        for (int i = 0; i < frames; i++) {
+            pcm[2 * i] = 0;                          // canale sinistro muto
+            pcm[2 * i + 1] = (byte) (i % 2 == 0 ? 100 : -100);
+        }
+        byte[] aiff = write(pcm, new AudioFormat(8_000, 8, 2, true, true), AudioFileFormat.Type.AIFF);
+
+        WaveformPeaks peaks = WaveformPeaksExtractor.read(ByteBuffer.wrap(extractor.extract(new ByteArrayInputStream(aiff))), 100);
+        assertEquals(4, peaks.getPeakCount(), "Ultimo picco parziale incluso");
+        assertEquals(100, peaks.getMax(3), "Il picco considera tutti i canali");
+        assertEquals(-100, peaks.getMin(3));
+    }
+
+    @Test
+    void unsupportedContent_throwsIOException() {
+        assertThrows(IOException.class, () -> extractor.extract(new ByteArrayInputStream(new byte[1024])));
+        assertThrows(IOException.class, () -> WaveformPeaksExtractor.read(ByteBuffer.wrap(new byte[8]), 10));
+    }
+
+    private static byte[] write(byte[] pcm, AudioFormat format, AudioFileFormat.Type type) throws IOException {
+        AudioInputStream audio = new AudioInputStream(new ByteArrayInputStream(pcm), format, pcm.length / format.getFrameSize());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AudioSystem.write(audio, type, out);
+        return out.toByteArray();
+    }
+}
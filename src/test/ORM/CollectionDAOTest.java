@@ -88,6 +88,17 @@ class CollectionDAOTest {
         assertFalse(docsAfter.stream().anyMatch(d -> d.getId() == testDocId), "Documento non rimosso dalla collection");
     }
 
+    @Test
+    void addDocumentsToCollection_returnsOnlyAddedDocuments() {
+        collectionDAO.addCollection("BatchCol", "desc", testUser);
+        int colId = collectionDAO.getCollectionsByUser(testUser.getId()).get(0).getId();
+        collectionDAO.addDocumentToCollection(testDocId, colId);
+
+        assertEquals(List.of(), collectionDAO.addDocumentsToCollection(List.of(testDocId), colId),
+                "Un documento già presente non va restituito come aggiunto");
+        assertEquals(1, collectionDAO.getDocumentsByCollection(colId).size());
+    }
+
     @Test
     void deleteCollection() {
         collectionDAO.addCollection("C3", "desc3", testUser);
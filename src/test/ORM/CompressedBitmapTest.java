@@ -0,0 +1,66 @@
+package ORM;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressedBitmapTest {
+
+    @Test
+    void addRemoveContains() {
+        CompressedBitmap b = CompressedBitmap.of(5, 1, 70000, 5);
+        assertEquals(3, b.cardinality(), "I duplicati non devono essere contati");
+        assertTrue(b.contains(70000));
+        assertFalse(b.contains(2));
+
+        b.remove(1);
+        assertArrayEquals(new int[]{5, 70000}, b.toArray());
+    }
+
+    @Test
+    void denseBlock_switchesToBitmapAndBack() {
+        CompressedBitmap b = new CompressedBitmap();
+        for (int i = 0; i < 10000; i++) {
+            b.add(i * 2);
+        }
+        assertEquals(10000, b.cardinality());
+        assertTrue(b.contains(19998));
+        assertFalse(b.contains(19999));
+
+        for (int i = 0; i < 9000; i++) {
+            b.remove(i * 2);
+        }
+        assertEquals(1000, b.cardinality());
+        assertEquals(18000, b.toArray()[0]);
+    }
+
+    @Test
+    void andOrAndNot() {
+        CompressedBitmap a = CompressedBitmap.of(1, 2, 3, 100000);
+        CompressedBitmap b = CompressedBitmap.of(2, 3, 4);
+
+        assertArrayEquals(new int[]{2, 3}, a.and(b).toArray());
+        assertArrayEquals(new int[]{1, 2, 3, 4, 100000}, a.or(b).toArray());
+        assertArrayEquals(new int[]{1, 100000}, a.andNot(b).toArray());
+        // gli operandi non devono essere modificati
+        assertEquals(4, a.cardinality());
+        assertEquals(3, b.cardinality());
+    }
+
+    @Test
+    void andBetweenDenseAndSparse() {
+        CompressedBitmap dense = new CompressedBitmap();
+        for (int i = 0; i < 6000; i++) {
+            dense.add(i);
+        }
+        CompressedBitmap sparse = CompressedBitmap.of(10, 5999, 6000);
+        assertArrayEquals(new int[]{10, 5999}, dense.and(sparse).toArray());
+        assertArrayEquals(new int[]{10, 5999}, sparse.and(dense).toArray());
+        assertEquals(5998, dense.andNot(sparse).cardinality());
+    }
+
+    @Test
+    void negativeValues_areRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new CompressedBitmap().add(-1));
+    }
+}
@@ -0,0 +1,215 @@
+package ORM;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionPoolTest {
+
+    private DBConnection db;
+
+    @BeforeEach
+    void setUp() {
+        try {
+            DBConnection.setEnableTesting(true);
+            DBConnection.resetInstance();
+            db = DBConnection.getInstance();
+        } catch (SQLException e) {
+            fail("setUp fallito in ConnectionPoolTest: " + e.getMessage());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.releaseConnection();
+        DBConnection.resetInstance();
+    }
+
+    @Test
+    void sameThread_getsSameConnection() throws SQLException {
+        Connection c1 = db.getConnection();
+        Connection c2 = db.getConnection();
+        assertSame(c1, c2, "Lo stesso thread deve riusare la propria connessione");
+        assertEquals(1, db.getPoolStats().getActive());
+    }
+
+    @Test
+    void differentThreads_getDifferentConnections() throws Exception {
+        Connection mine = db.getConnection();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Connection> other = executor.submit(() -> {
+                Connection c = db.getConnection();
+                db.releaseConnection();
+                return c;
+            });
+            assertNotSame(mine, other.get(), "Thread diversi devono lavorare su connessioni diverse");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void release_returnsConnectionToPool() throws SQLException {
+        Connection c = db.getConnection();
+        c.setAutoCommit(false);
+        db.releaseConnection();
+
+        assertTrue(c.isClosed(), "Il proxy restituito deve risultare chiuso");
+        assertEquals(0, db.getPoolStats().getActive());
+
+        Connection again = db.getConnection();
+        assertTrue(again.getAutoCommit(), "La connessione riconsegnata deve tornare in autocommit");
+    }
+
+    @Test
+    void transactionEndActions_runOnceWhenTransactionEnds() throws SQLException {
+        Connection c = db.getConnection();
+        int[] runs = {0};
+        c.setAutoCommit(false);
+        assertTrue(ConnectionPool.runAtTransactionEnd(c, () -> runs[0]++));
+        c.rollback(c.setSavepoint());
+        assertEquals(0, runs[0], "Il rollback a un savepoint non chiude la transazione");
+        c.commit();
+        assertEquals(1, runs[0]);
+        c.rollback();
+        assertEquals(1, runs[0], "Un'azione va eseguita una volta sola");
+
+        ConnectionPool.runAtTransactionEnd(c, () -> runs[0]++);
+        c.setAutoCommit(true); // conferma implicitamente la transazione
+        assertEquals(2, runs[0]);
+
+        c.setAutoCommit(false);
+        ConnectionPool.runAtTransactionEnd(c, () -> runs[0]++);
+        db.releaseConnection();
+        assertEquals(3, runs[0], "Anche la riconsegna al pool chiude la transazione");
+    }
+
+    @Test
+    void closedProxy_rejectsFurtherUse() throws SQLException {
+        // la connessione presa direttamente dal pool (quella del thread invece se ne prende un'altra al prossimo uso)
+        Connection c = db.borrowConnection();
+        c.close();
+        assertThrows(SQLException.class, c::createStatement);
+    }
+
+    @Test
+    void threadConnection_returnsToPoolWhenStatementsAreClosed() throws SQLException {
+        Connection c = db.getThreadConnection();
+        assertEquals(0, db.getPoolStats().getActive(), "La connessione viene presa solo al primo utilizzo");
+
+        PreparedStatement ps = c.prepareStatement("SELECT 1");
+        ResultSet rs = ps.executeQuery();
+        assertEquals(1, db.getPoolStats().getActive(), "Con uno statement aperto la connessione resta al thread");
+        assertTrue(rs.next());
+        rs.close();
+        ps.close();
+        assertEquals(0, db.getPoolStats().getActive(), "Chiuso l'ultimo statement la connessione torna al pool");
+    }
+
+    @Test
+    void threadConnection_staysBoundWhileTransactionIsOpen() throws SQLException {
+        Connection c = db.getThreadConnection();
+        c.setAutoCommit(false);
+        c.prepareStatement("SELECT 1").close();
+        assertEquals(1, db.getPoolStats().getActive(), "Una transazione aperta tiene la connessione legata al thread");
+        assertTrue(db.isInTransaction());
+
+        c.rollback();
+        c.setAutoCommit(true);
+        assertEquals(0, db.getPoolStats().getActive());
+        assertFalse(db.isInTransaction());
+    }
+
+    @Test
+    void moreThreadsThanConnections_doNotExhaustThePool() throws Exception {
+        // ogni thread usa il DB e termina senza chiamare releaseConnection()
+        for (int i = 0; i < DBConnection.getMaxPoolSize() + 5; i++) {
+            Thread t = new Thread(() -> {
+                try {
+                    PreparedStatement ps = db.getThreadConnection().prepareStatement("SELECT 1");
+                    ps.executeQuery().close();
+                    ps.close();
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            t.start();
+            t.join();
+        }
+        assertEquals(0, db.getPoolStats().getActive());
+        assertEquals(0, db.getPoolStats().getTimeoutCount());
+    }
+
+    @Test
+    void abandonedConnection_isReclaimed() throws Exception {
+        // il thread termina lasciando uno statement aperto: la connessione resterebbe in prestito per sempre
+        Thread t = new Thread(() -> {
+            try {
+                db.getThreadConnection().prepareStatement("SELECT 1");
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        t.start();
+        t.join();
+        assertEquals(1, db.getPoolStats().getActive());
+
+        db.getPool().reclaimAbandoned(System.currentTimeMillis());
+        assertEquals(0, db.getPoolStats().getActive(), "La connessione di un thread terminato torna al pool");
+        assertEquals(1, db.getPoolStats().getReclaimedCount());
+    }
+
+    @Test
+    void preparedStatements_areReusedAcrossCalls() throws SQLException {
+        Connection c = db.getConnection();
+        String sql = "SELECT ?::int AS v";
+        long hitsBefore = db.getStatementCacheStats().getHits();
+
+        PreparedStatement first = c.prepareStatement(sql);
+        first.setInt(1, 1);
+        first.executeQuery().close();
+        first.close();
+        assertTrue(first.isClosed());
+
+        PreparedStatement second = c.prepareStatement(sql);
+        second.setInt(1, 2);
+        ResultSet rs = second.executeQuery();
+        assertTrue(rs.next());
+        assertEquals(2, rs.getInt("v"));
+        rs.close();
+        second.close();
+
+        assertEquals(hitsBefore + 1, db.getStatementCacheStats().getHits(), "Il secondo prepareStatement deve essere servito dalla cache");
+        assertThrows(SQLException.class, () -> first.setInt(1, 3), "Uno statement chiuso non va più usato anche se è in cache");
+    }
+
+    @Test
+    void unclosedStatements_areReclaimedWhenConnectionReturnsToPool() throws SQLException {
+        String sql = "SELECT ?::int AS v";
+        PreparedStatement leaked = db.getConnection().prepareStatement(sql);
+        leaked.setInt(1, 1);
+        db.releaseConnection(); // il DAO non ha chiamato close(), es. per un'eccezione
+
+        assertTrue(leaked.isClosed(), "Lo statement non chiuso deve essere rilasciato insieme alla connessione");
+        long hitsBefore = db.getStatementCacheStats().getHits();
+        PreparedStatement again = db.getConnection().prepareStatement(sql);
+        again.setInt(1, 2);
+        ResultSet rs = again.executeQuery();
+        assertTrue(rs.next());
+        assertEquals(2, rs.getInt("v"));
+        rs.close();
+        again.close();
+        assertEquals(hitsBefore + 1, db.getStatementCacheStats().getHits(), "Lo statement recuperato deve tornare riutilizzabile");
+    }
+}
@@ -4,6 +4,8 @@ import DomainModel.Document;
 import DomainModel.DocumentFormat;
 import DomainModel.DocumentStatus;
 import DomainModel.DocumentSearchCriteriaBuilder;
+import DomainModel.Page;
+import DomainModel.ScoreMetadata;
 import DomainModel.User;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -13,6 +15,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -173,4 +176,236 @@ class DocumentDAOTest {
         }
     }
 
-}
\ No newline at end of file
+    @Test
+    void getDocumentsByIds_keepsOrderAndLoadsAuthorAndTags() {
+        try {
+            PreparedStatement psTag = conn.prepareStatement("INSERT INTO tag (tag_label, description) VALUES (?, ?)");
+            psTag.setString(1, "batchtag");
+            psTag.setString(2, "tag per il caricamento batch");
+            psTag.executeUpdate();
+            psTag.close();
+            documentDAO.addTagToDocument(doc1Id, "batchtag");
+            documentDAO.addTagToDocument(doc3Id, "batchtag");
+
+            List<Document> docs = documentDAO.getDocumentsByIds(List.of(doc3Id, doc1Id, doc2Id, -1));
+            assertEquals(3, docs.size(), "Gli id inesistenti devono essere ignorati");
+            assertEquals(doc3Id, docs.get(0).getId());
+            assertEquals(doc1Id, docs.get(1).getId());
+            assertEquals(doc2Id, docs.get(2).getId());
+
+            for (Document d : docs) {
+                assertNotNull(d.getAuthor(), "L'autore deve essere caricato");
+                assertEquals(testUser.getId(), d.getAuthor().getId());
+            }
+            assertEquals(1, docs.get(0).getTags().size());
+            assertEquals("batchtag", docs.get(0).getTags().get(0).getLabel());
+            assertTrue(docs.get(2).getTags().isEmpty(), "Il documento senza tag deve avere lista vuota");
+        } catch (SQLException e) {
+            fail("Eccezione in getDocumentsByIds: " + e.getMessage());
+        }
+    }
+
+    @Test
+    void searchDocumentsPage_walksAllPagesWithKeyset() {
+        var criteria = DocumentSearchCriteriaBuilder.getInstance().setAuthorId(testUser.getId()).build();
+
+        Page<Document> first = documentDAO.searchDocumentsPage(criteria, null, 2);
+        assertEquals(2, first.getItems().size());
+        assertTrue(first.hasNext(), "Dovrebbe esistere una seconda pagina");
+        assertEquals(doc3Id, first.getItems().get(0).getId());
+        assertEquals(doc2Id, first.getItems().get(1).getId());
+
+        Page<Document> second = documentDAO.searchDocumentsPage(criteria, first.getLast(), 2);
+        assertEquals(1, second.getItems().size());
+        assertFalse(second.hasNext());
+        assertEquals(doc1Id, second.getItems().get(0).getId());
+    }
+
+    @Test
+    void forEachDocument_visitsEveryMatchInOrder() {
+        var criteria = DocumentSearchCriteriaBuilder.getInstance().setAuthorId(testUser.getId()).build();
+        List<Integer> visited = new ArrayList<>();
+        documentDAO.forEachDocument(criteria, d -> {
+            assertNotNull(d.getAuthor());
+            visited.add(d.getId());
+        });
+        assertEquals(List.of(doc3Id, doc2Id, doc1Id), visited);
+    }
+
+    @Test
+    void searchDocuments_fullTextOnDescriptionWithPrefix() {
+        boolean created = documentDAO.addDocument(testUser, "Notturno", "Partitura per pianoforte solo", "1830", DocumentFormat.PDF, "path/", "file4", List.of());
+        assertTrue(created);
+
+        var criteria = DocumentSearchCriteriaBuilder.getInstance().setFullTextQuery("pianof").build();
+        List<Document> res = documentDAO.searchDocuments(criteria);
+        assertTrue(res.stream().anyMatch(d -> "Notturno".equals(d.getTitle())),
+                "La ricerca full-text deve trovare il documento tramite prefisso nella descrizione");
+
+        var noMatch = DocumentSearchCriteriaBuilder.getInstance().setFullTextQuery("clavicembalo").build();
+        assertTrue(documentDAO.searchDocuments(noMatch).stream().noneMatch(d -> "Notturno".equals(d.getTitle())));
+    }
+
+    @Test
+    void searchDocuments_scoreMetadataFilters() {
+        ScoreMetadataDAO scoreDAO = new ScoreMetadataDAO();
+        ScoreMetadata fugue = new ScoreMetadata();
+        fugue.setComposer("Johann Sebastian Bach");
+        fugue.setKeySignature("G minor");
+        fugue.setTimeSignature("4/4");
+        fugue.setTempo(72);
+        fugue.setInstruments(List.of("organo"));
+        fugue.setMeasureCount(68);
+        ScoreMetadata waltz = new ScoreMetadata();
+        waltz.setComposer("Fryderyk Chopin");
+        waltz.setKeySignature("A minor");
+        waltz.setTimeSignature("3/4");
+        waltz.setTempo(160);
+        waltz.setInstruments(List.of("pianoforte"));
+        waltz.setMeasureCount(120);
+        assertTrue(scoreDAO.saveMetadata(doc1Id, fugue));
+        assertTrue(scoreDAO.saveMetadata(doc3Id, waltz));
+
+        var byComposer = DocumentSearchCriteriaBuilder.getInstance().setAuthorId(testUser.getId()).setComposer("bach").build();
+        assertEquals(List.of(doc1Id), documentDAO.searchDocuments(byComposer).stream().map(Document::getId).toList());
+        var wildcard = DocumentSearchCriteriaBuilder.getInstance().setAuthorId(testUser.getId()).setComposer("%").build();
+        assertTrue(documentDAO.searchDocuments(wildcard).isEmpty(), "I caratteri jolly vanno cercati letteralmente");
+
+        var byMeter = DocumentSearchCriteriaBuilder.getInstance().setAuthorId(testUser.getId()).setTimeSignature("3/4").setInstrument("Pianoforte").build();
+        assertEquals(List.of(doc3Id), documentDAO.searchDocuments(byMeter).stream().map(Document::getId).toList());
+
+        var byRanges = DocumentSearchCriteriaBuilder.getInstance()
+                .setAuthorId(testUser.getId()).setTempoRange(60, 100).setMeasureRange(null, 100).build();
+        assertEquals(List.of(doc1Id), documentDAO.searchDocuments(byRanges).stream().map(Document::getId).toList());
+
+        var noMatch = DocumentSearchCriteriaBuilder.getInstance().setAuthorId(testUser.getId()).setKeySignature("D major").build();
+        assertTrue(documentDAO.searchDocuments(noMatch).isEmpty(), "doc2 non ha metadati e non deve comparire");
+
+        waltz.setTempo(null);
+        assertTrue(scoreDAO.saveMetadata(doc3Id, waltz), "Un nuovo upload sostituisce i metadati");
+        assertNull(scoreDAO.getMetadata(doc3Id).getTempo());
+        assertEquals(List.of("pianoforte"), scoreDAO.getMetadata(doc3Id).getInstruments());
+    }
+
+    @Test
+    void escapeLike_quotesWildcards() {
+        assertEquals("100\\% a\\_b c\\\\d", DocumentDAO.escapeLike("100% a_b c\\d"));
+    }
+
+    @Test
+    void toPrefixTsQuery_sanitizesInput() {
+        assertEquals("canto:* & gregoriano:*", DocumentDAO.toPrefixTsQuery("  Canto, gregoriano!"));
+        assertEquals("a:* & b:*", DocumentDAO.toPrefixTsQuery("a' | b"));
+        assertNull(DocumentDAO.toPrefixTsQuery("!!! &&"));
+    }
+
+    @Test
+    void searchDocuments_anyAndExcludedTags() {
+        try {
+            PreparedStatement psTag = conn.prepareStatement("INSERT INTO tag (tag_label, description) VALUES (?, ?), (?, ?)");
+            psTag.setString(1, "barocco");
+            psTag.setString(2, "periodo barocco");
+            psTag.setString(3, "organo");
+            psTag.setString(4, "musica per organo");
+            psTag.executeUpdate();
+            psTag.close();
+            documentDAO.addTagToDocument(doc1Id, "barocco");
+            documentDAO.addTagToDocument(doc2Id, "barocco");
+            documentDAO.addTagToDocument(doc2Id, "organo");
+            documentDAO.addTagToDocument(doc3Id, "organo");
+
+            var anyCriteria = DocumentSearchCriteriaBuilder.getInstance()
+                    .setAuthorId(testUser.getId())
+                    .setAnyTags(List.of("barocco", "organo"))
+                    .setExcludedTags(List.of("organo"))
+                    .build();
+            List<Document> res = documentDAO.searchDocuments(anyCriteria);
+            assertEquals(1, res.size());
+            assertEquals(doc1Id, res.get(0).getId());
+
+            var notOnly = DocumentSearchCriteriaBuilder.getInstance()
+                    .setAuthorId(testUser.getId())
+                    .setExcludedTags(List.of("barocco"))
+                    .build();
+            List<Document> res2 = documentDAO.searchDocuments(notOnly);
+            assertEquals(1, res2.size());
+            assertEquals(doc3Id, res2.get(0).getId());
+
+            documentDAO.removeTagFromDocument(doc2Id, "barocco");
+            var allOf = DocumentSearchCriteriaBuilder.getInstance().setTags(List.of("barocco", "organo")).build();
+            assertTrue(documentDAO.searchDocuments(allOf).isEmpty(), "Dopo la rimozione nessun documento ha entrambi i tag");
+        } catch (SQLException e) {
+            fail("Eccezione in searchDocuments_anyAndExcludedTags: " + e.getMessage());
+        }
+    }
+
+    @Test
+    void deleteDocuments_removesAllRequestedWithDependents() {
+        new CommentDAO().addComment("commento da cancellare", testUser.getId(), doc1Id);
+
+        int deleted = documentDAO.deleteDocuments(List.of(doc1Id, doc2Id, -1));
+        assertEquals(2, deleted, "Devono essere cancellati solo i documenti esistenti");
+        assertNull(documentDAO.getDocumentById(doc1Id));
+        assertNull(documentDAO.getDocumentById(doc2Id));
+        assertNotNull(documentDAO.getDocumentById(doc3Id));
+        assertTrue(new CommentDAO().getCommentsByDocument(doc1Id).isEmpty(), "I commenti devono essere rimossi in cascata");
+    }
+
+    @Test
+    void deleteDocumentsByAuthor() {
+        int deleted = documentDAO.deleteDocumentsByAuthor(testUser.getId());
+        assertEquals(3, deleted);
+        assertTrue(documentDAO.getDocumentsByAuthor(testUser.getId()).isEmpty());
+    }
+
+    @Test
+    void addDocumentWithContent_insertsDocumentAndTagsTogether() throws SQLException {
+        PreparedStatement psTag = conn.prepareStatement("INSERT INTO tag (tag_label, description) VALUES (?, NULL), (?, NULL)");
+        psTag.setString(1, "fuga");
+        psTag.setString(2, "canone");
+        psTag.executeUpdate();
+        psTag.close();
+
+        int id = documentDAO.addDocumentWithContent(testUser, "Con tag", "d", "1700", DocumentFormat.PDF, "p/", "withtags",
+                List.of("fuga", " FUGA", "canone", "sconosciuto"), "abc123");
+        assertTrue(id > 0, "Deve restituire l'id generato");
+
+        Document d = documentDAO.getDocumentById(id);
+        assertNotNull(d);
+        assertEquals("Con tag", d.getTitle());
+        assertEquals("abc123", d.getContentHash().trim());
+        assertEquals(2, d.getTags().size(), "I tag duplicati vanno inseriti una sola volta, quelli sconosciuti ignorati");
+        assertTrue(d.getTags().stream().noneMatch(t -> "sconosciuto".equals(t.getLabel())));
+    }
+
+    @Test
+    void addTagsToDocument_batchInsertIgnoresExisting() throws SQLException {
+        PreparedStatement psTag = conn.prepareStatement("INSERT INTO tag (tag_label, description) VALUES ('t1', NULL), ('t2', NULL), ('t3', NULL)");
+        psTag.executeUpdate();
+        psTag.close();
+        documentDAO.addTagToDocument(doc1Id, "t1");
+
+        List<String> linked = documentDAO.addTagsToDocument(doc1Id, List.of("t1", "t2", "t3"));
+        assertEquals(java.util.Set.of("t2", "t3"), new java.util.HashSet<>(linked), "Vanno restituiti solo i tag effettivamente collegati");
+        assertEquals(3, documentDAO.getDocumentById(doc1Id).getTags().size());
+    }
+
+    @Test
+    void authorAndTags_areLoadedWithTheDocuments() throws SQLException {
+        List<Document> docs = documentDAO.getDocumentsByAuthor(testUser.getId());
+
+        // il tag aggiunto dopo la lettura non compare: autori e tag fanno parte della stessa lettura dei documenti
+        PreparedStatement psTag = conn.prepareStatement("INSERT INTO tag (tag_label, description) VALUES ('dopo', NULL)");
+        psTag.executeUpdate();
+        psTag.close();
+        documentDAO.addTagToDocument(doc1Id, "dopo");
+
+        Document d1 = docs.stream().filter(d -> d.getId() == doc1Id).findFirst().orElseThrow();
+        assertTrue(d1.getTags().stream().noneMatch(t -> "dopo".equals(t.getLabel())));
+
+        // gli autori dello stesso ResultSet sono risolti insieme: stessa istanza per lo stesso autore
+        assertSame(docs.get(0).getAuthor(), docs.get(1).getAuthor());
+        assertEquals(testUser.getId(), docs.get(2).getAuthor().getId());
+    }
+
+}
@@ -191,6 +191,90 @@ class DocumentRelationDAOTest {
         assertTrue(srcAfter.isEmpty());
     }
 
+    @Test
+    void addDocumentRelations_batchInsertSkipsDuplicates() {
+        relationDAO.addDocumentRelation(srcDocId, dstDocId, DocumentRelationType.QUOTE, false);
+        DomainModel.Document src = documentDAO.getDocumentById(srcDocId);
+        DomainModel.Document dst = documentDAO.getDocumentById(dstDocId);
+        DomainModel.Document dst2 = documentDAO.getDocumentById(dstDocId2);
+
+        List<DocumentRelation> inserted = relationDAO.addDocumentRelations(List.of(
+                new DocumentRelation(src, dst, DocumentRelationType.QUOTE, false),
+                new DocumentRelation(src, dst2, DocumentRelationType.QUOTE, true)));
+
+        assertNotNull(inserted);
+        assertEquals(1, inserted.size(), "Va restituita solo la relazione effettivamente inserita");
+        assertEquals(dstDocId2, inserted.get(0).getDestination().getId());
+        assertEquals(1, countRelationRows(srcDocId, dstDocId));
+        assertEquals(1, countRelationRows(srcDocId, dstDocId2));
+    }
+
+    @Test
+    void versionChain_followsNewVersionOfInBothDirections() {
+        // dstDocId2 è nuova versione di dstDocId, che è nuova versione di srcDocId
+        relationDAO.addDocumentRelation(dstDocId, srcDocId, DocumentRelationType.NEW_VERSION_OF, true);
+        relationDAO.addDocumentRelation(dstDocId2, dstDocId, DocumentRelationType.NEW_VERSION_OF, true);
+
+        List<DomainModel.Document> chain = relationDAO.getVersionChain(dstDocId);
+        assertEquals(List.of(srcDocId, dstDocId, dstDocId2), chain.stream().map(DomainModel.Document::getId).toList());
+        assertEquals(dstDocId2, relationDAO.getLatestVersion(srcDocId).getId());
+        assertEquals(dstDocId2, relationDAO.getLatestVersion(dstDocId2).getId());
+    }
+
+    @Test
+    void versionChain_isCycleSafe() {
+        relationDAO.addDocumentRelation(dstDocId, srcDocId, DocumentRelationType.NEW_VERSION_OF, true);
+        relationDAO.addDocumentRelation(srcDocId, dstDocId, DocumentRelationType.NEW_VERSION_OF, true);
+
+        List<DomainModel.Document> chain = relationDAO.getVersionChain(srcDocId);
+        assertEquals(2, chain.size(), "Un ciclo non deve ripetere i documenti");
+    }
+
+    @Test
+    void neighbourhood_respectsDepthAndType() {
+        relationDAO.addDocumentRelation(srcDocId, dstDocId, DocumentRelationType.ANSWER_TO, true);
+        relationDAO.addDocumentRelation(dstDocId, dstDocId2, DocumentRelationType.ANSWER_TO, true);
+
+        List<DocumentRelation> oneHop = relationDAO.getNeighbourhood(srcDocId, 1, null);
+        assertEquals(1, oneHop.size());
+        assertEquals(dstDocId, oneHop.get(0).getDestination().getId());
+
+        List<DocumentRelation> twoHops = relationDAO.getNeighbourhood(srcDocId, 2, DocumentRelationType.ANSWER_TO);
+        assertEquals(2, twoHops.size());
+
+        assertTrue(relationDAO.getNeighbourhood(srcDocId, 2, DocumentRelationType.QUOTE).isEmpty());
+    }
+
+    @Test
+    void neighbourhood_visitsEachDocumentOnceOnCycles() {
+        relationDAO.addDocumentRelation(srcDocId, dstDocId, DocumentRelationType.QUOTE, true);
+        relationDAO.addDocumentRelation(dstDocId, dstDocId2, DocumentRelationType.QUOTE, true);
+        relationDAO.addDocumentRelation(dstDocId2, srcDocId, DocumentRelationType.QUOTE, true);
+
+        List<DocumentRelation> all = relationDAO.getNeighbourhood(srcDocId, 50, null);
+        assertEquals(3, all.size(), "Ogni relazione del ciclo compare una volta sola");
+    }
+
+    @Test
+    void relationGraph_reachableAndShortestPath() {
+        relationDAO.addDocumentRelation(srcDocId, dstDocId, DocumentRelationType.ANSWER_TO, true);
+        relationDAO.addDocumentRelation(dstDocId, dstDocId2, DocumentRelationType.QUOTE, true);
+
+        assertArrayEquals(new int[]{dstDocId, dstDocId2},
+                relationDAO.getReachableDocumentIds(srcDocId, 2, null, RelationGraph.Direction.OUTGOING));
+        assertArrayEquals(new int[]{dstDocId},
+                relationDAO.getReachableDocumentIds(srcDocId, 2, DocumentRelationType.ANSWER_TO, RelationGraph.Direction.BOTH));
+        assertEquals(0, relationDAO.getReachableDocumentIds(dstDocId2, 2, null, RelationGraph.Direction.OUTGOING).length);
+
+        assertArrayEquals(new int[]{dstDocId2, dstDocId, srcDocId},
+                relationDAO.getShortestPath(dstDocId2, srcDocId, null, RelationGraph.Direction.BOTH));
+        assertEquals(0, relationDAO.getShortestPath(dstDocId2, srcDocId, null, RelationGraph.Direction.OUTGOING).length);
+
+        relationDAO.removeDocumentRelation(dstDocId, dstDocId2);
+        assertEquals(0, relationDAO.getShortestPath(srcDocId, dstDocId2, null, RelationGraph.Direction.BOTH).length,
+                "Il grafo deve riflettere la relazione rimossa");
+    }
+
     // helper to count relation rows directly from DB
     private int countRelationRows(int sourceId, int destinationId) {
         try {
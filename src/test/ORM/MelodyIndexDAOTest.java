@@ -0,0 +1,107 @@
+package ORM;
+
+import DomainModel.Document;
+import DomainModel.DocumentFormat;
+import DomainModel.User;
+import Ingestion.MelodyNgrams;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MelodyIndexDAOTest {
+
+    private static final int[] ODE_TO_JOY = {64, 64, 65, 67, 67, 65, 64, 62, 60, 60, 62, 64, 64, 62, 62};
+    private static final int[] SCALE = {60, 62, 64, 65, 67, 69, 71, 72};
+
+    private Connection conn;
+    private MelodyIndexDAO melodyIndexDAO;
+    private int odeId;
+    private int scaleId;
+
+    @BeforeEach
+    void setUp() {
+        try {
+            DBConnection.setEnableTesting(true);
+            DBConnection.resetInstance();
+            conn = DBConnection.getInstance().getConnection();
+            conn.setAutoCommit(false);
+
+            UserDAO userDAO = new UserDAO();
+            DocumentDAO documentDAO = new DocumentDAO();
+            melodyIndexDAO = new MelodyIndexDAO();
+
+            String email = "melodytest+" + System.currentTimeMillis() + "@example.com";
+            userDAO.addUser("Melody", "Tester", email, "pwd", false, false);
+            User author = userDAO.getUserByEmail(email);
+            assertNotNull(author, "Impossibile creare user di test");
+            odeId = documentDAO.addDocumentWithContent(author, "Inno alla gioia", "desc", "1824", DocumentFormat.MIDI, "path/", "ode", List.of(), null);
+            scaleId = documentDAO.addDocumentWithContent(author, "Scala", "desc", "2000", DocumentFormat.MIDI, "path/", "scala", List.of(), null);
+            assertTrue(odeId > 0 && scaleId > 0, "Impossibile creare documenti di test");
+        } catch (SQLException e) {
+            fail("setUp fallito: " + e.getMessage());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        try {
+            if (conn != null) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            fail("tearDown fallito: " + e.getMessage());
+        }
+    }
+
+    @Test
+    void searchByNgrams_findsTransposedFragment() {
+        assertTrue(melodyIndexDAO.replaceNgrams(odeId, MelodyNgrams.count(ODE_TO_JOY)));
+        assertTrue(melodyIndexDAO.replaceNgrams(scaleId, MelodyNgrams.count(SCALE)));
+
+        // la prima frase dell'inno, un tono sopra
+        int[] query = {66, 66, 67, 69, 69, 67, 66};
+        Map<Integer, Integer> grams = MelodyNgrams.count(query);
+        assertEquals(List.of(odeId), own(melodyIndexDAO.searchByNgrams(grams.keySet(), grams.size(), 10)));
+
+        // prima frase dell'inno seguita da un frammento di scala: l'inno ha più gram in comune e viene prima
+        int[] mixed = {64, 64, 65, 67, 67, 65, 64, 60, 62, 64, 65, 67, 69};
+        Map<Integer, Integer> partial = MelodyNgrams.count(mixed);
+        assertEquals(List.of(odeId, scaleId), own(melodyIndexDAO.searchByNgrams(partial.keySet(), 1, 10)));
+        assertEquals(List.of(odeId), own(melodyIndexDAO.searchByNgrams(partial.keySet(), 3, 10)), "Sotto minMatches un documento è escluso");
+    }
+
+    @Test
+    void replaceNgrams_dropsPreviousIndex() {
+        assertTrue(melodyIndexDAO.replaceNgrams(odeId, MelodyNgrams.count(ODE_TO_JOY)));
+        assertTrue(melodyIndexDAO.replaceNgrams(odeId, MelodyNgrams.count(SCALE)));
+
+        Map<Integer, Integer> grams = MelodyNgrams.count(ODE_TO_JOY);
+        assertFalse(melodyIndexDAO.searchByNgrams(grams.keySet(), grams.size(), 10).contains(odeId));
+        assertTrue(melodyIndexDAO.searchByNgrams(List.of(), 1, 10).isEmpty());
+    }
+
+    @Test
+    void replaceNgrams_keepsPreviousIndexWhenInsertFails() {
+        assertTrue(melodyIndexDAO.replaceNgrams(odeId, MelodyNgrams.count(ODE_TO_JOY)));
+        Map<Integer, Integer> broken = new java.util.HashMap<>(MelodyNgrams.count(SCALE));
+        broken.put(Integer.MAX_VALUE, null); // inserimento che fallisce dopo la cancellazione
+
+        assertFalse(melodyIndexDAO.replaceNgrams(odeId, broken));
+        Map<Integer, Integer> grams = MelodyNgrams.count(ODE_TO_JOY);
+        assertTrue(melodyIndexDAO.searchByNgrams(grams.keySet(), grams.size(), 10).contains(odeId),
+                "La cancellazione deve essere annullata insieme all'inserimento fallito");
+    }
+
+    // il database di test può contenere altri documenti MIDI indicizzati
+    private List<Integer> own(List<Integer> ranked) {
+        return ranked.stream().filter(id -> id == odeId || id == scaleId).toList();
+    }
+}
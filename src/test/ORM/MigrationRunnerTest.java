@@ -0,0 +1,78 @@
+package ORM;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MigrationRunnerTest {
+
+    private static final Path MIGRATIONS = Path.of("JDBC", "migrations");
+
+    private DBConnection db;
+    private Connection conn;
+
+    @BeforeEach
+    void setUp() {
+        try {
+            DBConnection.setEnableTesting(true);
+            DBConnection.resetInstance();
+            db = DBConnection.getInstance();
+            conn = db.getConnection();
+        } catch (SQLException e) {
+            fail("setUp fallito in MigrationRunnerTest: " + e.getMessage());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.releaseConnection();
+    }
+
+    @Test
+    void startup_appliesAllMigrations_andRerunIsNoop() throws SQLException, IOException {
+        long files;
+        try (var stream = Files.list(MIGRATIONS)) {
+            files = stream.filter(p -> p.getFileName().toString().matches("V\\d+__.+\\.sql")).count();
+        }
+        PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*) AS cnt FROM schema_migrations");
+        ResultSet rs = ps.executeQuery();
+        assertTrue(rs.next());
+        assertEquals(files, rs.getLong("cnt"), "All'avvio devono risultare applicate tutte le migrazioni");
+        rs.close();
+        ps.close();
+
+        assertEquals(0, new MigrationRunner(MIGRATIONS).migrate(conn), "Una seconda esecuzione non deve applicare nulla");
+        assertTrue(conn.getAutoCommit(), "L'autocommit deve essere ripristinato");
+    }
+
+    @Test
+    void modifiedMigration_isRejected(@TempDir Path dir) throws IOException, SQLException {
+        Files.writeString(dir.resolve("V1__full_text_search_and_tag_lookup.sql"), "SELECT 1;");
+
+        SQLException e = assertThrows(SQLException.class, () -> new MigrationRunner(dir).migrate(conn));
+        assertTrue(e.getMessage().contains("V1"));
+        assertTrue(conn.getAutoCommit());
+    }
+
+    @Test
+    void missingOrEmptyDirectory_failsStartup(@TempDir Path dir) {
+        assertThrows(SQLException.class, () -> new MigrationRunner(dir.resolve("assente")).migrate(conn));
+        assertThrows(SQLException.class, () -> new MigrationRunner(dir).migrate(conn));
+    }
+
+    @Test
+    void sha256_isStableHex() {
+        assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855", MigrationRunner.sha256(""));
+    }
+}
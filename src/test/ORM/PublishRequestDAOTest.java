@@ -5,6 +5,7 @@ import DomainModel.Document;
 import DomainModel.User;
 import DomainModel.PublishRequest;
 import DomainModel.RequestStatus;
+import DomainModel.DocumentStatus;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -78,6 +79,19 @@ class PublishRequestDAOTest {
         assertTrue(pending.stream().anyMatch(x -> x.getDocument().getId() == docId), "getRequestsByStatus non contiene la richiesta pending");
     }
 
+    @Test
+    void addRequest_isIdempotentWhilePending() {
+        Document d = documentDAO.getDocumentById(docId);
+        assertFalse(publishRequestDAO.hasPendingRequest(docId));
+
+        assertTrue(publishRequestDAO.addRequest(d), "La prima richiesta deve essere creata");
+        assertFalse(publishRequestDAO.addRequest(d), "Una seconda richiesta PENDING non deve essere creata");
+        assertTrue(publishRequestDAO.hasPendingRequest(docId));
+        assertEquals(1, publishRequestDAO.getRequestsByStatus(RequestStatus.PENDING).stream()
+                .filter(r -> r.getDocument() != null && r.getDocument().getId() == docId).count());
+        assertEquals(DocumentStatus.PENDING, documentDAO.getDocumentById(docId).getStatus());
+    }
+
     @Test
     void updateRequestStatusAndQueries() {
         // crea una request
@@ -0,0 +1,118 @@
+package ORM;
+
+import DomainModel.DocumentRelationType;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// grafo senza DB: parte vuoto e riceve solo le notifiche, come il grafo condiviso dopo il primo caricamento
+class RelationGraphTest {
+
+    // connessione in autocommit: le query usano il grafo condiviso e non toccano il DB
+    private static final Connection AUTOCOMMIT = (Connection) Proxy.newProxyInstance(
+            Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                if (method.getName().equals("getAutoCommit"))
+                    return true;
+                throw new UnsupportedOperationException(method.getName());
+            });
+
+    @Test
+    void changesAreVisibleBeforeTheSnapshotIsRebuilt() throws SQLException {
+        RelationGraph graph = new RelationGraph(1000);
+        graph.onRelationAdded(1, 2, DocumentRelationType.QUOTE);
+        graph.onRelationAdded(2, 3, DocumentRelationType.ANSWER_TO);
+
+        assertArrayEquals(new int[]{2, 3}, graph.reachable(AUTOCOMMIT, 1, 2, null, RelationGraph.Direction.OUTGOING));
+        assertArrayEquals(new int[]{3, 2, 1}, graph.shortestPath(AUTOCOMMIT, 3, 1, null, RelationGraph.Direction.BOTH));
+
+        graph.onRelationTypeChanged(2, 3, DocumentRelationType.QUOTE);
+        assertArrayEquals(new int[]{2, 3}, graph.reachable(AUTOCOMMIT, 1, 2, DocumentRelationType.QUOTE, RelationGraph.Direction.OUTGOING));
+
+        graph.onRelationRemoved(1, 2);
+        assertEquals(0, graph.reachable(AUTOCOMMIT, 1, 2, null, RelationGraph.Direction.OUTGOING).length);
+        graph.onDocumentsDeleted(new int[]{3});
+        assertEquals(0, graph.neighbours(AUTOCOMMIT, 2, null, RelationGraph.Direction.BOTH).length);
+    }
+
+    @Test
+    void randomChangesMatchAPlainBreadthFirstSearch() throws SQLException {
+        RelationGraph graph = new RelationGraph(16); // ricostruzioni frequenti in background
+        Map<Long, DocumentRelationType> model = new HashMap<>();
+        DocumentRelationType[] types = DocumentRelationType.values();
+        Random random = new Random(42);
+        for (int step = 0; step < 2000; step++) {
+            int source = random.nextInt(40);
+            int destination = random.nextInt(40);
+            long key = ((long) source << 32) | destination;
+            DocumentRelationType type = types[random.nextInt(types.length)];
+            switch (random.nextInt(4)) {
+                case 0, 1 -> {
+                    graph.onRelationAdded(source, destination, type);
+                    model.putIfAbsent(key, type);
+                }
+                case 2 -> {
+                    graph.onRelationRemoved(source, destination);
+                    model.remove(key);
+                }
+                default -> {
+                    graph.onRelationTypeChanged(source, destination, type);
+                    model.computeIfPresent(key, (k, t) -> type);
+                }
+            }
+            if (step % 50 == 0) {
+                int start = random.nextInt(40);
+                for (RelationGraph.Direction direction : RelationGraph.Direction.values()) {
+                    assertArrayEquals(distances(model, start, null, direction),
+                            distancesOf(graph.reachable(AUTOCOMMIT, start, 40, null, direction), graph, start, direction),
+                            "Passo " + step + ", direzione " + direction);
+                }
+            }
+        }
+    }
+
+    // distanza da start di ogni documento 0..39 (-1 = non raggiungibile), sul grafo in memoria
+    private static int[] distancesOf(int[] reached, RelationGraph graph, int start, RelationGraph.Direction direction) throws SQLException {
+        int[] dist = new int[40];
+        java.util.Arrays.fill(dist, -1);
+        dist[start] = 0;
+        for (int id : reached) {
+            dist[id] = graph.shortestPath(AUTOCOMMIT, start, id, null, direction).length - 1;
+        }
+        return dist;
+    }
+
+    private static int[] distances(Map<Long, DocumentRelationType> edges, int start, DocumentRelationType type, RelationGraph.Direction direction) {
+        int[] dist = new int[40];
+        java.util.Arrays.fill(dist, -1);
+        dist[start] = 0;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (Map.Entry<Long, DocumentRelationType> e : edges.entrySet()) {
+                if (type != null && e.getValue() != type)
+                    continue;
+                int source = (int) (e.getKey() >> 32);
+                int destination = (int) (long) e.getKey();
+                int next = -1;
+                if (direction != RelationGraph.Direction.INCOMING && source == node)
+                    next = destination;
+                else if (direction != RelationGraph.Direction.OUTGOING && destination == node)
+                    next = source;
+                if (next >= 0 && dist[next] < 0) {
+                    dist[next] = dist[node] + 1;
+                    queue.add(next);
+                }
+            }
+        }
+        return dist;
+    }
+}
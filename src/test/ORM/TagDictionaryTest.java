@@ -0,0 +1,111 @@
+package ORM;
+
+import DomainModel.Tag;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// il vocabolario si usa solo fuori dalle transazioni: qui si lavora in autocommit e i tag creati vengono rimossi alla fine
+class TagDictionaryTest {
+
+    private Connection conn;
+    private TagDAO tagDAO;
+    private String label;
+
+    @BeforeEach
+    void setUp() {
+        try {
+            DBConnection.setEnableTesting(true);
+            DBConnection.resetInstance();
+            conn = DBConnection.getInstance().getConnection();
+            tagDAO = new TagDAO();
+            label = "Dizionario" + System.currentTimeMillis();
+            TagDictionary.getInstance().invalidate();
+        } catch (SQLException e) {
+            fail("setUp fallito in TagDictionaryTest: " + e.getMessage());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        try (PreparedStatement ps = conn.prepareStatement("DELETE FROM tag WHERE tag_label LIKE ?")) {
+            ps.setString(1, label + "%");
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            fail("tearDown fallito in TagDictionaryTest: " + e.getMessage());
+        }
+        TagDictionary.getInstance().invalidate();
+    }
+
+    @Test
+    void normalize_matchesPostgresLowerTrim() throws SQLException {
+        Locale previous = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("tr"));
+        try {
+            for (String s : new String[]{"  TITLE ", "Istanbul", "\tTab", " a b "}) {
+                try (PreparedStatement ps = conn.prepareStatement("SELECT LOWER(TRIM(?))")) {
+                    ps.setString(1, s);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        rs.next();
+                        assertEquals(rs.getString(1), TagDictionary.normalize(s), "Normalizzazione diversa dal DB per '" + s + "'");
+                    }
+                }
+            }
+        } finally {
+            Locale.setDefault(previous);
+        }
+        assertNull(TagDictionary.normalize(null));
+    }
+
+    @Test
+    void lookupOutsideTransaction_isServedFromMemory() {
+        tagDAO.addTag(new Tag(label, "desc"));
+        assertNotNull(tagDAO.findByLabelNormalized("  " + label.toUpperCase(Locale.ROOT) + " "));
+        long hits = TagDictionary.getInstance().getStats().getHits();
+
+        assertEquals(label, tagDAO.findByLabelNormalized(label.toLowerCase(Locale.ROOT)).getLabel());
+        assertEquals(hits + 1, TagDictionary.getInstance().getStats().getHits());
+        assertNull(tagDAO.findByLabelNormalized(label + "-inesistente"));
+    }
+
+    @Test
+    void tagAddedInUnitOfWork_isVisibleOnlyAfterCommit() throws Exception {
+        assertNull(tagDAO.findByLabelNormalized(label)); // carica il vocabolario
+        UnitOfWork.run(() -> {
+            tagDAO.addTag(new Tag(label, "desc"));
+            assertNotNull(tagDAO.findByLabelNormalized(label), "Nella transazione il tag si legge dal DB");
+        });
+        assertNotNull(tagDAO.findByLabelNormalized(label), "Dopo il commit il vocabolario in memoria contiene il tag");
+
+        try {
+            UnitOfWork.run(() -> {
+                tagDAO.addTag(new Tag(label + "-annullato", "desc"));
+                throw new IllegalStateException("annulla");
+            });
+        } catch (IllegalStateException expected) {
+            // atteso
+        }
+        assertNull(tagDAO.findByLabelNormalized(label + "-annullato"), "Un tag annullato non deve entrare nel vocabolario");
+    }
+
+    @Test
+    void invalidate_reloadsChangesMadeOutsideTheDao() throws SQLException {
+        assertNull(tagDAO.findByLabelNormalized(label));
+        try (PreparedStatement ps = conn.prepareStatement("INSERT INTO tag (tag_label, description) VALUES (?, 'desc')")) {
+            ps.setString(1, label);
+            ps.executeUpdate();
+        }
+        assertNull(tagDAO.findByLabelNormalized(label), "Senza invalidazione il vocabolario non vede le modifiche esterne");
+
+        TagDictionary.getInstance().invalidate();
+        assertNotNull(tagDAO.findByLabelNormalized(label));
+    }
+}
@@ -0,0 +1,88 @@
+package ORM;
+
+import DomainModel.Tag;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UnitOfWorkTest {
+
+    private Connection conn;
+    private TagDAO tagDAO;
+
+    @BeforeEach
+    void setUp() {
+        try {
+            DBConnection.setEnableTesting(true);
+            DBConnection.resetInstance();
+            conn = DBConnection.getInstance().getConnection();
+            conn.setAutoCommit(false);
+
+            tagDAO = new TagDAO();
+
+        } catch (SQLException e) {
+            fail("setUp fallito in UnitOfWorkTest: " + e.getMessage());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        try {
+            if (conn != null) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            fail("tearDown fallito in UnitOfWorkTest: " + e.getMessage());
+        }
+    }
+
+    @Test
+    void allOperationsSucceed_changesAreKept() throws Exception {
+        UnitOfWork.run(() -> {
+            tagDAO.addTag(new Tag("Jazz", null));
+            tagDAO.addTag(new Tag("Blues", null));
+        });
+
+        assertNotNull(tagDAO.findByLabelNormalized("Jazz"));
+        assertNotNull(tagDAO.findByLabelNormalized("Blues"));
+        assertFalse(conn.getAutoCommit(), "La transazione del chiamante deve restare aperta");
+    }
+
+    @Test
+    void failingDaoOperation_rollsBackWholeUnit() {
+        tagDAO.addTag(new Tag("Rock", null));
+
+        assertThrows(SQLException.class, () -> UnitOfWork.run(() -> {
+            tagDAO.addTag(new Tag("Jazz", null));
+            tagDAO.addTag(new Tag("Rock", null)); // chiave duplicata: il DAO segnala il rollback
+        }));
+
+        assertNull(tagDAO.findByLabelNormalized("Jazz"), "Il tag inserito nella unit of work annullata non deve restare");
+        assertNotNull(tagDAO.findByLabelNormalized("Rock"), "Le modifiche precedenti del chiamante devono restare");
+    }
+
+    @Test
+    void exceptionInWork_rollsBackAndPropagates() {
+        IllegalStateException thrown = assertThrows(IllegalStateException.class, () -> UnitOfWork.run(() -> {
+            tagDAO.addTag(new Tag("Jazz", null));
+            throw new IllegalStateException("errore applicativo");
+        }));
+
+        assertEquals("errore applicativo", thrown.getMessage());
+        assertNull(tagDAO.findByLabelNormalized("Jazz"));
+    }
+
+    @Test
+    void afterCommit_notAvailableInsideCallerTransaction() throws Exception {
+        boolean[] scheduled = {true};
+        UnitOfWork.run(() -> scheduled[0] = UnitOfWork.runAfterCommit(() -> {}));
+        assertFalse(scheduled[0], "Senza commit proprio la unit of work non può garantire le azioni post-commit");
+        assertFalse(UnitOfWork.runAfterCommit(() -> {}), "Fuori da una unit of work non si può rimandare nulla");
+    }
+}
@@ -0,0 +1,82 @@
+package ORM;
+
+import DomainModel.User;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserCacheTest {
+
+    private static User user(int id, String email) {
+        return new User(id, "Nome", "Cognome", email, "pwd", false, false, 1);
+    }
+
+    @Test
+    void put_thenHitByIdAndEmail() {
+        UserCache cache = new UserCache(10, 60_000);
+        cache.put(user(1, "a@example.com"));
+
+        assertNotNull(cache.getById(1));
+        assertEquals(1, cache.getByEmail("a@example.com").getId());
+        assertNull(cache.getById(2));
+
+        CacheStats stats = cache.getStats();
+        assertEquals(2, stats.getHits());
+        assertEquals(1, stats.getMisses());
+    }
+
+    @Test
+    void returnedUsers_areCopies() {
+        UserCache cache = new UserCache(10, 60_000);
+        cache.put(user(1, "a@example.com"));
+
+        User first = cache.getById(1);
+        first.incrementNextFileName();
+        assertEquals(1, cache.getById(1).getNextFileName(), "Modificare la copia non deve alterare la cache");
+        assertEquals("NomeCognome", cache.getById(1).getName());
+    }
+
+    @Test
+    void sizeLimit_evictsLeastRecentlyUsed() {
+        UserCache cache = new UserCache(2, 60_000);
+        cache.put(user(1, "a@example.com"));
+        cache.put(user(2, "b@example.com"));
+        cache.getById(1); // 2 diventa il meno usato di recente
+        cache.put(user(3, "c@example.com"));
+
+        assertNotNull(cache.getById(1));
+        assertNull(cache.getById(2));
+        assertNull(cache.getByEmail("b@example.com"));
+        assertEquals(1, cache.getStats().getEvictions());
+    }
+
+    @Test
+    void expiredEntries_areMisses() throws InterruptedException {
+        UserCache cache = new UserCache(10, 1);
+        cache.put(user(1, "a@example.com"));
+        Thread.sleep(5);
+        assertNull(cache.getById(1));
+        assertEquals(0, cache.getStats().getSize());
+    }
+
+    @Test
+    void invalidate_removesIdAndEmail() {
+        UserCache cache = new UserCache(10, 60_000);
+        cache.put(user(1, "a@example.com"));
+        cache.invalidate(1);
+        assertNull(cache.getById(1));
+        assertNull(cache.getByEmail("a@example.com"));
+    }
+
+    @Test
+    void putAfterInvalidation_isSkipped() {
+        UserCache cache = new UserCache(10, 60_000);
+        long beforeRead = cache.invalidations();
+        cache.invalidate(1); // modifica confermata mentre la lettura era in corso
+        cache.put(user(1, "a@example.com"), beforeRead);
+        assertNull(cache.getById(1), "Una riga letta prima dell'invalidazione non deve tornare in cache");
+
+        cache.put(user(1, "a@example.com"), cache.invalidations());
+        assertNotNull(cache.getById(1));
+    }
+}
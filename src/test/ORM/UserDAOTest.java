@@ -105,6 +105,16 @@ class UserDAOTest {
         assertEquals(12345, u.getNextFileName());
     }
 
+    @Test
+    void updateNextFileName_dropsRowCachedByOtherThreadsAtTransactionEnd() throws SQLException {
+        User before = userDAO.getUserById(testUser.getId());
+        assertTrue(userDAO.updateNextFileName(testUser.getId(), 777));
+        UserCache.getInstance().put(before); // un altro thread rilegge e mette in cache la riga non ancora confermata
+
+        conn.rollback(); // fine della transazione (qui annullata per non lasciare dati di test)
+        assertNull(UserCache.getInstance().getById(testUser.getId()), "La riga precedente al commit non deve restare in cache");
+    }
+
     @Test
     void setModeratorAndGetModerators() {
         boolean ok = userDAO.setModerator(testUser.getId(), true);
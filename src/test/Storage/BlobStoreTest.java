@@ -0,0 +1,339 @@
+package Storage;
+
+import DomainModel.DocumentFormat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlobStoreTest {
+
+    @TempDir
+    Path root;
+
+    private BlobStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new BlobStore(root);
+    }
+
+    @Test
+    void identicalUploads_areStoredOnce() throws IOException {
+        String first = store.put(large("spartito"));
+        String second = store.put(large("spartito"));
+        String other = store.put(large("altro spartito"));
+
+        assertEquals(first, second);
+        assertNotEquals(first, other);
+        assertEquals(2, countBlobs(), "Lo stesso contenuto deve occupare un solo file");
+        assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855", store.put(stream("")));
+    }
+
+    @Test
+    void transferTo_copiesWholeContentAndRanges() throws IOException {
+        String hash = store.put(large("0123456789"));
+
+        ByteArrayOutputStream all = new ByteArrayOutputStream();
+        assertEquals(store.size(hash), store.transferTo(hash, Channels.newChannel(all)));
+        assertTrue(all.toString(StandardCharsets.UTF_8).startsWith("01234567890123"));
+
+        ByteArrayOutputStream range = new ByteArrayOutputStream();
+        assertEquals(4, store.transferTo(hash, 3, 4, Channels.newChannel(range)));
+        assertEquals("3456", range.toString(StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream tail = new ByteArrayOutputStream();
+        assertEquals(2, store.transferTo(hash, store.size(hash) - 2, 100, Channels.newChannel(tail)), "Oltre la fine si copia solo ciò che esiste");
+    }
+
+    @Test
+    void map_readsRandomPositions() throws IOException {
+        String hash = store.put(large("abcdefgh"));
+        ByteBuffer whole = store.map(hash);
+        assertEquals(store.size(hash), whole.capacity());
+        assertEquals('e', whole.get(4));
+
+        ByteBuffer window = store.map(hash, 6, 2);
+        assertEquals('g', window.get(0));
+        assertThrows(IllegalArgumentException.class, () -> store.map(hash, store.size(hash) - 2, 3));
+    }
+
+    @Test
+    void missingOrInvalidHash_isRejected() {
+        assertThrows(NoSuchFileException.class, () -> store.size("0".repeat(64)));
+        assertThrows(IllegalArgumentException.class, () -> store.open("../../etc/passwd"));
+        assertFalse(store.contains("0".repeat(64)));
+    }
+
+    @Test
+    void chunkedUpload_matchesSingleUpload() throws IOException {
+        String uploadId = store.beginUpload();
+        assertEquals(4, store.appendChunk(uploadId, 0, stream("spar")));
+        assertEquals(4, store.appendChunk(uploadId, 0, stream("spar")), "Un blocco reinviato non va scritto due volte");
+        assertEquals(8, store.appendChunk(uploadId, 2, stream("artito")), "Si scrive solo la parte non ancora ricevuta");
+        assertThrows(IOException.class, () -> store.appendChunk(uploadId, 20, stream("x")));
+        assertEquals(8, store.getUploadedSize(uploadId));
+
+        String hash = store.completeUpload(uploadId, null);
+        assertEquals(store.put(stream("spartito")), hash);
+        assertThrows(NoSuchFileException.class, () -> store.getUploadedSize(uploadId), "Un upload concluso non si riprende");
+    }
+
+    @Test
+    void chunkedUpload_resumesAfterRestart() throws IOException {
+        String uploadId = store.beginUpload();
+        store.appendChunk(uploadId, 0, stream("0123"));
+
+        BlobStore restarted = new BlobStore(root);
+        assertEquals(4, restarted.getUploadedSize(uploadId));
+        restarted.appendChunk(uploadId, 4, stream("4567"));
+        String hash = restarted.completeUpload(uploadId, null);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        restarted.transferTo(hash, Channels.newChannel(out));
+        assertEquals("01234567", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void chunkedUpload_wrongExpectedHash_isDiscarded() throws IOException {
+        String uploadId = store.beginUpload();
+        store.appendChunk(uploadId, 0, stream("spartito"));
+
+        assertThrows(IOException.class, () -> store.completeUpload(uploadId, "0".repeat(64)));
+        assertEquals(0, countBlobs());
+        assertThrows(NoSuchFileException.class, () -> store.getUploadedSize(uploadId));
+    }
+
+    @Test
+    void collectGarbage_removesOnlyOldUnreferencedBlobs() throws IOException {
+        String kept = store.put(large("usato"));
+        String orphan = store.put(large("orfano"));
+        String recent = store.put(large("appena caricato"));
+        FileTime old = FileTime.from(Instant.now().minus(Duration.ofDays(1)));
+        Files.setLastModifiedTime(root.resolve(kept.substring(0, 2)).resolve(kept), old);
+        Files.setLastModifiedTime(root.resolve(orphan.substring(0, 2)).resolve(orphan), old);
+
+        assertEquals(1, store.collectGarbage(Set.of(kept), Duration.ofHours(1)));
+        assertTrue(store.contains(kept));
+        assertFalse(store.contains(orphan));
+        assertTrue(store.contains(recent), "I file recenti possono appartenere a upload non ancora confermati");
+    }
+
+    @Test
+    void smallFiles_arePackedIntoSegments() throws IOException {
+        String first = store.put(stream("spartito"));
+        String second = store.put(stream("spartito"));
+        String other = store.put(stream("altro spartito"));
+
+        assertEquals(first, second);
+        assertEquals(0, countBlobs(), "I file piccoli non devono avere un file proprio");
+        assertEquals(8, store.size(first));
+        assertEquals('t', store.map(first, 4, 1).get(0));
+        ByteArrayOutputStream range = new ByteArrayOutputStream();
+        assertEquals(4, store.transferTo(other, 6, 4, Channels.newChannel(range)));
+        assertEquals("spar", range.toString(StandardCharsets.UTF_8));
+        assertEquals("spartito", new String(store.open(first).readAllBytes(), StandardCharsets.UTF_8));
+
+        BlobStore restarted = new BlobStore(root);
+        assertTrue(restarted.contains(other), "L'indice dei segmenti deve essere ricostruito all'avvio");
+        assertEquals("altro spartito", new String(restarted.open(other).readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void compaction_reclaimsSpaceOfUnreferencedPackedFiles() throws IOException {
+        BlobStore small = new BlobStore(root, 256); // segmenti piccoli: ogni record ne riempie quasi uno
+        String kept = small.put(stream("usato".repeat(20)));
+        small.put(stream("orfano".repeat(20)));
+        small.put(stream("orfano bis".repeat(10)));
+        long before = segmentBytes();
+
+        assertEquals(2, small.collectGarbage(Set.of(kept), Duration.ofSeconds(-1)));
+        small.compact(); // la pulizia avvia già la compattazione in background: qui si attende che sia conclusa
+        assertTrue(segmentBytes() < before);
+        assertEquals("usato".repeat(20), new String(small.open(kept).readAllBytes(), StandardCharsets.UTF_8));
+
+        BlobStore restarted = new BlobStore(root, 256);
+        assertTrue(restarted.contains(kept));
+        assertEquals(100, restarted.size(kept));
+    }
+
+    @Test
+    void truncatedSegmentTail_isDiscardedOnStartup() throws IOException {
+        String hash = store.put(stream("spartito"));
+        Path segment = onlySegment();
+        Files.write(segment, new byte[]{1, 2, 3}, java.nio.file.StandardOpenOption.APPEND); // scrittura interrotta
+
+        BlobStore restarted = new BlobStore(root);
+        assertTrue(restarted.contains(hash));
+        String other = restarted.put(stream("dopo il riavvio"));
+        assertEquals("dopo il riavvio", new String(restarted.open(other).readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void corruptedRecordInsideSegment_doesNotDropLaterRecords() throws IOException {
+        String first = store.put(stream("primo spartito"));
+        String second = store.put(stream("secondo spartito"));
+        String third = store.put(stream("terzo spartito"));
+        Path segment = onlySegment();
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[recordStarts(bytes)[1]] ^= 0x7F; // intestazione del secondo record danneggiata
+        Files.write(segment, bytes);
+
+        BlobStore restarted = new BlobStore(root);
+        assertTrue(restarted.contains(first));
+        assertFalse(restarted.contains(second));
+        assertTrue(restarted.contains(third), "I record dopo il danno devono restare leggibili");
+        assertEquals("terzo spartito", new String(restarted.open(third).readAllBytes(), StandardCharsets.UTF_8));
+        assertEquals(bytes.length, Files.size(segment), "Un danno a metà file non deve troncare il segmento");
+    }
+
+    @Test
+    void corruptedLastRecord_isQuarantinedBeforeTruncation() throws IOException {
+        String first = store.put(stream("primo spartito"));
+        store.put(stream("secondo spartito"));
+        Path segment = onlySegment();
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[recordStarts(bytes)[1]] ^= 0x7F;
+        Files.write(segment, bytes);
+
+        BlobStore restarted = new BlobStore(root);
+        assertTrue(restarted.contains(first));
+        try (Stream<Path> files = Files.list(root.resolve("segments"))) {
+            assertTrue(files.anyMatch(f -> f.getFileName().toString().contains(".corrupt-")),
+                    "Il segmento va copiato prima di scartare dati che non vengono da una scrittura interrotta");
+        }
+    }
+
+    @Test
+    void corruptedContentInsideSegment_isDetectedOnRead_andNotCompacted() throws IOException {
+        String first = store.put(stream("primo spartito"));
+        String second = store.put(stream("secondo spartito"));
+        store.put(stream("terzo spartito".repeat(10))); // non referenziato: il segmento diventa da compattare
+        Path segment = onlySegment();
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[recordStarts(bytes)[1] + 52] ^= 0x7F; // contenuto del secondo record danneggiato, intestazione intatta
+        Files.write(segment, bytes);
+
+        BlobStore restarted = new BlobStore(root);
+        assertThrows(IOException.class, () -> restarted.open(second).readAllBytes(),
+                "Un contenuto danneggiato non deve essere restituito come valido");
+        assertEquals("primo spartito", new String(restarted.open(first).readAllBytes(), StandardCharsets.UTF_8));
+
+        restarted.collectGarbage(Set.of(first, second), Duration.ofSeconds(-1));
+        restarted.compact();
+        assertFalse(restarted.contains(second), "La compattazione non deve copiare un record danneggiato");
+        assertEquals("primo spartito", new String(restarted.open(first).readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void compressibleFormats_areStoredCompressed_andReadTransparently() throws IOException {
+        String text = "<note><pitch>C4</pitch><duration>1</duration></note>\n".repeat(5000); // oltre la soglia dei segmenti
+        String xml = store.put(stream(text), DocumentFormat.MUSICXML);
+        String small = store.put(stream(text.substring(0, 2000)), DocumentFormat.TXT);
+
+        assertTrue(store.isStoredCompressed(xml));
+        assertTrue(store.isStoredCompressed(small), "Anche i contenuti nei segmenti vanno compressi");
+        assertEquals(text.length(), store.size(xml), "La dimensione è quella del contenuto originale");
+        assertTrue(store.storedSize(xml) < text.length() / 10);
+        assertEquals(text, new String(store.open(xml).readAllBytes(), StandardCharsets.UTF_8));
+        assertEquals(text.substring(0, 2000), new String(store.open(small).readAllBytes(), StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream range = new ByteArrayOutputStream();
+        assertEquals(10, store.transferTo(xml, 6, 10, Channels.newChannel(range)));
+        assertEquals(text.substring(6, 16), range.toString(StandardCharsets.UTF_8));
+        assertEquals(text.charAt(1234), (char) store.map(small, 1234, 1).get(0));
+        assertEquals(xml, store.put(stream(text)), "L'hash non dipende dalla compressione");
+    }
+
+    @Test
+    void alreadyCompressedFormats_areStoredAsIs() throws IOException {
+        String text = "testo molto ripetitivo ".repeat(1000);
+        String pdf = store.put(stream(text), DocumentFormat.PDF);
+        assertFalse(store.isStoredCompressed(pdf));
+        assertEquals(text.length(), store.storedSize(pdf));
+
+        byte[] random = new byte[4096];
+        new java.util.Random(42).nextBytes(random);
+        String noise = store.put(new ByteArrayInputStream(random), DocumentFormat.MIDI);
+        assertFalse(store.isStoredCompressed(noise), "Se la compressione non conviene il contenuto resta com'è");
+    }
+
+    @Test
+    void sidecars_areStoredNextToContent_andCollectedWithIt() throws IOException {
+        String hash = store.put(stream("audio"));
+        assertFalse(store.hasSidecar(hash, "peaks"));
+        store.putSidecar(hash, "peaks", new byte[]{1, 2, 3});
+        store.putSidecar(hash, "peaks", new byte[]{4, 5, 6, 7});
+
+        assertTrue(store.hasSidecar(hash, "peaks"));
+        ByteBuffer peaks = store.mapSidecar(hash, "peaks");
+        assertEquals(4, peaks.limit(), "Un nuovo calcolo sostituisce il precedente");
+        assertEquals(6, peaks.get(2));
+        assertThrows(IllegalArgumentException.class, () -> store.putSidecar(hash, "z", new byte[0]));
+        assertThrows(IllegalArgumentException.class, () -> store.hasSidecar(hash, "../x"));
+
+        Files.setLastModifiedTime(root.resolve(hash.substring(0, 2)).resolve(hash + ".peaks"), FileTime.from(Instant.now().minus(Duration.ofDays(1))));
+        store.collectGarbage(Set.of(hash), Duration.ofHours(1));
+        assertTrue(store.hasSidecar(hash, "peaks"), "I dati derivati di un contenuto referenziato restano");
+        store.collectGarbage(Set.of(), Duration.ofHours(1));
+        assertFalse(store.hasSidecar(hash, "peaks"));
+    }
+
+    private static ByteArrayInputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // contenuto oltre la soglia dei segmenti: viene salvato come file a sé
+    private static ByteArrayInputStream large(String text) {
+        return stream(text.repeat(70 * 1024 / text.length() + 1));
+    }
+
+    private long segmentBytes() throws IOException {
+        try (Stream<Path> files = Files.list(root.resolve("segments"))) {
+            long total = 0;
+            for (Path p : (Iterable<Path>) files::iterator) {
+                total += Files.size(p);
+            }
+            return total;
+        }
+    }
+
+    private long countBlobs() throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(p -> BlobStore.isValidHash(p.getFileName().toString())).count();
+        }
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(root.resolve("segments"))) {
+            return files.findFirst().orElseThrow();
+        }
+    }
+
+    // posizioni dei record: intestazione di 52 byte con la lunghezza del contenuto al byte 44
+    private static int[] recordStarts(byte[] segment) {
+        ByteBuffer buffer = ByteBuffer.wrap(segment);
+        int[] starts = new int[0];
+        for (int pos = 0; pos < segment.length; pos += 52 + buffer.getInt(pos + 44)) {
+            starts = java.util.Arrays.copyOf(starts, starts.length + 1);
+            starts[starts.length - 1] = pos;
+        }
+        return starts;
+    }
+}
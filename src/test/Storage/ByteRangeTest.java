@@ -0,0 +1,53 @@
+package Storage;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ByteRangeTest {
+
+    @Test
+    void missingHeader_isWholeContent() {
+        ByteRange range = ByteRange.parse(null, 1000);
+        assertTrue(range.isWhole());
+        assertEquals(1000, range.getLength());
+        assertEquals("bytes 0-999/1000", range.toContentRange());
+    }
+
+    @Test
+    void missingHeader_onEmptyContent_isWholeEmptyRange() {
+        ByteRange range = ByteRange.parse(null, 0);
+        assertNotNull(range, "Un documento vuoto si scarica per intero, senza 416");
+        assertTrue(range.isWhole());
+        assertEquals(0, range.getLength());
+        assertEquals("bytes */0", range.toContentRange());
+    }
+
+    @Test
+    void supportedForms_areClampedToContent() {
+        ByteRange closed = ByteRange.parse("bytes=100-199", 1000);
+        assertEquals(100, closed.getStart());
+        assertEquals(100, closed.getLength());
+
+        ByteRange open = ByteRange.parse("bytes=900-", 1000);
+        assertEquals(999, open.getEnd());
+
+        ByteRange suffix = ByteRange.parse("bytes=-200", 1000);
+        assertEquals("bytes 800-999/1000", suffix.toContentRange());
+        assertTrue(ByteRange.parse("bytes=-5000", 1000).isWhole());
+
+        assertEquals(999, ByteRange.parse("bytes=500-5000", 1000).getEnd(), "La fine oltre il contenuto viene limitata");
+        assertEquals(0, ByteRange.parse("bytes=0-9, 20-29", 1000).getStart(), "Di più intervalli si serve il primo");
+    }
+
+    @Test
+    void invalidOrUnsatisfiable_isNull() {
+        assertNull(ByteRange.parse("bytes=1000-", 1000));
+        assertNull(ByteRange.parse("bytes=50-10", 1000));
+        assertNull(ByteRange.parse("bytes=-0", 1000));
+        assertNull(ByteRange.parse("bytes=-", 1000));
+        assertNull(ByteRange.parse("items=0-10", 1000));
+        assertNull(ByteRange.parse("bytes=99999999999999999999-", 1000));
+        assertNull(ByteRange.parse("bytes=0-", 0));
+    }
+}
@@ -0,0 +1,65 @@
+package Storage;
+
+import DomainModel.DocumentFormat;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Benchmark della compressione per formato: per ogni DocumentFormat scrive e rilegge un campione
+ * sintetico e stampa rapporto di compressione e throughput di scrittura e lettura.
+ * Non fa asserzioni sui tempi (le verifiche sul rapporto sono in CompressionRatioTest) ed è marcato
+ * "benchmark", da escludere dalla suite normale: si esegue a parte, su una macchina scarica.
+ * I primi giri servono da riscaldamento (JIT, page cache) e non vengono misurati.
+ */
+@Tag("benchmark")
+class CompressionBenchmarkTest {
+
+    private static final int SAMPLE_SIZE = 4 * 1024 * 1024;
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int ROUNDS = 5;
+
+    @TempDir
+    Path root;
+
+    @Test
+    void reportCompressionRatioAndThroughput() throws IOException {
+        System.out.printf("%-9s %8s %12s %12s%n", "formato", "rapporto", "scrittura", "lettura");
+        for (DocumentFormat format : DocumentFormat.values()) {
+            byte[] sample = CompressionSamples.sample(format, SAMPLE_SIZE);
+            BlobStore store = new BlobStore(root.resolve(format.name()));
+
+            long writeNanos = 0;
+            long readNanos = 0;
+            String hash = null;
+            for (int i = 0; i < WARMUP_ROUNDS + ROUNDS; i++) {
+                sample[0] = (byte) i; // contenuto diverso a ogni giro, altrimenti la deduplicazione salta la scrittura
+                long start = System.nanoTime();
+                hash = store.put(new ByteArrayInputStream(sample), format);
+                long written = System.nanoTime();
+                long read = store.transferTo(hash, Channels.newChannel(OutputStream.nullOutputStream()));
+                long end = System.nanoTime();
+                assertEquals(sample.length, read);
+                if (i >= WARMUP_ROUNDS) {
+                    writeNanos += written - start;
+                    readNanos += end - written;
+                }
+            }
+            double ratio = (double) store.storedSize(hash) / sample.length;
+            System.out.printf("%-9s %8.3f %9.1f MB/s %9.1f MB/s%n", format, ratio,
+                    throughput(writeNanos), throughput(readNanos));
+        }
+    }
+
+    private static double throughput(long nanos) {
+        return (double) SAMPLE_SIZE * ROUNDS / (1024 * 1024) / (nanos / 1e9);
+    }
+}
@@ -0,0 +1,39 @@
+package Storage;
+
+import DomainModel.DocumentFormat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Rapporto di compressione per formato: i formati testuali e MIDI si comprimono,
+ * quelli già compressi vengono salvati così come sono. I tempi sono in CompressionBenchmarkTest.
+ */
+class CompressionRatioTest {
+
+    private static final int SAMPLE_SIZE = 256 * 1024;
+
+    @TempDir
+    Path root;
+
+    @Test
+    void eachFormat_isStoredWithTheExpectedRatio() throws IOException {
+        BlobStore store = new BlobStore(root);
+        for (DocumentFormat format : DocumentFormat.values()) {
+            byte[] sample = CompressionSamples.sample(format, SAMPLE_SIZE);
+            String hash = store.put(new ByteArrayInputStream(sample), format);
+            double ratio = (double) store.storedSize(hash) / sample.length;
+
+            assertEquals(sample.length, store.size(hash));
+            if (Compression.isCompressible(format))
+                assertTrue(ratio < 0.5, format + " dovrebbe comprimersi, rapporto " + ratio);
+            else
+                assertEquals(1.0, ratio, 0.0, format + " non va compresso");
+        }
+    }
+}
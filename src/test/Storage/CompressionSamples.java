@@ -0,0 +1,47 @@
+package Storage;
+
+import DomainModel.DocumentFormat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Campioni sintetici per formato usati dai test della compressione: testo e MusicXML ripetitivi,
+ * MIDI con eventi regolari, PDF/immagini/audio già compressi (byte casuali).
+ */
+final class CompressionSamples {
+
+    private CompressionSamples() {}
+
+    static byte[] sample(DocumentFormat format, int size) {
+        Random random = new Random(format.ordinal());
+        StringBuilder text = new StringBuilder(size);
+        switch (format) {
+            case TXT:
+                String[] words = {"sonata", "allegro", "adagio", "tema", "variazione", "minuetto", "fuga", "coda"};
+                while (text.length() < size)
+                    text.append(words[random.nextInt(words.length)]).append(random.nextInt(10) == 0 ? ".\n" : " ");
+                return java.util.Arrays.copyOf(text.toString().getBytes(StandardCharsets.UTF_8), size);
+            case MUSICXML:
+                String[] steps = {"C", "D", "E", "F", "G", "A", "B"};
+                while (text.length() < size)
+                    text.append("<note><pitch><step>").append(steps[random.nextInt(7)]).append("</step><octave>")
+                            .append(3 + random.nextInt(3)).append("</octave></pitch><duration>")
+                            .append(1 + random.nextInt(4)).append("</duration></note>\n");
+                return java.util.Arrays.copyOf(text.toString().getBytes(StandardCharsets.UTF_8), size);
+            case MIDI:
+                byte[] midi = new byte[size];
+                for (int i = 0; i + 4 <= midi.length; i += 4) {
+                    midi[i] = (byte) (random.nextInt(4) * 24); // delta-time quantizzato
+                    midi[i + 1] = (byte) (i % 8 == 0 ? 0x90 : 0x80); // note on / note off
+                    midi[i + 2] = (byte) (60 + random.nextInt(12));
+                    midi[i + 3] = (byte) (i % 8 == 0 ? 64 : 0);
+                }
+                return midi;
+            default:
+                byte[] noise = new byte[size];
+                random.nextBytes(noise);
+                return noise;
+        }
+    }
+}